@@ -0,0 +1,60 @@
+package blackboard.bench;
+
+import blackboard.courses.Assignment;
+import blackboard.courses.Course;
+import blackboard.users.Admin;
+import blackboard.users.Student;
+import blackboard.users.Teacher;
+import blackboard.util.AppState;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Shared fixtures. The application keeps its files under ./data, so the benchmarks that touch
+// disk own that directory: they only run where data/ is absent or was created by a benchmark.
+final class BenchData {
+    private static final Path DATA = Paths.get("data");
+    private static final Path MARKER = DATA.resolve(".benchmark");
+
+    private BenchData(){}
+
+    // empty data/ for this benchmark, refusing to wipe real application data
+    static void freshDataDir() throws Exception {
+        if (Files.exists(DATA) && !Files.exists(MARKER))
+            throw new IllegalStateException("data/ exists in " + Paths.get("").toAbsolutePath()
+                    + " and is not benchmark data; run the benchmarks from an empty directory");
+        AppState.resetAllData();
+        Files.createDirectories(DATA);
+        Files.createFile(MARKER);
+    }
+
+    static void removeDataDir() throws Exception {
+        if (Files.exists(MARKER)) AppState.resetAllData();
+    }
+
+    static Student student(int id) { return new Student(id, "Student " + id, "student" + id, "pw" + id); }
+
+    // course with `students` enrolled (ids from firstStudent), `assignments` assignments, every cell graded
+    static Course course(String id, int firstStudent, int students, int assignments) {
+        Course c = new Course(id, "Course " + id, 0);
+        for (int s = 0; s < students; s++) c.restoreStudent(firstStudent + s);
+        for (int a = 0; a < assignments; a++) c.addAssignment(new Assignment("A" + a, "Assignment " + a));
+        for (int a = 0; a < assignments; a++)
+            for (int s = 0; s < students; s++) c.setGrade("A" + a, firstStudent + s, (s * 31 + a * 7) % 101);
+        return c;
+    }
+
+    // AppState with `students` students spread over `courses` courses of `perCourse` students each
+    static void populate(int students, int courses, int perCourse, int assignments) {
+        AppState.repo.clear();
+        AppState.addAdmin(new Admin(1, "admin", "admin", "admin"));
+        for (int t = 1; t <= Math.max(1, courses / 4); t++) AppState.addTeacher(new Teacher(t, "Teacher " + t, "teacher" + t, "pw" + t));
+        for (int s = 1; s <= students; s++) AppState.addStudent(student(s));
+        for (int c = 0; c < courses; c++) {
+            Course course = course("C" + c, 1 + (int) ((long) c * perCourse % Math.max(1, students - perCourse)), perCourse, assignments);
+            AppState.addCourse(course);
+            AppState.assignTeacher(course, AppState.findTeacher(1 + c % Math.max(1, courses / 4)));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package blackboard.bench;
+
+import blackboard.courses.Course;
+import blackboard.users.Student;
+import blackboard.util.IdBitmap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// In-memory course operations at growing roster sizes: grade writes and reads, final grade,
+// submission lookup and set operations, and enrolling into a course that already holds `students`.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CourseBench {
+    static final int ASSIGNMENTS = 10;
+    static final int ENROLL_BATCH = 1000;
+
+    @Param({"100", "1000", "10000"})
+    int students;
+
+    Course course;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        course = BenchData.course("bench", 1, students, ASSIGNMENTS);
+        for (int s = 1; s <= students; s += 2) course.markSubmitted("A" + (s % ASSIGNMENTS), s);
+    }
+
+    private int nextStudent() { int s = next++ % students; return s + 1; }
+
+    @Benchmark
+    public void setGrade() {
+        int s = nextStudent();
+        course.setGrade("A" + (s % ASSIGNMENTS), s, s % 101);
+    }
+
+    @Benchmark
+    public Integer getGrade() {
+        int s = nextStudent();
+        return course.getGrade("A" + (s % ASSIGNMENTS), s);
+    }
+
+    @Benchmark
+    public double getFinalGrade() {
+        return course.getFinalGrade(nextStudent());
+    }
+
+    @Benchmark
+    public boolean hasSubmitted() {
+        int s = nextStudent();
+        return course.hasSubmitted("A" + (s % ASSIGNMENTS), s);
+    }
+
+    // set operations of the "View Submissions" screen
+    @Benchmark
+    public IdBitmap notSubmitted() { return course.notSubmitted("A" + (next++ % ASSIGNMENTS)); }
+
+    @Benchmark
+    public double completionRate() { return course.completionRate("A" + (next++ % ASSIGNMENTS)); }
+
+    // a fresh course holding `students` per invocation; ENROLL_BATCH enrollments are measured
+    @State(Scope.Thread)
+    public static class Enroll {
+        Course course;
+        Student[] incoming;
+
+        @Setup(Level.Trial)
+        public void students(CourseBench b) {
+            incoming = new Student[ENROLL_BATCH];
+            for (int i = 0; i < ENROLL_BATCH; i++) incoming[i] = BenchData.student(b.students + 1 + i);
+        }
+
+        @Setup(Level.Invocation)
+        public void course(CourseBench b) {
+            course = new Course("enroll", "Enroll", 0);
+            for (int s = 1; s <= b.students; s++) course.restoreStudent(s);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENROLL_BATCH)
+    public boolean enroll(Enroll e) {
+        boolean ok = true;
+        for (Student s : e.incoming) ok &= e.course.enroll(s);
+        return ok;
+    }
+}
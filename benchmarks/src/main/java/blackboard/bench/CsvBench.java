@@ -0,0 +1,80 @@
+package blackboard.bench;
+
+import blackboard.util.CsvIn;
+import blackboard.util.CsvOut;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// CSV codec throughput in memory (no disk), rows/s. Grade rows (aid,sid,grade) are read back the
+// way loadGradesIfExists does, user rows (id,name,username,password) written the way User.save does:
+//   splitGrades / joinUsers   the previous code: decode to String, lines(), split(","), parseInt;
+//                             String.join + getBytes per row
+//   csvInGrades / csvOutUsers CsvIn over the bytes / CsvOut into a reused buffer
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvBench {
+    static final int ROWS = 100_000;
+
+    byte[] grades;
+    String[][] users;
+    final WritableByteChannel sink = new WritableByteChannel() {
+        @Override public int write(ByteBuffer b) { int n = b.remaining(); b.position(b.limit()); return n; }
+        @Override public boolean isOpen() { return true; }
+        @Override public void close() { }
+    };
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ROWS; i++) sb.append('A').append(i / 10_000).append(',').append(1000 + i).append(',').append(i * 31 % 101).append('\n');
+        grades = sb.toString().getBytes(StandardCharsets.UTF_8);
+        users = new String[ROWS][];
+        for (int i = 0; i < ROWS; i++) users[i] = new String[]{ String.valueOf(i), "Student " + i, "student" + i, "pw" + i };
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long splitGrades() {
+        long sum = 0;
+        for (String line : new String(grades, StandardCharsets.UTF_8).lines().toList()) {
+            if (line.isBlank()) continue;
+            String[] p = line.split(",", -1);
+            sum += p[0].length() + Integer.parseInt(p[1].trim()) + Integer.parseInt(p[2].trim());
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long csvInGrades() {
+        long sum = 0;
+        CsvIn in = new CsvIn(grades);
+        while (in.next()) sum += in.string(0).length() + in.integer(1, -1) + in.integer(2, -1);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long joinUsers() {
+        long n = 0;
+        for (String[] u : users) n += (String.join(",", u) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8).length;
+        return n;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void csvOutUsers() throws IOException {
+        try (CsvOut out = new CsvOut(sink)) {
+            for (String[] u : users) out.field(u[0]).field(u[1]).field(u[2]).field(u[3]).endRow();
+        }
+    }
+}
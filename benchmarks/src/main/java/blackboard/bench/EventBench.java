@@ -0,0 +1,58 @@
+package blackboard.bench;
+
+import blackboard.courses.Course;
+import blackboard.util.Events;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// What the event bus adds to a state change: Course.setGrade (which publishes GRADE_RECORDED)
+// with 0, 1 or 3 subscribers counting what they get. With none, publishing is one field read.
+// The counts are checked at the end of the trial, so a lost or doubled event fails the run.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventBench {
+    static final int STUDENTS = 1000;
+    static final int ASSIGNMENTS = 10;
+
+    @Param({"0", "1", "3"})
+    int subscribers;
+
+    Course course;
+    int next;
+    long before;
+    final List<Events.Subscription> subs = new ArrayList<>();
+    final List<LongAdder> seen = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        course = BenchData.course("bench", 1, STUDENTS, ASSIGNMENTS);
+        for (int i = 0; i < subscribers; i++) {
+            LongAdder n = new LongAdder();
+            seen.add(n);
+            subs.add(Events.subscribe("bench" + i, (e, endOfBatch) -> n.increment()));
+        }
+        before = Events.published();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long published = Events.published() - before;
+        for (Events.Subscription s : subs) s.close();
+        for (LongAdder n : seen)
+            if (n.sum() != published) throw new IllegalStateException("subscriber saw " + n.sum() + " of " + published + " events");
+    }
+
+    @Benchmark
+    public void setGrade() {
+        int s = next++ % STUDENTS + 1;
+        course.setGrade("A" + (s % ASSIGNMENTS), s, s % 101);
+    }
+}
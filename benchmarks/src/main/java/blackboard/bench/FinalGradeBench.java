@@ -0,0 +1,91 @@
+package blackboard.bench;
+
+import blackboard.courses.Assignment;
+import blackboard.courses.Course;
+import blackboard.courses.GradingScheme;
+import blackboard.util.AppState;
+import blackboard.util.TermGrades;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// End-of-term finalization of a 10000-student term (200 courses x 250 students, 8 homeworks
+// with the 2 lowest dropped + 3 exams): every final grade through the batch pass
+// (Course.finalGrades, what TermGrades uses), sequentially and in parallel, against asking the
+// gradebook per student and assignment (getGrade) and weighing that. The setup fails the run if
+// the two disagree.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FinalGradeBench {
+    static final int STUDENTS = 10000, COURSES = 200, PER_COURSE = 250, HOMEWORK = 8, EXAMS = 3;
+    static final GradingScheme SCHEME = GradingScheme.parse("homework=40/drop2, exams=60");
+
+    List<Course> courses;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchData.populate(STUDENTS, COURSES, PER_COURSE, HOMEWORK + EXAMS);
+        courses = new ArrayList<>(AppState.courses);
+        for (Course c : courses) {
+            for (int a = 0; a < HOMEWORK + EXAMS; a++)
+                c.setAssignmentWeight("A" + a, a < HOMEWORK ? "homework" : "exams", a == HOMEWORK + EXAMS - 1 ? 2 : 1);
+            c.setGradingScheme(SCHEME);
+        }
+        List<Course.FinalGrades> batch = TermGrades.compute(courses, false), each = perStudent();
+        for (int i = 0; i < batch.size(); i++)
+            if (!Arrays.equals(batch.get(i).grades(), each.get(i).grades()))
+                throw new IllegalStateException("batch and per-student final grades differ in " + batch.get(i).courseId());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() { AppState.repo.clear(); }
+
+    @Benchmark
+    public List<Course.FinalGrades> batch() { return TermGrades.compute(courses, false); }
+
+    @Benchmark
+    public List<Course.FinalGrades> batchParallel() { return TermGrades.compute(courses, true); }
+
+    @Benchmark
+    public List<Course.FinalGrades> perStudent() {
+        List<Course.FinalGrades> out = new ArrayList<>(courses.size());
+        for (Course c : courses) {
+            GradingScheme g = c.getGradingScheme();
+            List<Assignment> as = c.getAssignments();
+            int[] sids = c.getStudentIds().stream().mapToInt(Integer::intValue).toArray();
+            double[] finals = new double[sids.length];
+            for (int i = 0; i < sids.length; i++) finals[i] = finalGrade(c, g, as, sids[i]);
+            out.add(new Course.FinalGrades(c.getId(), sids, finals));
+        }
+        return out;
+    }
+
+    // the GradingScheme rules, written the obvious way
+    private static double finalGrade(Course c, GradingScheme g, List<Assignment> as, int sid) {
+        double total = 0, weights = 0;
+        for (int k = 0; k < g.categories().size(); k++) {
+            GradingScheme.Category cat = g.categories().get(k);
+            List<double[]> got = new ArrayList<>();   // (grade, weight) in assignment order
+            for (Assignment a : as) {
+                Integer x = a.getCategory().equals(cat.name()) ? c.getGrade(a.getId(), sid) : null;
+                if (x != null) got.add(new double[]{x, a.getWeight()});
+            }
+            if (got.isEmpty()) continue;
+            List<double[]> low = new ArrayList<>(got);
+            low.sort((p, q) -> Double.compare(p[0], q[0]));
+            double num = 0, den = 0;
+            for (double[] p : got) { num += p[1] * p[0]; den += p[1]; }
+            for (int j = 0; j < Math.min(cat.drop(), got.size() - 1); j++) { num -= low.get(j)[1] * low.get(j)[0]; den -= low.get(j)[1]; }
+            total += cat.weight() * (num / den);
+            weights += cat.weight();
+        }
+        return weights == 0 ? -1 : total / weights;
+    }
+}
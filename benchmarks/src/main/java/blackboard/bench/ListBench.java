@@ -0,0 +1,54 @@
+package blackboard.bench;
+
+import blackboard.users.Student;
+import blackboard.util.AppState;
+import blackboard.util.Page;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Rendering the student list of the admin menus: one page (Page.SIZE lines, starting at a cursor
+// somewhere in the listing) against the whole listing the menus used to print. A page should cost
+// the same for 1000 and 50000 students, in id and in name order.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListBench {
+    @Param({"1000", "50000"})
+    int users;
+
+    @Param({"ID", "NAME"})
+    Page.Sort sort;
+
+    final String[] cursors = new String[64];   // spread over the listing
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchData.populate(users, 0, 0, 0);
+        int step = Math.max(1, users / cursors.length);
+        String at = null;
+        for (int k = 0; k < cursors.length && (k == 0 || at != null); k++) {
+            cursors[k] = at;
+            at = AppState.students(sort, at, step).next();
+        }
+    }
+
+    @Benchmark
+    public int page() {
+        StringBuilder b = new StringBuilder();
+        for (Student s : AppState.students(sort, cursors[next++ & 63], Page.SIZE).items())
+            b.append(s.getId()).append(": ").append(s.getName()).append('\n');
+        return b.length();
+    }
+
+    @Benchmark
+    public int everything() {
+        StringBuilder b = new StringBuilder();
+        for (Student s : AppState.students) b.append(s.getId()).append(": ").append(s.getName()).append('\n');
+        return b.length();
+    }
+}
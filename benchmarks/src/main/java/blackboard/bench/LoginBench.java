@@ -0,0 +1,55 @@
+package blackboard.bench;
+
+import blackboard.users.User;
+import blackboard.util.AppState;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Credential lookup as done by the login menu (AppState.authenticate) against `users` students:
+// a student login (tries admins and teachers first), a wrong password and an unknown user.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoginBench {
+    @Param({"1000", "100000"})
+    int users;
+
+    String[] usernames, passwords, unknown;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchData.populate(users, 0, 0, 0);
+        usernames = new String[1024];
+        passwords = new String[1024];
+        unknown = new String[1024];
+        for (int i = 0; i < usernames.length; i++) {
+            int id = 1 + (int) ((i * 2654435761L) % users);
+            usernames[i] = "student" + id;
+            passwords[i] = "pw" + id;
+            unknown[i] = "nobody" + id;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor { int i; int next() { return i++ & 1023; } }
+
+    @Benchmark
+    public User login(Cursor c) {
+        int i = c.next();
+        return AppState.authenticate(usernames[i], passwords[i]);
+    }
+
+    @Benchmark
+    public User wrongPassword(Cursor c) {
+        return AppState.authenticate(usernames[c.next()], "nope");
+    }
+
+    @Benchmark
+    public User unknownUser(Cursor c) {
+        return AppState.authenticate(unknown[c.next()], "nope");
+    }
+}
@@ -0,0 +1,55 @@
+package blackboard.bench;
+
+import blackboard.courses.Course;
+import blackboard.users.User;
+import blackboard.util.AppState;
+import blackboard.util.Snapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Whole-state persistence at growing sizes: startup from the snapshot (AppState.loadAll), startup
+// from the storage backend only (loadStorage) and a full export with every entity dirty (saveAll).
+// The backend is -Dblackboard.storage (csv unless set); StorageBench compares them.
+// Each course has PER_COURSE students and ASSIGNMENTS graded assignments.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistBench {
+    static final int PER_COURSE = 50;
+    static final int ASSIGNMENTS = 5;
+
+    @Param({"10", "100", "1000"})
+    int courses;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BenchData.freshDataDir();
+        BenchData.populate(Math.max(100, courses * 20), courses, PER_COURSE, ASSIGNMENTS);
+        AppState.saveAll();
+        Snapshot.write();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception { BenchData.removeDataDir(); }
+
+    @Benchmark
+    public Object loadAll() throws Exception { return AppState.loadAll(); }
+
+    @Benchmark
+    public Object loadStorage() throws Exception { return AppState.loadStorage(); }
+
+    @Setup(Level.Invocation)
+    public void dirty() {
+        for (User u : AppState.admins) u.markDirty();
+        for (User u : AppState.teachers) u.markDirty();
+        for (User u : AppState.students) u.markDirty();
+        for (Course c : AppState.courses) c.markDirty();
+    }
+
+    @Benchmark
+    public void saveAll() throws Exception { AppState.saveAll(); }
+}
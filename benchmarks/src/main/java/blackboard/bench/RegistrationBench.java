@@ -0,0 +1,97 @@
+package blackboard.bench;
+
+import blackboard.courses.Course;
+import blackboard.users.Student;
+import blackboard.util.Journal;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+
+// Registration rush: REQUESTERS virtual threads hit one hot course at once, each registering a
+// different student and then retrying (the retry must be a no-op). Score = registrations/s.
+//   register      Course.register: CAS seat claim, batched admission, one journal flush per batch
+//   lockedEnroll  the previous path: course monitor + one journal append/flush per enrollment
+// With capacity below REQUESTERS the rest of the rush ends up on the waitlist (register) or
+// is refused (lockedEnroll).
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegistrationBench {
+    static final int REQUESTERS = 1000;
+
+    @Param({"250", "1000"})
+    int capacity;
+
+    Student[] students;
+    Course course;
+    volatile boolean locked;
+    Thread[] requesters;
+    Phaser rush;   // phase 2k: go, phase 2k+1: all done
+    PrintStream console;
+    volatile Exception failure;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BenchData.freshDataDir();
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));   // "Course full" / "Already enrolled"
+        students = new Student[REQUESTERS];
+        for (int i = 0; i < REQUESTERS; i++) students[i] = BenchData.student(i + 1);
+        rush = new Phaser(REQUESTERS + 1);
+        requesters = new Thread[REQUESTERS];
+        for (int i = 0; i < REQUESTERS; i++) {
+            Student s = students[i];
+            requesters[i] = Thread.ofVirtual().name("requester-" + i).start(() -> {
+                while (true) {
+                    if (rush.arriveAndAwaitAdvance() < 0) return;
+                    try {
+                        if (locked) { enrollLocked(s); enrollLocked(s); }
+                        else { course.register(s); course.register(s); }
+                    } catch (Exception e) {
+                        failure = e;
+                    }
+                    if (rush.arriveAndAwaitAdvance() < 0) return;
+                }
+            });
+        }
+    }
+
+    private void enrollLocked(Student s) throws Exception {
+        Course c = course;
+        synchronized (c) { if (c.enroll(s)) Journal.enroll(c, s.getId()); }
+    }
+
+    @Setup(Level.Invocation)
+    public void course() { course = new Course("hot", "Hot course", capacity); }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        rush.forceTermination();
+        for (Thread t : requesters) t.join();
+        System.setOut(console);
+        Journal.close();
+        BenchData.removeDataDir();
+    }
+
+    private int run(boolean lockedPath) {
+        locked = lockedPath;
+        rush.arriveAndAwaitAdvance();
+        rush.arriveAndAwaitAdvance();
+        if (failure != null) throw new IllegalStateException(failure);
+        return course.getStudentIds().size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTERS)
+    public int register() { return run(false); }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTERS)
+    public int lockedEnroll() { return run(true); }
+}
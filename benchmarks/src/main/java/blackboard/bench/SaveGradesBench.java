@@ -0,0 +1,34 @@
+package blackboard.bench;
+
+import blackboard.courses.Course;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Course.saveGrades (the per-course grades CSV) as the number of recorded grades grows.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SaveGradesBench {
+    static final int ASSIGNMENTS = 10;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int grades;
+
+    Course course;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BenchData.freshDataDir();
+        course = BenchData.course("grades", 1, grades / ASSIGNMENTS, ASSIGNMENTS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception { BenchData.removeDataDir(); }
+
+    @Benchmark
+    public void saveGrades() throws Exception { course.saveGrades(); }
+}
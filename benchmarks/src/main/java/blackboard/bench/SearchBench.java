@@ -0,0 +1,76 @@
+package blackboard.bench;
+
+import blackboard.users.Student;
+import blackboard.util.AppState;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// What a picker does with typed text: AppState.searchStudents (SearchIndex) for a rotating set of
+// prefixes, typos and two-word queries, against scanning every student's name and username for
+// the prefix. Names are drawn from common first names and a long tail of generated last names,
+// usernames are initial + last name + id. The setup reports the one-off sort of the index.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SearchBench {
+    static final String[] FIRST = {"James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda", "David", "Elizabeth",
+            "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen", "Chloé", "José",
+            "Daniel", "Nancy", "Matthew", "Lisa", "Anthony", "Betty", "Mark", "Sandra", "Zoë", "Noah", "Emma", "Liam", "Olivia", "Mia"};
+    static final String[] LAST = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+            "Smithers", "Smyth", "Schmidt", "Müller", "Nguyen", "Kim", "O'Brien", "Taylor", "Anderson", "Thomas"};
+    static final String[] QUERIES = {"smi", "smtih", "jo smi", "mül", "muller", "garc", "nguyen", "ann", "william", "kimb"};
+
+    @Param({"1000", "1000000"})
+    int users;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        AppState.repo.clear();
+        Random rnd = new Random(42);
+        List<String> last = new ArrayList<>(List.of(LAST));
+        String[] syllables = {"ka", "lo", "mi", "ran", "te", "son", "ber", "vic", "do", "an", "sel", "mor", "ri", "tz", "ell", "in"};
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder b = new StringBuilder();
+            for (int s = 2 + rnd.nextInt(3); s > 0; s--) b.append(syllables[rnd.nextInt(syllables.length)]);
+            last.add(Character.toUpperCase(b.charAt(0)) + b.substring(1));
+        }
+        for (int id = 1; id <= users; id++) {
+            String first = FIRST[rnd.nextInt(FIRST.length)];
+            // a fifth of the students carry one of the common last names
+            String family = rnd.nextInt(5) == 0 ? LAST[rnd.nextInt(LAST.length)] : last.get(rnd.nextInt(last.size()));
+            String username = (first.charAt(0) + family).toLowerCase(Locale.ROOT).replaceAll("[^a-z]", "") + id;
+            AppState.addStudent(new Student(id, first + " " + family, username, "pw" + id));
+        }
+        long t0 = System.nanoTime();
+        AppState.searchStudents("warm", 1);   // sorts what the adds left in the index's tail
+        System.out.printf("%nindex sorted in %d ms, %d KB heap for %d students%n",
+                (System.nanoTime() - t0) / 1_000_000, AppState.userHeapBytes() >> 10, users);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() { AppState.repo.clear(); }
+
+    @Benchmark
+    public List<Student> search() { return AppState.searchStudents(QUERIES[next++ % QUERIES.length], 20); }
+
+    @Benchmark
+    public List<Student> scan() {
+        String q = QUERIES[next++ % QUERIES.length];
+        List<Student> out = new ArrayList<>();
+        for (Student s : AppState.students) {
+            if (out.size() == 20) break;
+            if (s.getName().toLowerCase(Locale.ROOT).startsWith(q) || s.getUsername().startsWith(q)) out.add(s);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,122 @@
+package blackboard.bench;
+
+import blackboard.courses.Assignment;
+import blackboard.courses.Course;
+import blackboard.courses.GradingScheme;
+import blackboard.users.Student;
+import blackboard.users.Teacher;
+import blackboard.users.User;
+import blackboard.util.AppState;
+import blackboard.util.IdBitmap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// The storage backends (-Dblackboard.storage) side by side: a full export with every entity and
+// every course's details out of date (saveAll), and a start from the backend with every course
+// then hydrated (load). Same data shape as PersistBench.
+//
+// The trial setup is also the backends' conformance check: before measuring it round-trips a
+// state with awkward values (quotes, commas, line breaks and non-ASCII in names, titles and
+// passwords; a course without teacher; a waitlist; a deleted user re-created under its id and
+// one deleted for good) and fails the run if what loads back differs from what was saved. The
+// case-by-case checks, compaction included, are test/blackboard/util/StorageConformanceTest.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StorageBench {
+    static final int PER_COURSE = 50;
+    static final int ASSIGNMENTS = 5;
+
+    @Param({"csv", "binary", "sql"})
+    String storage;
+
+    @Param({"100", "1000"})
+    int courses;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        System.setProperty("blackboard.storage", storage);
+        BenchData.freshDataDir();   // also closes the backend, so the next use opens this one
+        conformance();
+        BenchData.freshDataDir();
+        BenchData.populate(Math.max(100, courses * 20), courses, PER_COURSE, ASSIGNMENTS);
+        AppState.saveAll();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception { BenchData.removeDataDir(); }
+
+    @Setup(Level.Invocation)
+    public void unsaved() {
+        for (User u : AppState.admins) u.markDirty();
+        for (User u : AppState.teachers) u.markDirty();
+        for (User u : AppState.students) u.markDirty();
+        for (Course c : AppState.courses) c.markUnsaved();
+    }
+
+    @Benchmark
+    public void saveAll() throws Exception { AppState.saveAll(); }
+
+    @Benchmark
+    public int load() throws Exception {
+        AppState.loadStorage();
+        int n = 0;
+        for (Course c : AppState.courses) n += c.getAssignments().size();
+        return n;
+    }
+
+    private void conformance() throws Exception {
+        BenchData.populate(200, 8, 20, 3);
+        AppState.addStudent(new Student(201, "Zoë \"Quote\", Jr.", "zoë", "p,w\"\n✓"));
+        AppState.addStudent(new Student(202, "Gone", "gone", "x"));
+        AppState.addTeacher(new Teacher(90, "Ms, Ünïcode", "t90", ""));
+        Course odd = new Course("C-odd é", "Title, with \"quotes\"\nand a break", 2);
+        odd.restoreStudent(201);
+        odd.restoreStudent(5);
+        odd.restoreWaitlisted(7);
+        odd.addAssignment(new Assignment("A,1", "Essay \"one\""));
+        odd.addAssignment(new Assignment("Q2", "Quiz, two", "quiz ünï", 2.5));
+        odd.addAssignment(new Assignment("Q3", "Quiz three", "quiz ünï", 0.5));
+        odd.setGradingScheme(GradingScheme.parse("quiz ünï=60/drop1"));
+        odd.setGrade("A,1", 201, 99);
+        odd.setGrade("Q2", 201, 40);
+        odd.setGrade("Q3", 201, 80);
+        odd.markSubmitted("A,1", IdBitmap.of(201, 5));
+        AppState.addCourse(odd);
+        AppState.saveAll();
+        AppState.removeStudent(202);
+        AppState.removeStudent(5);
+        AppState.addStudent(new Student(5, "Back", "back5", "pw"));
+        AppState.saveAll();
+
+        String saved = fingerprint();
+        AppState.loadStorage();
+        String loaded = fingerprint();
+        if (!saved.equals(loaded))
+            throw new IllegalStateException(storage + " storage does not round-trip:\n--- saved\n" + saved + "\n--- loaded\n" + loaded);
+    }
+
+    private static String fingerprint() {
+        StringBuilder b = new StringBuilder();
+        for (Iterable<? extends User> users : java.util.List.of(AppState.admins, AppState.teachers, AppState.students))
+            for (User u : users) b.append(u.getRole()).append('|').append(u.getId()).append('|').append(u.getName())
+                    .append('|').append(u.getUsername()).append('|').append(u.getPassword()).append('\n');
+        for (Course c : AppState.courses) {
+            b.append(c.getId()).append('|').append(c.getTitle()).append('|').append(c.getMaxCapacity()).append('|')
+                    .append(c.getTeacher() == null ? "-" : c.getTeacher().getId()).append('|')
+                    .append(c.getStudentIds()).append('|').append(c.getWaitlist()).append('|').append(c.getGradingScheme()).append('\n');
+            for (int sid : c.getStudentIds()) b.append(' ').append(c.getFinalGrade(sid));
+            b.append('\n');
+            for (Assignment a : c.getAssignments()) {
+                b.append(a.getId()).append('|').append(a.getTitle()).append('|').append(a.getCategory()).append('|').append(a.getWeight()).append(':');
+                for (int sid : c.getStudentIds()) b.append(' ').append(c.getGrade(a.getId(), sid)).append(c.hasSubmitted(a.getId(), sid) ? "s" : "");
+                b.append('\n');
+            }
+        }
+        return b.toString();
+    }
+}
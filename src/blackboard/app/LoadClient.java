@@ -0,0 +1,84 @@
+package blackboard.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Load generator for the Server. Opens `sessions` loopback connections, at most `concurrency`
+// at a time, each on a virtual thread; every session sends a scripted conversation (one input
+// line per script line), half-closes, and reads until the server hangs up. Reports sessions per
+// second and session latency percentiles. The default script logs in as student1, lists the
+// courses, views course 1's grades and exits.
+//
+//   java blackboard.app.LoadClient [sessions] [concurrency] [scriptFile] [port]
+public final class LoadClient {
+    private static final List<String> DEFAULT_SCRIPT = List.of("1", "student1", "student1", "1", "2", "1", "4", "2");
+
+    private LoadClient(){}
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        List<String> script = args.length > 2 && !args[2].equals("-") ? Files.readAllLines(Paths.get(args[2])) : DEFAULT_SCRIPT;
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : Server.DEFAULT_PORT;
+        byte[] input = (String.join("\n", script) + "\n").getBytes(StandardCharsets.UTF_8);
+
+        long[] nanos = new long[sessions];
+        AtomicInteger failed = new AtomicInteger(), rejected = new AtomicInteger();
+        Semaphore slots = new Semaphore(concurrency);
+        long t0 = System.nanoTime();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < sessions; i++) {
+                slots.acquire();
+                int n = i;
+                pool.submit(() -> {
+                    long s0 = System.nanoTime();
+                    try {
+                        String reply = converse(port, input);
+                        if (reply.contains("Invalid credentials.")) rejected.incrementAndGet();
+                    } catch (IOException e) {
+                        failed.incrementAndGet();
+                    } finally {
+                        nanos[n] = System.nanoTime() - s0;
+                        slots.release();
+                    }
+                });
+            }
+        }
+        double secs = (System.nanoTime() - t0) / 1e9;
+        Arrays.sort(nanos);
+        System.out.println(String.format("%d sessions (%d concurrent) in %.2f s: %.0f sessions/s, %d failed, %d bad logins",
+                sessions, concurrency, secs, sessions / secs, failed.get(), rejected.get()));
+        System.out.println(String.format("session latency ms: p50 %.2f  p99 %.2f  max %.2f",
+                pct(nanos, 50), pct(nanos, 99), nanos.length == 0 ? 0 : nanos[nanos.length - 1] / 1e6));
+    }
+
+    // sends the whole conversation up front (the session reads it line by line) and returns the transcript
+    private static String converse(int port, byte[] input) throws IOException {
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            s.setTcpNoDelay(true);
+            OutputStream out = s.getOutputStream();
+            out.write(input);
+            out.flush();
+            s.shutdownOutput();
+            InputStream in = s.getInputStream();
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static double pct(long[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p / 100.0 * sorted.length) - 1)] / 1e6;
+    }
+}
@@ -0,0 +1,79 @@
+package blackboard.app;
+
+import blackboard.util.AppState;
+import blackboard.util.Journal;
+import blackboard.util.Metrics;
+import blackboard.util.WriteBehind;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Multi-user front end: the same menus as the console, one Session per loopback TCP connection,
+// each on its own virtual thread. The protocol is the console's: the client sends the lines a
+// user would type and reads the text back; the session ends on "2) Exit" or when the client
+// closes its side. Ctrl+C checkpoints and writes everything out, as the console's Exit does.
+//
+//   java blackboard.app.Server [port]
+public final class Server {
+    public static final int DEFAULT_PORT = 5050;
+    private static final int BACKLOG = 1024;
+
+    private static final AtomicLong served = new AtomicLong();
+    private static final AtomicInteger active = new AtomicInteger();
+
+    private Server(){}
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Metrics.configure();
+        Metrics.gauge("server.activeSessions", active::get);
+        Metrics.gauge("server.sessionsServed", served::get);
+        Files.createDirectories(Paths.get("data"));
+        System.out.println(AppState.loadAll());
+        Journal.replay();
+        if (AppState.admins.isEmpty()) System.out.println("No admin accounts yet; start the console (Main) once to create one.");
+        System.setOut(new SessionOut(System.out));
+        Runtime.getRuntime().addShutdownHook(new Thread(Server::shutdown, "server-shutdown"));
+
+        try (ServerSocket ss = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress())) {
+            System.out.println("Listening on " + ss.getLocalSocketAddress() + " (Ctrl+C to stop)");
+            while (true) {
+                Socket s = ss.accept();
+                Thread.ofVirtual().name("session-" + served.incrementAndGet()).start(() -> serve(s));
+            }
+        }
+    }
+
+    private static void serve(Socket sock) {
+        active.incrementAndGet();
+        try (sock) {
+            sock.setTcpNoDelay(true);
+            PrintStream out = new PrintStream(new BufferedOutputStream(sock.getOutputStream(), 1 << 13), false, StandardCharsets.UTF_8);
+            new Session(sock.getInputStream(), out).run();
+        } catch (IOException e) {
+            // client went away
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    private static void shutdown() {
+        try {
+            WriteBehind.shutdown();
+            Journal.checkpoint();
+            AppState.saveAll();
+            AppState.closeStorage();
+            System.out.println("Served " + served.get() + " sessions (" + active.get() + " still open); data saved.");
+        } catch (Exception e) {
+            System.out.println("Shutdown save failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,579 @@
+package blackboard.app;
+
+import blackboard.util.AppState;
+import blackboard.util.Export;
+import blackboard.util.IdBitmap;
+import blackboard.util.Metrics;
+import blackboard.util.Page;
+import blackboard.util.TermGrades;
+import blackboard.users.*;
+import blackboard.courses.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// One user's conversation with the system: the admin/teacher/student menus over a line reader
+// and a print stream. The console (Main) runs one Session on System.in/System.out, the Server
+// one per connection; all of them share AppState. Output of the domain classes (System.out)
+// reaches the session that caused it through SessionOut.
+public class Session {
+    private static final ThreadLocal<Session> CURRENT = new ThreadLocal<>();
+
+    private final BufferedReader in;
+    final PrintStream out;
+
+    public Session(InputStream in, PrintStream out) {
+        this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        this.out = out;
+    }
+
+    static Session current() { return CURRENT.get(); }
+
+    // Login/Exit loop until the user exits or the input ends (a remote client hanging up)
+    public void run() {
+        CURRENT.set(this);
+        try {
+            while (true) {
+                out.println("\n1) Login  2) Exit");
+                if ("2".equals(line().trim())) break;
+                login();
+            }
+        } catch (NoSuchElementException | UncheckedIOException hangup) {
+            // input closed or connection reset
+        } finally {
+            out.flush();
+            CURRENT.remove();
+        }
+    }
+
+    // next input line; like Scanner.nextLine() it throws NoSuchElementException once input ends
+    String line() {
+        out.flush();   // prompts are buffered for remote sessions
+        try {
+            String s = in.readLine();
+            if (s == null) throw new NoSuchElementException("No line found");
+            return s;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void login(){
+        out.print("username: "); String u = line().trim();
+        out.print("password: "); String p = line().trim();
+
+        User who = AppState.authenticate(u, p);
+        if (who instanceof Admin a)   { adminMenu(a); return; }
+        if (who instanceof Teacher t) { teacherMenu(t); return; }
+        if (who instanceof Student s) { studentMenu(s); return; }
+        out.println("Invalid credentials.");
+    }
+
+    void adminMenu(Admin a){
+        while (true){
+            out.println("\n[ADMIN] 1) New Teacher 2) New Student 3) New Course 4) Assign Teacher 5) Enroll Student 6) Back 7) View All Users 8) Update User 9) Delete User 10) Bulk Import 11) Export Gradebook 12) Drop Student 13) Final Grades");
+            String ch = line().trim();
+            long started = Metrics.start();
+            try {
+                if ("1".equals(ch)) {
+                    try {
+                        out.print("Teacher id (number): ");
+                        String idStr = line().trim();
+                        int id = Integer.parseInt(idStr);
+
+                        out.print("Teacher name: ");
+                        String name = line().trim();
+
+                        out.print("Teacher username: ");
+                        String user = line().trim();
+
+                        out.print("Teacher password: ");
+                        String pass = line().trim();
+
+                        a.createTeacher(new Teacher(id, name, user, pass));
+                        out.println("✅ Teacher created.");
+                    } catch (NumberFormatException nfe) {
+                        out.println("❌ Invalid id. Please enter a number.");
+                    } catch (Exception e) {
+                        out.println("❌ Could not create teacher: " + e.getMessage());
+                    }
+                } else if ("2".equals(ch)) {
+                    try {
+                        out.print("Student id (number): ");
+                        int id = Integer.parseInt(line().trim());
+
+                        out.print("Student name: ");
+                        String name = line().trim();
+
+                        out.print("Student username: ");
+                        String user = line().trim();
+
+                        out.print("Student password: ");
+                        String pass = line().trim();
+
+                        a.createStudent(new Student(id, name, user, pass));
+                        out.println("✅ Student created.");
+                    } catch (NumberFormatException nfe) {
+                        out.println("❌ Invalid id. Please enter a number.");
+                    } catch (Exception e) {
+                        out.println("❌ Could not create student: " + e.getMessage());
+                    }
+                } else if ("3".equals(ch)) {
+                    try {
+                        out.print("Course id: ");
+                        String cid = line().trim();
+                        if (cid.isEmpty()) { out.println("❌ Course id cannot be empty."); break; }
+
+                        out.print("Course title: ");
+                        String title = line().trim();
+                        if (title.isEmpty()) { out.println("❌ Course title cannot be empty."); break; }
+
+                        out.print("Max capacity (number): ");
+                        String capStr = line().trim();
+                        int cap = Integer.parseInt(capStr);
+
+                        Course cnew = new Course(cid, title, cap);
+                        a.createCourse(cnew); // enforces unique id and saves
+                    } catch (NumberFormatException nfe) {
+                        out.println("❌ Invalid capacity. Please enter a number.");
+                    } catch (Exception e) {
+                        out.println("❌ Could not create course: " + e.getMessage());
+                    }
+                } else if ("4".equals(ch)) {
+                    Course c = pickCourse(); Teacher t = pickTeacher(); a.assignTeacher(c,t);
+                } else if ("5".equals(ch)) {
+                    Course c = pickCourse(); Student s = pickStudent(); a.enrollStudent(c,s);
+                } else if ("6".equals(ch)) return;
+                else if ("7".equals(ch)) {
+                    printAllUsers();
+                } else if ("8".equals(ch)) {
+                    out.print("Enter user type (teacher/student): ");
+                    String type = line().trim().toLowerCase();
+                    int id = userId(type);
+
+                    if (type.equals("teacher")) {
+                        Teacher t = AppState.findTeacher(id);
+                        if (t != null) {
+                            out.print("New username: "); String u = line();
+                            out.print("New password: "); String p = line();
+                            if (a.updateTeacher(new Teacher(id, t.getName(), u, p))) out.println("✅ Teacher updated.");
+                        }
+                    } else if (type.equals("student")) {
+                        Student s = AppState.findStudent(id);
+                        if (s != null) {
+                            out.print("New username: "); String u = line();
+                            out.print("New password: "); String p = line();
+                            if (a.updateStudent(new Student(id, s.getName(), u, p))) out.println("✅ Student updated.");
+                        }
+                    }
+                } else if ("10".equals(ch)) {
+                    out.println("Rows: student,id,name,username,password | teacher,... | course,id,title,capacity[,teacherId] | enroll,courseId,studentId");
+                    out.print("CSV file(s), separated by spaces: ");
+                    List<Path> files = new ArrayList<>();
+                    for (String f : line().trim().split("\\s+")) if (!f.isEmpty()) files.add(Paths.get(f));
+                    if (files.isEmpty()) { out.println("❌ No file given."); continue; }
+                    try {
+                        out.println(a.bulkImport(files));
+                    } catch (NoSuchFileException e) {
+                        out.println("❌ File not found: " + e.getMessage());
+                    } catch (Exception e) {
+                        out.println("❌ Import failed: " + e.getMessage());
+                    }
+                } else if ("11".equals(ch)) {
+                    out.print("Output file [export/gradebook.csv]: ");
+                    String f = line().trim();
+                    out.print("Encode courses in parallel? (y/n): ");
+                    boolean parallel = line().trim().equalsIgnoreCase("y");
+                    try {
+                        out.println(Export.run(Paths.get(f.isEmpty() ? "export/gradebook.csv" : f), parallel));
+                    } catch (Exception e) {
+                        out.println("❌ Export failed: " + e.getMessage());
+                    }
+                } else if ("13".equals(ch)) {
+                    out.print("Output file [export/final-grades.csv]: ");
+                    String f = line().trim();
+                    out.print("Compute courses in parallel? (y/n): ");
+                    boolean parallel = line().trim().equalsIgnoreCase("y");
+                    try {
+                        out.println(TermGrades.run(Paths.get(f.isEmpty() ? "export/final-grades.csv" : f), parallel));
+                    } catch (Exception e) {
+                        out.println("❌ Finalization failed: " + e.getMessage());
+                    }
+                } else if ("12".equals(ch)) {
+                    Course c = pickCourse(); Student s = pickStudent();
+                    if (c != null && s != null && a.dropStudent(c, s.getId())) out.println("✅ Dropped.");
+                } else if ("9".equals(ch)) {
+                    out.print("Enter user type (teacher/student): ");
+                    String type = line().trim().toLowerCase();
+                    int id = userId(type);
+
+                    if (type.equals("teacher")) {
+                        a.deleteUser(UserRole.TEACHER, id);
+                        out.println("🗑️ Teacher deleted.");
+                    } else if (type.equals("student")) {
+                        a.deleteUser(UserRole.STUDENT, id);
+                        out.println("🗑️ Student deleted.");
+                    }
+                }
+            } catch(Exception e){ out.println("Error: "+e.getMessage()); }
+            finally { Metrics.menu("admin", ch, started); }
+        }
+    }
+
+
+
+    void teacherMenu(Teacher t){
+        while (true){
+            out.println("\n[TEACHER] 1) My Courses 2) New Assignment 3) Grade 4) View Assignments 5) View Submissions 6) Back 7) Course Statistics 8) Grading");
+            String ch = line().trim();
+            long started = Metrics.start();
+            try {
+                if ("1".equals(ch)) listCourses(t);
+                else if ("2".equals(ch)) {
+                    Course c = pickMyCourse(t);
+                    if (c == null) { out.println("❌ No course selected."); break; }
+                    out.print("Assignment id: ");
+                    String aid = line().trim();
+                    if (aid.isEmpty()) { out.println("❌ Assignment id cannot be empty."); break; }
+                    out.print("Assignment title: ");
+                    String atitle = line().trim();
+                    if (atitle.isEmpty()) atitle = "Untitled";
+                    out.print("Category (blank for none): ");
+                    String cat = line().trim();
+                    out.print("Weight [1]: ");
+                    String w = line().trim();
+                    try {
+                        t.createAssignment(c, aid, atitle, cat, w.isEmpty() ? 1 : Double.parseDouble(w));
+                        out.println("✅ Assignment created.");
+                    } catch (IllegalArgumentException e) {   // NumberFormatException too
+                        out.println("❌ Weight must be a positive number.");
+                    }
+                } else if ("3".equals(ch)) {
+                    Course c = pickMyCourse(t);
+                    if (c == null) { out.println("❌ No course selected."); break; }
+                    out.print("Assignment id: ");
+                    String aid = line().trim();
+                    if (aid.isEmpty()) { out.println("❌ Assignment id cannot be empty."); break; }
+                    if (!c.hasAssignment(aid)) {
+                        out.println("❌ No such assignment in this course.");
+                        break;
+                    }
+                    try {
+                        out.print("Student id (number): ");
+                        int sid = Integer.parseInt(line().trim());
+                        out.print("Grade (0-100): ");
+                        int grade = Integer.parseInt(line().trim());
+                        if (grade < 0 || grade > 100) {
+                            out.println("❌ Grade must be between 0 and 100.");
+                        } else {
+                            t.recordGrade(c, aid, sid, grade);
+                            out.println("✅ Grade recorded.");
+                        }
+                    } catch (NumberFormatException nfe) {
+                        out.println("❌ Invalid number. Please enter numeric student id and grade.");
+                    } catch (Exception e) {
+                        out.println("❌ Could not record grade: " + e.getMessage());
+                    }
+
+                }
+                else if ("4".equals(ch)) {
+                    Course c = pickMyCourse(t);
+                    if (c == null) { out.println("❌ No course selected."); break; }
+                    out.println("Assignments for " + c.getTitle() + ":");
+                    for (Assignment a : c.getAssignments()) {
+                        out.println("- " + a.getId() + " " + a.getTitle() + weighting(a));
+                    }
+                }
+                else if ("5".equals(ch)) {
+                    Course c = pickMyCourse(t);
+                    if (c == null) { out.println("❌ No course selected."); break; }
+                    out.print("Assignment id: ");
+                    String aid = line().trim();
+                    if (aid.isEmpty()) { out.println("❌ Assignment id cannot be empty."); break; }
+                    if (!c.hasAssignment(aid)) {
+                        out.println("❌ No such assignment in this course.");
+                        break;
+                    }
+
+                    out.print("Only students who have not submitted? (y/n): ");
+                    String only = line().trim().equalsIgnoreCase("y") ? aid : null;
+                    IdBitmap missing = c.notSubmitted(aid), ungraded = c.ungraded(aid);
+                    out.println("Submissions for " + c.getTitle() + " / " + aid + ":");
+                    browse((sort, after) -> c.students(sort, only, after, Page.SIZE), s2 -> {
+                        int sid = s2.getId();
+                        String state = missing.contains(sid) ? "not submitted" : ungraded.contains(sid) ? "submitted, not graded" : "submitted";
+                        return "- " + sid + " " + s2.getName() + "  [" + state + "]";
+                    }, null, null);
+                    out.printf("Completion %.0f%%: %d missing, %d waiting for a grade%n",
+                            c.completionRate(aid) * 100, missing.cardinality(), ungraded.cardinality());
+                }
+                else if ("6".equals(ch)) return;
+                else if ("7".equals(ch)) {
+                    Course c = pickMyCourse(t);
+                    if (c == null) { out.println("❌ No course selected."); break; }
+                    printStats(c);
+                }
+                else if ("8".equals(ch)) {
+                    Course c = pickMyCourse(t);
+                    if (c == null) { out.println("❌ No course selected."); break; }
+                    grading(t, c);
+                }
+            } catch(Exception e){ out.println("Error: "+e.getMessage()); }
+            finally { Metrics.menu("teacher", ch, started); }
+        }
+    }
+
+    // shows how the course weighs its grades, then lets the teacher change the scheme and re-weight assignments
+    void grading(Teacher t, Course c) {
+        GradingScheme g = c.getGradingScheme();
+        out.println("Grading scheme of " + c.getTitle() + ": " + (g.isNone() ? "none (weighted mean of all grades)" : g));
+        if (!g.isNone() && g.otherWeight() > 0) out.println("Uncategorised assignments: " + GradingScheme.num(g.otherWeight()) + "%");
+        for (Assignment a : c.getAssignments()) {
+            boolean counted = g.isNone() || g.indexOf(a.getCategory()) >= 0 || g.otherWeight() > 0;
+            out.println("- " + a.getId() + " " + a.getTitle() + weighting(a) + (counted ? "" : "  (not counted)"));
+        }
+        out.print("New scheme, e.g. homework=30/drop1, exams=70 (blank keeps it, - for none): ");
+        String spec = line().trim();
+        if (!spec.isEmpty()) {
+            try {
+                t.setGradingScheme(c, spec.equals("-") ? GradingScheme.NONE : GradingScheme.parse(spec));
+                out.println("✅ Scheme set: " + c.getGradingScheme());
+            } catch (IllegalArgumentException e) {
+                out.println("❌ " + e.getMessage());
+            }
+        }
+        while (true) {
+            out.print("Assignment id to re-weight (blank when done): ");
+            String aid = line().trim();
+            if (aid.isEmpty()) return;
+            out.print("Category (blank for none): ");
+            String cat = line().trim();
+            out.print("Weight [1]: ");
+            String w = line().trim();
+            try {
+                if (t.setAssignmentWeight(c, aid, cat, w.isEmpty() ? 1 : Double.parseDouble(w))) out.println("✅ Re-weighted.");
+                else out.println("❌ No such assignment in this course.");
+            } catch (IllegalArgumentException e) {
+                out.println("❌ Weight must be a positive number.");
+            }
+        }
+    }
+
+    private static String weighting(Assignment a) {
+        if (a.isPlain()) return "";
+        return "  [" + (a.getCategory().isEmpty() ? "" : a.getCategory() + ", ") + "weight " + GradingScheme.num(a.getWeight()) + "]";
+    }
+
+    void printStats(Course c) {
+        CourseStats st;
+        synchronized (c) {   // consistent figures while others may be grading
+            st = c.getStats();
+            out.println("Statistics for " + c.getTitle() + ":");
+            if (st.gradedStudents() == 0) { out.println("No grades recorded yet."); return; }
+            out.println("Graded students: " + st.gradedStudents());
+            out.println(String.format("Mean: %.2f  Median: %.2f  P25: %.2f  P75: %.2f  P90: %.2f",
+                    st.mean(), st.median(), st.percentile(25), st.percentile(75), st.percentile(90)));
+            int[] h = st.histogram();
+            out.println("Histogram (final grades):");
+            for (int b = 0; b < h.length; b++) {
+                String range = (b * 10) + "-" + (b == 9 ? 100 : b * 10 + 9);
+                out.println(String.format("  %6s | %s %d", range, "#".repeat(Math.min(h[b], 50)), h[b]));
+            }
+            out.println("Per assignment:");
+            for (Assignment a : c.getAssignments()) {
+                if (st.assignmentGraded(a.getId()) == 0) { out.println("- " + a.getId() + ": no grades"); continue; }
+                out.println(String.format("- %s: mean %.2f, median %d (%d graded)", a.getId(),
+                        st.assignmentMean(a.getId()), st.assignmentPercentile(a.getId(), 50), st.assignmentGraded(a.getId())));
+            }
+        }
+        out.print("Student id for rank (blank to skip): ");
+        String line = line().trim();
+        if (line.isEmpty()) return;
+        int sid = i(line);
+        synchronized (c) {
+            int rank = st.rank(sid);
+            if (rank < 0) out.println("No grades for student " + sid + ".");
+            else out.println(String.format("Student %d: average %.2f, rank %d of %d",
+                    sid, st.studentAverage(sid), rank, st.gradedStudents()));
+        }
+    }
+
+    void studentMenu(Student s){
+        while (true){
+            out.println("\n[STUDENT] 1) My Courses 2) View Assignments & Grades 3) Submit Assignment 4) Back 5) Transcript");
+            String ch = line().trim();
+            long started = Metrics.start();
+            try {
+                if ("1".equals(ch)) {
+                    List<Course> mine = AppState.coursesOf(s);
+                    if (mine.isEmpty()) out.println("Not enrolled in any course.");
+                    for (Course c : mine) out.println(c.getId() + ": " + c.getTitle());
+                }
+                else if ("2".equals(ch)) {
+                    Course c = pickCourse();
+                    if (c == null) { out.println("❌ No course selected."); break; }
+                    out.println("Assignments:");
+                    for (Assignment a : c.getAssignments()){
+                        Integer g = c.getGrade(a.getId(), s.getId());
+                        out.println("- "+a.getId()+" "+a.getTitle()+weighting(a)+"  grade: "+(g==null?"N/A":g));
+                    }
+
+                    double finalGrade = c.getFinalGrade(s.getId());
+                    if (finalGrade >= 0)
+                        out.println("Final grade: " + String.format("%.2f", finalGrade));
+                    else
+                        out.println("No grades recorded yet.");
+                }
+                else if ("3".equals(ch)) {
+                    Course c = pickCourse();
+                    if (c == null) { out.println("❌ No course selected."); break; }
+                    out.print("Assignment id to submit: ");
+                    String aid = line().trim();
+                    if (aid.isEmpty()) { out.println("❌ Assignment id cannot be empty."); break; }
+                    if (!s.submit(c, aid)) {
+                        out.println("❌ No such assignment in this course.");
+                        break;
+                    }
+                    out.println("✅ Submitted " + aid + " for " + c.getTitle());
+                }
+                else if ("4".equals(ch)) return;
+                else if ("5".equals(ch)) printTranscript(s);
+            } catch(Exception e){ out.println("Error: "+e.getMessage()); }
+            finally { Metrics.menu("student", ch, started); }
+        }
+    }
+
+    void printTranscript(Student s) {
+        Transcripts.Transcript t = Transcripts.of(s.getId());
+        out.println("Transcript of " + s.getName() + ":");
+        for (Transcripts.Row r : t.rows()) {
+            String grade = r.hasGrade() ? String.format("%6.2f  %s", r.finalGrade(), r.letter()) : "   N/A";
+            out.println(String.format("- %-8s %-30s %s", r.course().getId(), r.course().getTitle(), grade));
+        }
+        if (t.gpa() >= 0) out.println(String.format("GPA: %.2f over %d graded course(s)", t.gpa(), t.gradedCourses()));
+        else out.println("GPA: N/A (no grades yet)");
+    }
+
+    // ---- helpers for UI ----
+
+    interface Lister<T> { Page<T> page(Page.Sort sort, String after); }
+
+    // Shows a listing a page (Page.SIZE entries) at a time and reads a line after each page:
+    // n / p go forward and back, s switches between id and name order; any other input (an id
+    // to pick, or blank) ends the listing and is returned. Only the pages shown are fetched, the
+    // cursors of the earlier ones are kept for p. A listing that fits on one page has no commands
+    // and only waits for input when there is something to pick (prompt != null); input that
+    // isChoice accepts is never taken for a command.
+    <T> String browse(Lister<T> lister, Function<T, String> format, String prompt, Predicate<String> isChoice) {
+        Page.Sort sort = Page.Sort.ID;
+        List<String> back = new ArrayList<>();   // cursors of the pages before this one (null: the first)
+        String at = null;
+        while (true) {
+            Page<T> page = lister.page(sort, at);
+            if (page.isEmpty()) out.println("(none)");
+            for (T t : page.items()) out.println(format.apply(t));
+            boolean paged = page.hasNext() || !back.isEmpty();
+            if (!paged && prompt == null) return "";
+            if (paged) out.printf("-- %d-%d of %d, by %s: n)ext p)rev s)ort by %s --%n", page.from() + 1,
+                    page.from() + page.items().size(), page.total(), sort == Page.Sort.ID ? "id" : "name",
+                    sort == Page.Sort.ID ? "name" : "id");
+            out.print(prompt == null ? "(Enter to continue) " : prompt);
+            String in = line().trim();
+            if (!paged || isChoice != null && isChoice.test(in)) return in;
+            switch (in.toLowerCase()) {
+                case "n" -> { if (page.hasNext()) { back.add(at); at = page.next(); } }
+                case "p" -> { if (!back.isEmpty()) at = back.remove(back.size() - 1); }
+                case "s" -> { sort = sort == Page.Sort.ID ? Page.Sort.NAME : Page.Sort.ID; back.clear(); at = null; }
+                default -> { return in; }
+            }
+        }
+    }
+
+    void listCourses() {
+        browse((sort, after) -> AppState.courses(sort, after, Page.SIZE), c -> c.getId() + ": " + c.getTitle(), null, null);
+    }
+
+    //overload for teachers only
+    void listCourses(Teacher t) {
+        for (Course c : AppState.coursesOf(t))
+            out.println(c.getId() + ": " + c.getTitle());
+    }
+    // pickers take an id, or anything else as a search (a name, its first letters, with typos)
+    Course pickCourse(){
+        Function<Course, String> line = c -> c.getId() + ": " + c.getTitle();
+        String id = orSearch(browse((sort, after) -> AppState.courses(sort, after, Page.SIZE), line, "courseId or title > ", AppState::courseIdExists),
+                AppState::courseIdExists, q -> AppState.searchCourses(q, Page.SIZE), line, "courseId > ");
+        Course c = AppState.findCourse(id); if (c != null) return c; out.println("Not found."); return null; }
+    Teacher pickTeacher(){
+        Function<Teacher, String> line = t -> t.getId() + ": " + t.getName();
+        Predicate<String> isId = s -> AppState.teacherIdExists(i(s));
+        return AppState.findTeacher(i(orSearch(browse((sort, after) -> AppState.teachers(sort, after, Page.SIZE), line, "teacherId or name > ", isId),
+                isId, q -> AppState.searchTeachers(q, Page.SIZE), line, "teacherId > "))); }
+    Student pickStudent(){
+        Function<Student, String> line = s -> s.getId() + ": " + s.getName();
+        Predicate<String> isId = s -> AppState.studentIdExists(i(s));
+        return AppState.findStudent(i(orSearch(browse((sort, after) -> AppState.students(sort, after, Page.SIZE), line, "studentId or name > ", isId),
+                isId, q -> AppState.searchStudents(q, Page.SIZE), line, "studentId > "))); }
+
+    // id of the teacher or student to update/delete, typed or found by name
+    int userId(String type) {
+        out.print("Enter user id (or name to search): ");
+        String in = line().trim();
+        if (type.equals("teacher"))
+            in = orSearch(in, s -> AppState.teacherIdExists(i(s)), q -> AppState.searchTeachers(q, Page.SIZE), Session::userLine, "Enter user id: ");
+        else if (type.equals("student"))
+            in = orSearch(in, s -> AppState.studentIdExists(i(s)), q -> AppState.searchStudents(q, Page.SIZE), Session::userLine, "Enter user id: ");
+        return Integer.parseInt(in);
+    }
+
+    // input that isId accepts (or blank) as it is; anything else is searched for, the best matches
+    // are listed and the prompt asked again
+    <T> String orSearch(String in, Predicate<String> isId, Function<String, List<T>> search, Function<T, String> format, String prompt) {
+        while (!in.isEmpty() && !isId.test(in)) {
+            List<T> found = search.apply(in);
+            if (found.isEmpty()) out.println("No match for \"" + in + "\".");
+            for (T t : found) out.println(format.apply(t));
+            out.print(prompt);
+            in = line().trim();
+        }
+        return in;
+    }
+    int i(String s){ try { return Integer.parseInt(s.trim()); } catch(Exception e){ return -1; } }
+
+    void printAllUsers() {
+        out.println("\nAdmins:");
+        browse((sort, after) -> AppState.admins(sort, after, Page.SIZE), Session::userLine, null, null);
+        out.println("\nTeachers:");
+        browse((sort, after) -> AppState.teachers(sort, after, Page.SIZE), Session::userLine, null, null);
+        out.println("\nStudents:");
+        browse((sort, after) -> AppState.students(sort, after, Page.SIZE), Session::userLine, null, null);
+    }
+    private static String userLine(User u) { return u.getId() + "  " + u.getName() + " (" + u.getUsername() + ")"; }
+
+    // pick only from THIS teacher's courses
+    Course pickMyCourse(Teacher t) {
+        Collection<Course> mine = AppState.coursesOf(t);
+        for (Course c : mine) out.println(c.getId() + ": " + c.getTitle());
+        if (mine.isEmpty()) {
+            out.println("(none assigned yet)");
+            return null;
+        }
+
+        out.print("courseId > ");
+        String id = line().trim();
+        Course c = AppState.findCourse(id);
+        if (c != null && mine.contains(c)) return c;
+        out.println("Not found (or not your course).");
+        return null;
+    }
+
+}
@@ -0,0 +1,28 @@
+package blackboard.app;
+
+import java.io.PrintStream;
+
+// System.out replacement installed by the Server: text printed by the domain classes
+// ("Course full", "Save ... failed") goes to the session whose thread printed it, and to
+// the server console for everything else (background savers, startup). Only the methods the
+// code base prints with are routed; the rest reach the console.
+final class SessionOut extends PrintStream {
+    private final PrintStream console;
+
+    SessionOut(PrintStream console) { super(console, true); this.console = console; }
+
+    private PrintStream target() {
+        Session s = Session.current();
+        return s == null ? console : s.out;
+    }
+
+    @Override public void print(String s) { target().print(s); }
+    @Override public void print(Object o) { target().print(o); }
+    @Override public void println() { target().println(); }
+    @Override public void println(String s) { target().println(s); }
+    @Override public void println(Object o) { target().println(o); }
+    @Override public PrintStream printf(String format, Object... args) { return target().printf(format, args); }
+    @Override public void write(int b) { target().write(b); }
+    @Override public void write(byte[] b, int off, int len) { target().write(b, off, len); }
+    @Override public void flush() { target().flush(); }
+}
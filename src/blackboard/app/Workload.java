@@ -0,0 +1,240 @@
+package blackboard.app;
+
+import blackboard.courses.Assignment;
+import blackboard.courses.Course;
+import blackboard.courses.CourseStats;
+import blackboard.users.Admin;
+import blackboard.users.Student;
+import blackboard.users.Teacher;
+import blackboard.util.AppState;
+import blackboard.util.DataGenerator;
+import blackboard.util.Journal;
+import blackboard.util.Metrics;
+import blackboard.util.WriteBehind;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Scale tooling on the data/ directory of the working directory:
+//
+//   java blackboard.app.Workload generate [students=10000] [courses=300] [assignments=8] [perStudent=4] [seed=42]
+//   java blackboard.app.Workload replay [threads=8] [ops=1000000] [mix=enroll:5,grade:25,submit:20,view:35,stats:5,login:10]
+//
+// generate adds a synthetic term (see DataGenerator). replay runs `ops` operations spread over
+// `threads` platform threads, each picking an operation by the mix weights and random
+// courses/students, and reports throughput and p50/p99/p999 latency per operation type.
+// Both end like the console's Exit: checkpoint and export to the storage backend.
+public final class Workload {
+    enum Op { ENROLL, GRADE, SUBMIT, VIEW, STATS, LOGIN }
+
+    private static final String DEFAULT_MIX = "enroll:5,grade:25,submit:20,view:35,stats:5,login:10";
+
+    private Workload(){}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || !(args[0].equals("generate") || args[0].equals("replay"))) {
+            System.out.println("usage: Workload generate [students=N] [courses=M] [assignments=K] [perStudent=P] [seed=S]");
+            System.out.println("       Workload replay [threads=T] [ops=N] [mix=" + DEFAULT_MIX + "]");
+            return;
+        }
+        Map<String, String> opt = options(args);
+        Metrics.configure();
+        Files.createDirectories(Paths.get("data"));
+        System.out.println(AppState.loadAll());
+        Journal.replay();
+        if (args[0].equals("generate")) {
+            System.out.println(quietly(() -> DataGenerator.run(new DataGenerator.Spec(
+                    num(opt, "students", 10_000), num(opt, "courses", 300), num(opt, "assignments", 8),
+                    num(opt, "perStudent", 4), num(opt, "seed", 42)))));
+        } else {
+            replay(num(opt, "threads", 8), num(opt, "ops", 1_000_000), weights(opt.getOrDefault("mix", DEFAULT_MIX)));
+        }
+        long t0 = System.nanoTime();
+        WriteBehind.shutdown(); Journal.checkpoint(); AppState.saveAll(); AppState.closeStorage();
+        System.out.println("Checkpoint and export to " + System.getProperty("blackboard.storage", "csv") + ": " + (System.nanoTime() - t0) / 1_000_000 + " ms");
+    }
+
+    // ---- replay ----
+
+    // everything a worker picks from, fixed when the replay starts
+    private record Fixture(Admin admin, Student[] students, Course[] courses, String[][] assignments) {}
+
+    private static void replay(int threads, int ops, int[] weights) throws Exception {
+        Fixture f = fixture();
+        if (f.courses().length == 0 || f.students().length == 0) {
+            System.out.println("Nothing to replay against; run 'generate' first.");
+            return;
+        }
+        int[] cumulative = new int[weights.length];
+        for (int i = 0, sum = 0; i < weights.length; i++) cumulative[i] = sum += weights[i];
+
+        Recorder[] recorders = new Recorder[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int w = 0; w < threads; w++) {
+            Recorder r = recorders[w] = new Recorder(ops / threads + 1);
+            int quota = ops / threads + (w < ops % threads ? 1 : 0);
+            workers[w] = Thread.ofPlatform().name("replay-" + w).start(() -> {
+                try { start.await(); } catch (InterruptedException e) { return; }
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int i = 0; i < quota; i++) {
+                    Op op = pick(cumulative, rnd.nextInt(cumulative[cumulative.length - 1]));
+                    long t = System.nanoTime();
+                    boolean ok;
+                    try { ok = run(op, f, rnd); } catch (Exception e) { ok = false; }
+                    r.record(op, System.nanoTime() - t, ok);
+                }
+            });
+        }
+        long t0 = System.nanoTime();
+        quietly(() -> {
+            start.countDown();
+            for (Thread t : workers) t.join();
+            return null;
+        });
+        double secs = (System.nanoTime() - t0) / 1e9;
+        report(recorders, threads, secs);
+    }
+
+    private static Fixture fixture() {
+        Admin admin = AppState.admins.isEmpty() ? new Admin(0, "replay", "replay", "replay") : AppState.admins.iterator().next();
+        Student[] students = AppState.students.toArray(new Student[0]);
+        List<Course> courses = new ArrayList<>();
+        for (Course c : AppState.courses) if (c.getTeacher() != null && !c.getAssignments().isEmpty()) courses.add(c);
+        String[][] assignments = new String[courses.size()][];
+        for (int i = 0; i < assignments.length; i++)
+            assignments[i] = courses.get(i).getAssignments().stream().map(Assignment::getId).toArray(String[]::new);
+        return new Fixture(admin, students, courses.toArray(new Course[0]), assignments);
+    }
+
+    // one operation as the menus would do it; false if it was refused (full, not enrolled, ...)
+    private static boolean run(Op op, Fixture f, ThreadLocalRandom rnd) throws Exception {
+        int ci = rnd.nextInt(f.courses().length);
+        Course c = f.courses()[ci];
+        String[] as = f.assignments()[ci];
+        switch (op) {
+            case ENROLL -> { return f.admin().enrollStudent(c, f.students()[rnd.nextInt(f.students().length)]); }
+            case GRADE -> {
+                int sid = member(c, rnd);
+                if (sid < 0) return false;
+                Teacher t = c.getTeacher();
+                t.recordGrade(c, as[rnd.nextInt(as.length)], sid, rnd.nextInt(101));
+                return true;
+            }
+            case SUBMIT -> {
+                int sid = member(c, rnd);
+                Student s = sid < 0 ? null : AppState.findStudent(sid);
+                return s != null && s.submit(c, as[rnd.nextInt(as.length)]);
+            }
+            case VIEW -> {   // student menu "View Assignments & Grades"
+                int sid = member(c, rnd);
+                if (sid < 0) return false;
+                for (Assignment a : c.getAssignments()) c.getGrade(a.getId(), sid);
+                c.getFinalGrade(sid);
+                return true;
+            }
+            case STATS -> {   // teacher menu "Course Statistics"
+                synchronized (c) { CourseStats st = c.getStats(); st.mean(); st.median(); st.histogram(); }
+                return true;
+            }
+            case LOGIN -> {
+                Student s = f.students()[rnd.nextInt(f.students().length)];
+                return AppState.authenticate(s.getUsername(), s.getPassword()) != null;
+            }
+        }
+        return false;
+    }
+
+    private static int member(Course c, ThreadLocalRandom rnd) {
+        List<Integer> ids = c.getStudentIds();
+        int n = ids.size();
+        return n == 0 ? -1 : ids.get(rnd.nextInt(n));
+    }
+
+    private static Op pick(int[] cumulative, int r) {
+        for (int i = 0; i < cumulative.length; i++) if (r < cumulative[i]) return Op.values()[i];
+        return Op.values()[cumulative.length - 1];
+    }
+
+    // per worker, no sharing: latencies per operation type plus refusal counts
+    private static final class Recorder {
+        final long[][] nanos = new long[Op.values().length][];
+        final int[] count = new int[Op.values().length], refused = new int[Op.values().length];
+
+        Recorder(int expected) {
+            for (int i = 0; i < nanos.length; i++) nanos[i] = new long[Math.max(16, expected / nanos.length)];
+        }
+
+        void record(Op op, long ns, boolean ok) {
+            int i = op.ordinal();
+            if (count[i] == nanos[i].length) nanos[i] = Arrays.copyOf(nanos[i], count[i] * 2);
+            nanos[i][count[i]++] = ns;
+            if (!ok) refused[i]++;
+        }
+    }
+
+    private static void report(Recorder[] recorders, int threads, double secs) {
+        long total = 0;
+        for (Recorder r : recorders) for (int n : r.count) total += n;
+        System.out.println(String.format("%d ops on %d threads in %.2f s: %.0f ops/s", total, threads, secs, total / secs));
+        System.out.println(String.format("%-7s %10s %10s %9s %9s %9s %9s %8s",
+                "op", "count", "ops/s", "p50 us", "p99 us", "p999 us", "max us", "refused"));
+        for (Op op : Op.values()) {
+            int i = op.ordinal(), n = 0, refused = 0;
+            for (Recorder r : recorders) { n += r.count[i]; refused += r.refused[i]; }
+            if (n == 0) continue;
+            long[] all = new long[n];
+            int at = 0;
+            for (Recorder r : recorders) { System.arraycopy(r.nanos[i], 0, all, at, r.count[i]); at += r.count[i]; }
+            Arrays.sort(all);
+            System.out.println(String.format("%-7s %10d %10.0f %9.1f %9.1f %9.1f %9.1f %8d",
+                    op.name().toLowerCase(), n, n / secs, pct(all, 50), pct(all, 99), pct(all, 99.9), all[n - 1] / 1e3, refused));
+        }
+    }
+
+    private static double pct(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, Math.max(0, (int) Math.ceil(p / 100 * sorted.length) - 1))] / 1e3;
+    }
+
+    // ---- options ----
+
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> m = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            int eq = args[i].indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("expected key=value, got '" + args[i] + "'");
+            m.put(args[i].substring(0, eq), args[i].substring(eq + 1));
+        }
+        return m;
+    }
+
+    private static int num(Map<String, String> opt, String key, int def) {
+        String v = opt.get(key);
+        return v == null ? def : Integer.parseInt(v.replace("_", ""));
+    }
+
+    // "enroll:5,grade:25,..." -> weight per Op (unlisted ops get 0)
+    private static int[] weights(String mix) {
+        int[] w = new int[Op.values().length];
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split(":");
+            if (kv.length != 2) throw new IllegalArgumentException("bad mix entry '" + part + "'");
+            w[Op.valueOf(kv[0].trim().toUpperCase()).ordinal()] = Integer.parseInt(kv[1].trim());
+        }
+        if (Arrays.stream(w).sum() <= 0) throw new IllegalArgumentException("mix has no weight");
+        return w;
+    }
+
+    interface Task<T> { T call() throws Exception; }
+
+    // domain messages ("Course full", ...) are expected noise here
+    private static <T> T quietly(Task<T> task) throws Exception {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try { return task.call(); } finally { System.setOut(console); }
+    }
+}
@@ -1,9 +1,21 @@
 package blackboard.courses;
 
+// An assignment counts towards the final grade with its weight, inside its category of the
+// course's GradingScheme ("" = none). Immutable: Course.setAssignmentWeight replaces it.
 public class Assignment {
     private final String id;
     private final String title;
-    public Assignment(String id, String title) { this.id=id; this.title=title; }
+    private final String category;
+    private final double weight;
+    public Assignment(String id, String title) { this(id, title, "", 1); }
+    public Assignment(String id, String title, String category, double weight) {
+        if (!(weight > 0) || Double.isInfinite(weight)) throw new IllegalArgumentException("weight must be a positive number: " + weight);
+        this.id=id; this.title=title; this.category=category == null ? "" : category.trim(); this.weight=weight;
+    }
     public String getId(){ return id; }
     public String getTitle(){ return title; }
-}
\ No newline at end of file
+    public String getCategory(){ return category; }
+    public double getWeight(){ return weight; }
+    // no category and weight 1: counts like every assignment did before weights
+    public boolean isPlain(){ return category.isEmpty() && weight == 1; }
+}
@@ -2,21 +2,58 @@ package blackboard.courses;
 
 import blackboard.users.Student;
 import blackboard.users.Teacher;
-import blackboard.util.CsvPersistable;
+import blackboard.util.AppState;
+import blackboard.util.Events;
+import blackboard.util.Persistable;
+import blackboard.util.IdBitmap;
+import blackboard.util.Journal;
+import blackboard.util.Metrics;
+import blackboard.util.Page;
 
+import java.io.IOException;
 import java.util.*;
-import java.nio.file.*;
-import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class Course implements CsvPersistable {
+// Thread safety: each course is guarded by its own monitor, so work on different courses never
+// contends. Everything that touches the details or checks-then-changes state (enroll against
+// maxCapacity) is synchronized; callers that journal a change hold the monitor around the change
+// and its journal append, so the journal sees changes to one course in the order they happened.
+//
+// Registration (register/drop): a seat is claimed lock-free with a CAS on seatsTaken, then the
+// request is queued and whichever requester gets the monitor admits everything queued so far in
+// one pass with one journal append (see admitQueued). A full course keeps a FIFO waitlist whose
+// head is promoted as soon as a seat frees up.
+public class Course implements Persistable {
     private final String id;
     private final String title;
     private final int maxCapacity;
-    private Teacher teacher; // nullable
-    private final List<Integer> studentIds = new ArrayList<>();
-    private final List<Assignment> assignments = new ArrayList<>();
-    // store grades as (assignmentId -> (studentId -> grade))
-    private final Map<String, Map<Integer,Integer>> grades = new HashMap<>();
+    private volatile Teacher teacher; // nullable
+    private final EnrollmentSet studentIds = new EnrollmentSet();
+    private final AtomicInteger seatsTaken = new AtomicInteger();          // enrolled + claimed by queued requests
+    private final LinkedHashSet<Integer> waitlist = new LinkedHashSet<>();  // FIFO, under the monitor
+    private volatile int waiting;                                           // waitlist.size() for the CAS path
+    private final ConcurrentLinkedQueue<Request> requests = new ConcurrentLinkedQueue<>();
+    // course details (assignments, grades, submissions) are hydrated lazily from source
+    // and may be evicted again by CourseCache; enrollment and metadata stay resident
+    private List<Assignment> assignments = new ArrayList<>();
+    // grades live in a dense (assignment x student) int grid
+    private Gradebook grades = new Gradebook();
+    private CourseStats stats = new CourseStats(grades);
+    private GradingScheme scheme = GradingScheme.NONE;
+    private GradeCalculator calc;         // scheme + weights compiled for grades; null = rebuild
+    private static final IdBitmap EMPTY = new IdBitmap();
+    private Map<String, IdBitmap> submissions = new HashMap<>();   // assignment id -> student ids
+    private CourseSource source;          // null = only exists in memory so far
+    private boolean hydrated = true;
+    private boolean loading;              // inside source.hydrate(): no per-call cache bookkeeping
+    private boolean detailsDirty;         // details differ from source
+    private long version;                 // bumped by every detail change (see rebase)
+    volatile long lastUsed;               // CourseCache: when the details were last used
+    private int unsized;                  // detail changes since CourseCache last counted the size
+    // stored copy out of date: the course line / the details (new courses start dirty)
+    private volatile boolean dirty = true;
+    private volatile boolean storedDetailsStale;
 
     public Course(String id, String title, int maxCapacity) {
         this.id=id; this.title=title; this.maxCapacity=maxCapacity;
@@ -26,140 +63,498 @@ public class Course implements CsvPersistable {
     public String getTitle(){ return title; }
     public int getMaxCapacity(){ return maxCapacity; }
     public Teacher getTeacher(){ return teacher; }
-    public void setTeacher(Teacher t){ this.teacher=t; }
+    public synchronized void setTeacher(Teacher t){ this.teacher=t; dirty = true; }
 
-    public boolean enroll(Student s){
+    public synchronized boolean enroll(Student s){
         if (s==null) return false;
         if (studentIds.contains(s.getId())) { System.out.println("Already enrolled"); return false; }
-        if (maxCapacity>0 && studentIds.size()>=maxCapacity){ System.out.println("Course full"); return false; }
-        studentIds.add(s.getId()); return true;
+        if (!claimSeat()){ System.out.println("Course full"); return false; }
+        studentIds.add(s.getId()); unwait(s.getId()); dirty = true;
+        Transcripts.enrolled(this, s.getId(), currentGrade(s.getId()));
+        Events.studentEnrolled(id, s.getId());
+        return true;
     }
 
-    public List<Integer> getStudentIds(){ return Collections.unmodifiableList(studentIds); }
-    public List<Assignment> getAssignments(){ return Collections.unmodifiableList(assignments); }
+    public List<Integer> getStudentIds(){ return studentIds.asList(); }
+    // loaders only: re-add a persisted enrollment / waitlist entry / drop without capacity checks
+    // or promotion (the journal has a record for every promotion)
+    public synchronized void restoreStudent(int studentId){
+        if (studentIds.add(studentId)) { seatsTaken.incrementAndGet(); Transcripts.enrolled(this, studentId, currentGrade(studentId)); }
+        unwait(studentId);
+    }
+    public synchronized void restoreWaitlisted(int studentId){
+        if (!studentIds.contains(studentId) && waitlist.add(studentId)) waiting = waitlist.size();
+    }
+    public synchronized void restoreDropped(int studentId){
+        if (studentIds.remove(studentId)) { seatsTaken.decrementAndGet(); dirty = true; Transcripts.dropped(this, studentId); }
+        else if (unwait(studentId)) dirty = true;
+    }
+    public boolean isEnrolled(int studentId){ return studentIds.contains(studentId); }
+
+    // ---- registration ----
+
+    public enum Seat { ENROLLED, WAITLISTED, DROPPED }
+
+    // outcome of register(): ENROLLED, or WAITLISTED at `position` (1 = next to get a seat);
+    // repeat = the student already had that seat, so a retried request changed nothing
+    public record Admission(Seat seat, int position, boolean repeat) {}
+
+    // filled in by whichever thread admits it (under the monitor)
+    private static final class Request {
+        final int studentId;
+        final boolean seated;
+        Admission result;
+        IOException failure;
+        Request(int studentId, boolean seated) { this.studentId = studentId; this.seated = seated; }
+    }
+
+    // what one admission pass or drop changed, journaled in a single append
+    private static final class SeatLog {
+        int[] students = new int[16];
+        Seat[] seats = new Seat[16];
+        int n;
+        void add(int studentId, Seat seat) {
+            if (n == students.length) { students = Arrays.copyOf(students, n * 2); seats = Arrays.copyOf(seats, n * 2); }
+            students[n] = studentId; seats[n++] = seat;
+        }
+    }
+
+    // Enrolls s, or puts them on the waitlist when the course is full. Idempotent: retrying a request
+    // that already went through returns the same seat with repeat=true. Durable (journaled) on return.
+    public Admission register(Student s) throws IOException {
+        int sid = s.getId();
+        if (studentIds.contains(sid)) return new Admission(Seat.ENROLLED, 0, true);
+        long t = Metrics.start();
+        Request r = new Request(sid, claimSeat());
+        requests.add(r);
+        synchronized (this) { if (r.result == null) admitQueued(); }
+        Metrics.REGISTER.stop(t);
+        if (r.failure != null) throw r.failure;
+        return r.result;
+    }
+
+    // Removes an enrollment or a waitlist entry; a freed seat goes to the head of the waitlist.
+    public synchronized boolean drop(int studentId) throws IOException {
+        if (studentIds.remove(studentId)) { seatsTaken.decrementAndGet(); Transcripts.dropped(this, studentId); }
+        else if (!unwait(studentId)) return false;
+        Events.studentDropped(id, studentId);
+        SeatLog log = new SeatLog();
+        log.add(studentId, Seat.DROPPED);
+        promote(log);
+        dirty = true;
+        Journal.seats(this, log.students, log.seats, log.n);
+        return true;
+    }
+
+    public synchronized List<Integer> getWaitlist(){ return List.copyOf(waitlist); }
+
+    // 1-based place on the waitlist, 0 if not on it
+    public synchronized int waitlistPosition(int studentId){
+        if (!waitlist.contains(studentId)) return 0;
+        int i = 1;
+        for (int id : waitlist) { if (id == studentId) return i; i++; }
+        return 0;
+    }
+
+    // A seat for a new request; never jumps a waitlist (those seats are handed out by promote).
+    private boolean claimSeat(){ return waiting == 0 && claim(); }
+
+    private boolean claim(){
+        if (maxCapacity <= 0) { seatsTaken.incrementAndGet(); return true; }
+        for (int n; (n = seatsTaken.get()) < maxCapacity; ) if (seatsTaken.compareAndSet(n, n + 1)) return true;
+        return false;
+    }
+
+    // Under the monitor: applies every queued request (ours and any that piled up behind the lock),
+    // then promotes into seats released meanwhile, and journals the lot with one append and flush.
+    private void admitQueued() {
+        SeatLog log = new SeatLog();
+        List<Request> batch = new ArrayList<>();
+        for (Request q; (q = requests.poll()) != null; ) { batch.add(q); q.result = admit(q, log); }
+        promote(log);
+        if (log.n == 0) return;
+        dirty = true;
+        try { Journal.seats(this, log.students, log.seats, log.n); }
+        catch (IOException e) { for (Request q : batch) q.failure = e; }
+    }
 
-    public void addAssignment(Assignment a){
+    private Admission admit(Request q, SeatLog log) {
+        int sid = q.studentId;
+        boolean enrolled = studentIds.contains(sid);
+        if (enrolled || waitlist.contains(sid)) {   // a retry racing the original request
+            if (q.seated) seatsTaken.decrementAndGet();
+            return enrolled ? new Admission(Seat.ENROLLED, 0, true) : new Admission(Seat.WAITLISTED, waitlistPosition(sid), true);
+        }
+        if (q.seated || claimSeat()) {
+            studentIds.add(sid);
+            Transcripts.enrolled(this, sid, currentGrade(sid));
+            Events.studentEnrolled(id, sid);
+            log.add(sid, Seat.ENROLLED);
+            return new Admission(Seat.ENROLLED, 0, false);
+        }
+        waitlist.add(sid);
+        waiting = waitlist.size();
+        log.add(sid, Seat.WAITLISTED);
+        return new Admission(Seat.WAITLISTED, waitlist.size(), false);
+    }
+
+    private void promote(SeatLog log) {
+        while (!waitlist.isEmpty() && claim()) {
+            Iterator<Integer> head = waitlist.iterator();
+            int sid = head.next();
+            head.remove();
+            studentIds.add(sid);
+            Transcripts.enrolled(this, sid, currentGrade(sid));
+            Events.studentEnrolled(id, sid);
+            log.add(sid, Seat.ENROLLED);
+        }
+        waiting = waitlist.size();
+    }
+
+    private boolean unwait(int studentId){
+        if (waiting == 0 || !waitlist.remove(studentId)) return false;
+        waiting = waitlist.size();
+        return true;
+    }
+    // copy, so callers can iterate while others add assignments
+    public synchronized List<Assignment> getAssignments(){ details(); return List.copyOf(assignments); }
+
+    public synchronized void addAssignment(Assignment a){
         if (a==null) return;
+        details();
         for (Assignment x: assignments) if (x.getId().equals(a.getId())) return;
         assignments.add(a);
+        calc = null;
+        changed();
+        if (!a.isPlain() && grades.ordinal(a.getId()) >= 0) regrade();   // grades recorded before it existed
     }
 
-    private final Map<String, java.util.Set<Integer>> submissions = new HashMap<>();
+    // ---- weighted grading (see GradingScheme) ----
 
-    public void setGrade(String assignmentId, int studentId, int grade){
-        grades.computeIfAbsent(assignmentId,k->new HashMap<>()).put(studentId, grade);
-    }
-    public Integer getGrade(String assignmentId, int studentId){
-        Map<Integer,Integer> m = grades.get(assignmentId);
-        return (m==null)? null : m.get(studentId);
+    public synchronized GradingScheme getGradingScheme(){ details(); return scheme; }
+
+    public synchronized void setGradingScheme(GradingScheme s){
+        details();
+        scheme = s == null ? GradingScheme.NONE : s;
+        calc = null;
+        changed();
+        regrade();
     }
 
-    public double getFinalGrade(int studentId) {
-        int total = 0, count = 0;
-        for (Map<Integer, Integer> m : grades.values()) {
-            if (m.containsKey(studentId)) {
-                total += m.get(studentId);
-                count++;
-            }
+    // re-weights an existing assignment; false if there is no such assignment
+    public synchronized boolean setAssignmentWeight(String assignmentId, String category, double weight){
+        details();
+        for (int i = 0; i < assignments.size(); i++) {
+            Assignment a = assignments.get(i);
+            if (!a.getId().equals(assignmentId)) continue;
+            assignments.set(i, new Assignment(a.getId(), a.getTitle(), category, weight));
+            calc = null;
+            changed();
+            regrade();
+            return true;
         }
-        return count == 0 ? -1 : (double) total / count;
+        return false;
     }
 
-    public void markSubmitted(String assignmentId, int studentId) {
-        submissions.computeIfAbsent(assignmentId, k -> new java.util.HashSet<>()).add(studentId);
+    private GradeCalculator calc(){
+        if (calc == null || !calc.fits(grades)) calc = new GradeCalculator(scheme, assignments, grades);
+        return calc;
     }
 
-    public boolean hasSubmitted(String assignmentId, int studentId) {
-        return submissions.getOrDefault(assignmentId, java.util.Collections.emptySet()).contains(studentId);
+    // every final grade again (a load, new weights or scheme); transcripts follow unless loading
+    private void regrade(){
+        if (loading) return;   // details() regrades once the whole load is in
+        stats.regrade(calc());
+        for (int i = 0, n = studentIds.size(); i < n; i++) {
+            int sid = studentIds.get(i);
+            Transcripts.graded(this, sid, stats.studentAverage(sid));
+        }
     }
 
-    public void saveSubmissions() throws Exception {
-        Path dir = Paths.get("data","submissions"); Files.createDirectories(dir);
-        Path file = dir.resolve(safe(id)+".csv");
-        StringBuilder sb = new StringBuilder();
-        for (var e : submissions.entrySet()) {
-            for (int sid : e.getValue()) {
-                sb.append(e.getKey()).append(",").append(sid).append('\n');
-            }
+    // Final grades of every enrolled student (roster order; -1 = nothing graded that counts),
+    // computed afresh in one pass over the gradebook: what end-of-term finalization reads.
+    public record FinalGrades(String courseId, int[] students, double[] grades) {}
+
+    public synchronized FinalGrades finalGrades(){
+        details();
+        double[] bySlot = calc().finals(grades);
+        int n = studentIds.size();
+        int[] sids = new int[n];
+        double[] out = new double[n];
+        for (int i = 0; i < n; i++) {
+            int sid = sids[i] = studentIds.get(i), slot = grades.slot(sid);
+            out[i] = slot < 0 ? -1 : bySlot[slot];
         }
-        Files.writeString(file, sb.toString(), StandardCharsets.UTF_8);
-    }
-
-    public void loadSubmissionsIfExists() throws Exception {
-        Path file = Paths.get("data","submissions", safe(id)+".csv");
-        if (!Files.exists(file)) return;
-        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
-            if (line.isBlank()) continue;
-            String[] p = line.split(",", -1);
-            if (p.length >= 2) {
-                String aid = p[0];
-                int sid = parseInt(p[1], -1);
-                if (sid >= 0) markSubmitted(aid, sid);
+        return new FinalGrades(id, sids, out);
+    }
+
+    public synchronized void setGrade(String assignmentId, int studentId, int grade){
+        details();
+        int old = grades.set(assignmentId, studentId, grade);
+        stats.record(grades.ordinal(assignmentId), grades.slot(studentId), old, grade, loading ? null : calc());
+        changed();
+        if (loading) return;
+        Transcripts.graded(this, studentId, stats.studentAverage(studentId));
+        Events.gradeRecorded(id, assignmentId, studentId, grade);
+    }
+    public synchronized Integer getGrade(String assignmentId, int studentId){
+        details();
+        int g = grades.get(assignmentId, studentId);
+        return (g==Gradebook.NO_GRADE)? null : g;
+    }
+
+    // weighted by the grading scheme; kept current by setGrade, so this is a lookup
+    public synchronized double getFinalGrade(int studentId) {
+        details();
+        return stats.studentAverage(studentId);
+    }
+
+    // final grade for the transcript: unknown (NaN) while the grades are not in memory
+    private double currentGrade(int studentId){ return hydrated && !loading ? stats.studentAverage(studentId) : Double.NaN; }
+
+    // Transcripts.of: fills in the student's row (hydrating if needed)
+    synchronized void publishGrade(int studentId){
+        details();
+        if (studentIds.contains(studentId)) Transcripts.graded(this, studentId, stats.studentAverage(studentId));
+    }
+
+    // live object: read it under the course's monitor if grades may change meanwhile
+    public synchronized CourseStats getStats(){ details(); return stats; }
+
+    public synchronized void forEachGrade(Gradebook.GradeVisitor v){ details(); grades.forEach(v); }
+
+    public interface SubmissionVisitor { void visit(String assignmentId, int studentId); }
+    public synchronized void forEachSubmission(SubmissionVisitor v){
+        details();
+        for (var e : submissions.entrySet()) e.getValue().forEach(sid -> v.visit(e.getKey(), sid));
+    }
+
+    public synchronized void markSubmitted(String assignmentId, int studentId) {
+        details();
+        if (!submissions.computeIfAbsent(assignmentId, k -> new IdBitmap()).add(studentId)) return;
+        changed();
+        if (!loading) Events.submissionMade(id, assignmentId, studentId);
+    }
+    // loaders: a whole assignment's submissions at once
+    public synchronized void markSubmitted(String assignmentId, IdBitmap studentIds) {
+        details();
+        IdBitmap had = submissions.get(assignmentId);
+        submissions.put(assignmentId, had == null ? studentIds.copy() : IdBitmap.or(had, studentIds));
+        changed();
+    }
+
+    private void changed(){
+        detailsDirty = storedDetailsStale = true; version++;
+        if (!loading && ++unsized >= CourseCache.RESIZE_EVERY) { unsized = 0; CourseCache.resized(this); }
+    }
+
+    public synchronized boolean hasSubmitted(String assignmentId, int studentId) {
+        details();
+        IdBitmap done = submissions.get(assignmentId);
+        return done != null && done.contains(studentId);
+    }
+
+    // ---- submission sets (copies; ids of enrolled students unless said otherwise) ----
+
+    public synchronized List<String> submittedAssignments(){ details(); return List.copyOf(submissions.keySet()); }
+
+    public synchronized IdBitmap enrolledIds(){ return studentIds.bitmap(); }
+
+    // everyone who submitted, enrolled or not (a dropped student's work stays recorded)
+    public synchronized IdBitmap submitted(String assignmentId) {
+        details();
+        IdBitmap done = submissions.get(assignmentId);
+        return done == null ? new IdBitmap() : done.copy();
+    }
+
+    public synchronized IdBitmap notSubmitted(String assignmentId) {
+        details();
+        IdBitmap done = submissions.get(assignmentId);
+        return done == null ? studentIds.bitmap() : studentIds.without(done);
+    }
+
+    public synchronized IdBitmap ungraded(String assignmentId) {
+        details();
+        IdBitmap done = submissions.get(assignmentId);
+        return done == null ? new IdBitmap() : IdBitmap.andNot(done, grades.graded(assignmentId));
+    }
+
+    // A page of the enrolled students (only those who have not submitted notSubmittedFor, when it
+    // is given) sorted by id or name; see Page for the cursor. Costs the roster size, not the
+    // number of students in the system.
+    public Page<Student> students(Page.Sort sort, String notSubmittedFor, String after, int limit) {
+        IdBitmap ids = notSubmittedFor == null ? enrolledIds() : notSubmitted(notSubmittedFor);
+        return AppState.students(sort, after, limit, ids);   // outside the monitor: the directory has its own lock
+    }
+
+    // share of enrolled students who submitted, 0..1 (0 for an empty course)
+    public synchronized double completionRate(String assignmentId) {
+        details();
+        IdBitmap done = submissions.get(assignmentId);
+        int n = studentIds.size();
+        return done == null || n == 0 ? 0 : (double) studentIds.countIn(done) / n;
+    }
+
+    // point-in-time copy for exports: grades[a][i] / submitted[a][i] belong to
+    // assignments[a] and students[i] (roster order), NO_GRADE where there is none
+    public record Roster(String courseId, String title, int[] students, String[] assignments,
+                         int[][] grades, boolean[][] submitted) {}
+
+    public synchronized Roster roster(){
+        details();
+        int n = studentIds.size();
+        int[] sids = new int[n];
+        for (int i = 0; i < n; i++) sids[i] = studentIds.get(i);
+        String[] aids = new String[assignments.size()];
+        int[][] g = new int[aids.length][n];
+        boolean[][] sub = new boolean[aids.length][n];
+        for (int a = 0; a < aids.length; a++) {
+            aids[a] = assignments.get(a).getId();
+            int ord = grades.ordinal(aids[a]);
+            IdBitmap done = submissions.getOrDefault(aids[a], EMPTY);
+            for (int i = 0; i < n; i++) {
+                int slot = ord < 0 ? -1 : grades.slot(sids[i]);
+                g[a][i] = slot < 0 ? Gradebook.NO_GRADE : grades.grade(ord, slot);
+                sub[a][i] = done.contains(sids[i]);
             }
         }
+        return new Roster(id, title, sids, aids, g, sub);
     }
 
-    // ----------------- Persistence -----------------
+    // ----------------- Lazy hydration -----------------
+
+    // marks the details as living in src; they are loaded on first access
+    public synchronized void setSource(CourseSource src){
+        CourseCache.forget(this);
+        discardDetails(src);
+        for (int i = 0, n = studentIds.size(); i < n; i++) Transcripts.graded(this, studentIds.get(i), Double.NaN);   // not known until hydrated
+    }
+    private void discardDetails(CourseSource src){
+        source = src; hydrated = false; detailsDirty = false;
+        assignments = new ArrayList<>(); grades = new Gradebook(); stats = new CourseStats(grades);
+        scheme = GradingScheme.NONE; calc = null;
+        submissions = new HashMap<>();
+    }
+    // re-points the course at a new copy of its details, taken when detailsVersion() was version.
+    // Ignored if the course changed since: it is then either still dirty or already written back.
+    public synchronized void rebase(CourseSource src, long version){
+        if (this.version != version) return;
+        source = src;
+        detailsDirty = false;
+    }
+    // the details as a throwaway Course read from the source when this one is cold, so that they
+    // can be encoded without making it resident (Snapshot.write visits every course); this if hot
+    public synchronized Course peekDetails(){
+        if (hydrated || source == null) return this;
+        Course copy = new Course(id, title, maxCapacity);
+        copy.loading = true;   // for good: no cache bookkeeping, transcripts or events for the copy
+        try { source.hydrate(copy); }
+        catch (Exception e) { throw new IllegalStateException("Could not load course " + id + ": " + e.getMessage(), e); }
+        return copy;
+    }
+    public synchronized long detailsVersion(){ return version; }
+    public synchronized CourseSource getSource(){ return source; }
+    public synchronized boolean isHydrated(){ return hydrated; }
 
-    public void save() throws Exception {
-        Path dir = Paths.get("data","courses"); Files.createDirectories(dir);
-        Path file = dir.resolve(safe(id)+".csv");
-        String teacherId = (teacher==null) ? "" : String.valueOf(teacher.getId());
-        String students = String.join(";", studentIds.stream().map(String::valueOf).toList());
-        String line = String.join(",", id, title, String.valueOf(maxCapacity), teacherId, students);
-        Files.writeString(file, line+System.lineSeparator(), StandardCharsets.UTF_8);
-    }
-
-    public static Course load(Path file) throws Exception {
-        String data = Files.readString(file, StandardCharsets.UTF_8).trim();
-        if (data.isEmpty()) return null;
-        String[] p = data.split(",", -1);
-        // id,title,maxCapacity,teacherId,students
-        String id = p[0]; String title = p[1];
-        int cap = parseInt(p[2], 0);
-        Course c = new Course(id,title,cap);
-        // teacher resolved later in AppState
-        if (p.length>=5 && !p[4].isEmpty()){
-            for (String tok : p[4].split(";")){
-                if (!tok.isEmpty()) c.studentIds.add(parseInt(tok,-1));
+    private void details(){
+        if (loading) return;
+        boolean missed = !hydrated;
+        if (missed) {
+            hydrated = true;   // loaders below call back into the public mutators
+            loading = true;
+            long v = version;
+            try { source.hydrate(this); }
+            catch (Exception e) {
+                discardDetails(source);
+                throw new IllegalStateException("Could not load course " + id + ": " + e.getMessage(), e);
+            }
+            finally { loading = false; }
+            stats.regrade(calc());
+            detailsDirty = storedDetailsStale = false;
+            version = v;       // loading is not a change
+            for (int i = 0, n = studentIds.size(); i < n; i++) {
+                int sid = studentIds.get(i);
+                Transcripts.graded(this, sid, stats.studentAverage(sid));
             }
         }
-        return c;
+        CourseCache.access(this, missed);
     }
 
-    public void saveAssignments() throws Exception {
-        Path dir = Paths.get("data","assignments"); Files.createDirectories(dir);
-        Path file = dir.resolve(safe(id)+".csv");
-        StringBuilder sb = new StringBuilder();
-        for (Assignment a: assignments){
-            sb.append(String.join(",", a.getId(), a.getTitle())).append('\n');
+    // CourseCache evictor only: write back if changed, then discard the details.
+    // A cold course therefore always has current details in the storage backend.
+    // Returns -1 if skipped (cold already), 1 if it wrote back, else 0.
+    synchronized int evict() throws Exception {
+        if (!hydrated) return -1;
+        boolean wrote = detailsDirty || storedDetailsStale || source == null;
+        if (wrote) {
+            writeAssignments(); writeGrades(); writeSubmissions();
+            storedDetailsStale = false;
+            source = AppState.storage();
         }
-        Files.writeString(file, sb.toString(), StandardCharsets.UTF_8);
+        discardDetails(source);
+        CourseCache.forget(this);
+        return wrote ? 1 : 0;
     }
+    synchronized void touch(){ if (hydrated) CourseCache.resized(this); }
 
-    public void saveGrades() throws Exception {
-        Path dir = Paths.get("data","grades"); Files.createDirectories(dir);
-        Path file = dir.resolve(safe(id)+".csv");
-        StringBuilder sb = new StringBuilder();
-        for (var e : grades.entrySet()){
-            String aid = e.getKey();
-            for (var g : e.getValue().entrySet()){
-                sb.append(String.join(",", aid, String.valueOf(g.getKey()), String.valueOf(g.getValue()))).append('\n');
-            }
-        }
-        Files.writeString(file, sb.toString(), StandardCharsets.UTF_8);
+    // rough retained size of the hydrated details, for the cache budget (under the course lock)
+    long estimateBytes(){
+        long n = 256 + assignments.size() * 96L + grades.estimateBytes() + stats.estimateBytes();
+        for (IdBitmap s : submissions.values()) n += 64 + s.estimateBytes();
+        return n;
     }
 
-    public boolean hasAssignment(String assignmentId) {
+    // ----------------- Persistence -----------------
+
+    // details go to the storage backend as they are now (the backend copies what it keeps)
+    public synchronized void saveSubmissions() throws Exception { details(); writeSubmissions(); }
+    private void writeSubmissions() throws Exception {
+        long t = Metrics.start();
+        AppState.storage().saveSubmissions(id, Collections.unmodifiableMap(submissions));
+        Metrics.SAVE_SUBMISSIONS.stop(t);
+    }
+    public synchronized void saveAssignments() throws Exception { details(); writeAssignments(); }
+    private void writeAssignments() throws Exception {
+        long t = Metrics.start();
+        AppState.storage().saveAssignments(id, scheme, Collections.unmodifiableList(assignments));
+        Metrics.SAVE_ASSIGNMENTS.stop(t);
+    }
+    public synchronized void saveGrades() throws Exception { details(); writeGrades(); }
+    private void writeGrades() throws Exception {
+        long t = Metrics.start();
+        AppState.storage().saveGrades(id, grades);
+        Metrics.SAVE_GRADES.stop(t);
+    }
+
+    public boolean isDirty(){ return dirty || storedDetailsStale; }
+    public void markDirty(){ dirty = true; }
+    public void markClean(){ dirty = false; storedDetailsStale = false; }
+    // nothing of it is in the storage backend yet (a backend filled from a snapshot)
+    public void markUnsaved(){ dirty = true; storedDetailsStale = true; }
+
+    // writes the course line, plus the details if they changed since the last save. Only hydrates
+    // after markUnsaved() (a cold course's stored details are otherwise current), so it is safe
+    // from the write-behind thread. The flags clear only once every write went through, so a
+    // failed save stays dirty and the next saveAll or write-behind batch retries it.
+    public synchronized void save() throws Exception {
+        long t = Metrics.start();
+        boolean stale = storedDetailsStale;
+        if (stale && !hydrated && source != null) details();   // markUnsaved() on a cold course
+        boolean withDetails = hydrated && stale;
+        if (withDetails) { writeAssignments(); writeGrades(); writeSubmissions(); }
+        AppState.storage().saveCourse(this);
+        if (withDetails) storedDetailsStale = false;
+        dirty = false;
+        Metrics.COURSE_SAVE.stop(t);
+    }
+
+    public synchronized boolean hasAssignment(String assignmentId) {
         if (assignmentId == null) return false;
+        details();
         String needle = assignmentId.trim();
-        for (Assignment a : getAssignments()) {
+        for (Assignment a : assignments) {
             if (a.getId().equals(needle)) return true;
         }
         return false;
     }
-
-    // small helpers (local)
-    private static String safe(String s){ return s.replaceAll("[^a-zA-Z0-9._-]","_"); }
-    private static int parseInt(String s,int fb){ try{return Integer.parseInt(s.trim());}catch(Exception e){return fb;}}
-}
\ No newline at end of file
+}
@@ -0,0 +1,149 @@
+package blackboard.courses;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// LRU set of hydrated courses, bounded by an estimated heap budget.
+// When the budget is exceeded the least recently used courses are written back
+// (only if they changed) and their assignments/grades/submissions are dropped.
+// Budget: -Dblackboard.cache.bytes=<n> (default 256 MB) or setBudgetBytes().
+//
+// Nothing on the access path is written by other courses' accesses: access() stamps the course
+// with a clock that only misses advance (a field of its own, mostly already current), bumps
+// striped counters and checks the resident map without locking. Sizes
+// are estimated when a course is hydrated and every RESIZE_EVERY detail changes after that
+// (Course.changed), and summed in an atomic counter. Only going over the budget takes the
+// cache's monitor: shrink() orders the resident courses by their stamps and queues victims down
+// to 15/16 of the budget, so that not every miss evicts. Victims stay counted until they are
+// evicted, and are evicted even if used meanwhile (they come back on their next access):
+// skipping them would let a busy working set grow past the budget.
+//
+// Lock order is always course -> cache: access() runs under the caller's course lock, so
+// victims are only picked here and evicted by a background thread that holds no other lock.
+public final class CourseCache {
+    static final int RESIZE_EVERY = 256;
+    private static volatile long budget = Long.getLong("blackboard.cache.bytes", 256L << 20);
+    private static final ConcurrentHashMap<Course, Long> resident = new ConcurrentHashMap<>();   // -> estimated bytes
+    private static final AtomicLong residentBytes = new AtomicLong();
+    private static volatile long clock;   // LRU time: advances on every miss and resize, not on hits
+    // guarded by CourseCache.class: victims not evicted yet (-> their bytes when picked), in LRU order
+    private static final Map<Course, Long> queued = new LinkedHashMap<>();
+    private static long queuedBytes;
+    private static Thread evictor;
+    private static final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder(), writeBacks = new LongAdder();
+
+    private CourseCache(){}
+
+    public static void setBudgetBytes(long bytes) { budget = bytes; if (residentBytes.get() > bytes) shrink(null); }
+    public static long getBudgetBytes() { return budget; }
+    public static long getResidentBytes() { return residentBytes.get(); }
+    public static int getResidentCourses() { return resident.size(); }
+    public static long getHits() { return hits.sum(); }
+    public static long getMisses() { return misses.sum(); }
+    public static long getEvictions() { return evictions.sum(); }
+    public static long getWriteBacks() { return writeBacks.sum(); }
+
+    public static String summary() {
+        return String.format("course cache: %d resident (%d KB of %d KB), hits %d, misses %d, evictions %d, write-backs %d",
+                resident.size(), residentBytes.get() >> 10, budget >> 10, hits.sum(), misses.sum(), evictions.sum(), writeBacks.sum());
+    }
+
+    // called by Course on every detail access; missed = the course had to be hydrated first
+    static void access(Course c, boolean missed) {
+        long now = clock;
+        if (c.lastUsed != now) c.lastUsed = now;   // most hits store nothing
+        if (missed) misses.increment(); else hits.increment();
+        if (missed || !resident.containsKey(c)) resized(c);   // hydrated, or created in memory
+    }
+
+    // (re)counts the course at its current size (under its lock): hydrated, created or grown
+    static void resized(Course c) {
+        clock++;   // racy increments may collide; stamps only need to order roughly
+        long size = c.estimateBytes();
+        resident.compute(c, (k, old) -> { residentBytes.addAndGet(size - (old == null ? 0 : old)); return size; });
+        if (residentBytes.get() > budget) shrink(c);
+    }
+
+    // course evicted, dropped from AppState or reloaded
+    static void forget(Course c) {
+        Long old = resident.remove(c);
+        if (old != null) residentBytes.addAndGet(-old);
+    }
+
+    public static synchronized void clear() { resident.clear(); queued.clear(); queuedBytes = 0; residentBytes.set(0); }
+
+    // stops the evictor once the course it is on is done, dropping the rest of its queue (reset
+    // path): nothing is written back after this returns. The next shrink starts a new one.
+    public static void stop() {
+        Thread old;
+        synchronized (CourseCache.class) {
+            old = evictor;
+            evictor = null;
+            queued.clear();
+            queuedBytes = 0;
+            CourseCache.class.notifyAll();
+        }
+        if (old != null && old != Thread.currentThread()) {
+            try { old.join(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }
+    }
+
+    // queues least recently used courses for the evictor
+    private static synchronized void shrink(Course keep) {
+        long target = budget - budget / 16;
+        if (residentBytes.get() - queuedBytes <= budget) return;   // queued already, or another thread shrank
+        record Stamp(Course course, long used) {}
+        List<Stamp> lru = new ArrayList<>(resident.size());
+        for (Course c : resident.keySet()) if (c != keep && !queued.containsKey(c)) lru.add(new Stamp(c, c.lastUsed));
+        lru.sort(Comparator.comparingLong(Stamp::used));
+        for (Stamp v : lru) {
+            if (residentBytes.get() - queuedBytes <= target) break;
+            Long size = resident.get(v.course());
+            if (size == null) continue;
+            queued.put(v.course(), size);
+            queuedBytes += size;
+        }
+        if (queued.isEmpty()) return;
+        if (evictor == null) {
+            evictor = new Thread(CourseCache::evictLoop, "course-evictor");
+            evictor.setDaemon(true);
+            evictor.start();
+        }
+        CourseCache.class.notifyAll();
+    }
+
+    private static void evictLoop() {
+        while (true) {
+            List<Course> batch;
+            synchronized (CourseCache.class) {
+                while (queued.isEmpty() && evictor == Thread.currentThread()) {
+                    try { CourseCache.class.wait(); } catch (InterruptedException e) { return; }
+                }
+                if (evictor != Thread.currentThread()) return;   // stopped
+                batch = new ArrayList<>(queued.keySet());
+            }
+            for (Course c : batch) {
+                synchronized (CourseCache.class) { if (!queued.containsKey(c)) continue; }   // dropped by stop() or clear()
+                try {
+                    int r = c.evict();   // takes the course lock; forgets the course once dropped
+                    if (r >= 0) evictions.increment();
+                    if (r > 0) writeBacks.increment();
+                } catch (Exception ex) {
+                    System.out.println("Write-back failed for course " + c.getId() + ": " + ex.getMessage());
+                    c.touch();           // keep it resident rather than lose changes
+                } finally {
+                    synchronized (CourseCache.class) {
+                        Long size = queued.remove(c);
+                        if (size != null) queuedBytes -= size;
+                    }
+                }
+            }
+        }
+    }
+}
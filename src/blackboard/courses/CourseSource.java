@@ -0,0 +1,7 @@
+package blackboard.courses;
+
+// Where a cold course reloads its assignments, grades and submissions from: the storage backend
+// (blackboard.util.Storage) or the snapshot it was loaded from.
+public interface CourseSource {
+    void hydrate(Course c) throws Exception;
+}
@@ -0,0 +1,168 @@
+package blackboard.courses;
+
+import java.util.Arrays;
+
+// Class statistics kept up to date by Course.setGrade, so queries never rescan the gradebook.
+//  - per student: the final grade under the course's GradingScheme, recomputed from the
+//    student's row on each of their grades (GradeCalculator) -> O(1) reads; "average" below
+//    means that final grade. regrade() recomputes every student in one pass (after a load or
+//    a change of weights or scheme).
+//  - per assignment: sum/count + a 0..100 histogram -> mean O(1), percentile O(101)
+//  - per course: student averages in a Fenwick tree over tenths (0.0..100.0)
+//    -> median/percentile/rank in O(log n), plus a 10-bin histogram
+public final class CourseStats {
+    private static final int SCALE = 10;                  // averages are bucketed to 0.1 (4 KB tree)
+    private static final int BUCKETS = 100 * SCALE + 1;
+
+    private double[] finals = filled(16);                 // by slot, -1 = no final grade
+
+    private long[] assignmentSum = new long[4];
+    private int[] assignmentCount = new int[4];
+    private int[][] assignmentHist = new int[4][];
+
+    private int[] fenwick;                                // 1-based, allocated on first grade
+    private final int[] bins = new int[10];               // [0,10) ... [90,100]
+    private int gradedStudents;
+    private double averageSum;
+
+    private final Gradebook book;   // only used to map ids to ordinals/slots
+
+    CourseStats(Gradebook book) { this.book = book; }
+
+    // called with the cell's previous value (Gradebook.NO_GRADE if it was empty); calc == null
+    // leaves the student's final grade for a regrade() to follow (bulk loads)
+    void record(int ordinal, int slot, int oldGrade, int newGrade, GradeCalculator calc) {
+        ensure(ordinal, slot);
+        if (oldGrade != Gradebook.NO_GRADE) {
+            assignmentSum[ordinal] -= oldGrade; assignmentCount[ordinal]--;
+            assignmentHist[ordinal][clamp(oldGrade)]--;
+        }
+        assignmentSum[ordinal] += newGrade; assignmentCount[ordinal]++;
+        assignmentHist[ordinal][clamp(newGrade)]++;
+        if (calc == null) return;
+
+        double before = finals[slot], after = calc.finalGrade(book, slot);
+        finals[slot] = after;
+        if (before >= 0) removeAverage(before);
+        if (after >= 0) addAverage(after);
+    }
+
+    // every student's final grade from scratch, in one pass over the gradebook
+    void regrade(GradeCalculator calc) {
+        double[] f = calc.finals(book);
+        finals = filled(Math.max(16, f.length));
+        System.arraycopy(f, 0, finals, 0, f.length);
+        if (fenwick != null) Arrays.fill(fenwick, 0);
+        Arrays.fill(bins, 0);
+        gradedStudents = 0; averageSum = 0;
+        for (double avg : f) if (avg >= 0) addAverage(avg);
+    }
+
+    // --- per student ---
+    public double studentAverage(int studentId) { return average(book.slot(studentId)); }
+    public int rank(int studentId) { return rankOf(book.slot(studentId)); }
+
+    private double average(int slot) { return slot < 0 || slot >= finals.length ? -1 : finals[slot]; }
+
+    // 1 = best; students with the same (0.1-rounded) average share a rank. -1 if ungraded
+    private int rankOf(int slot) {
+        double avg = average(slot);
+        if (avg < 0) return -1;
+        return gradedStudents - prefix(bucket(avg)) + 1;
+    }
+
+    // --- per assignment ---
+    public double assignmentMean(String assignmentId) {
+        int ordinal = book.ordinal(assignmentId);
+        if (ordinal < 0 || ordinal >= assignmentCount.length || assignmentCount[ordinal] == 0) return -1;
+        return (double) assignmentSum[ordinal] / assignmentCount[ordinal];
+    }
+    public int assignmentGraded(String assignmentId) { return graded(book.ordinal(assignmentId)); }
+    private int graded(int ordinal) {
+        return (ordinal < 0 || ordinal >= assignmentCount.length) ? 0 : assignmentCount[ordinal];
+    }
+    // nearest-rank percentile (p in 0..100) over the assignment's grades, -1 if none
+    public int assignmentPercentile(String assignmentId, double p) {
+        int ordinal = book.ordinal(assignmentId);
+        int n = graded(ordinal);
+        if (n == 0) return -1;
+        long k = rankFor(p, n), seen = 0;
+        int[] h = assignmentHist[ordinal];
+        for (int g = 0; g < h.length; g++) {
+            seen += h[g];
+            if (seen >= k) return g;
+        }
+        return 100;
+    }
+
+    // --- per course (over student averages) ---
+    public int gradedStudents() { return gradedStudents; }
+    public double mean() { return gradedStudents == 0 ? -1 : averageSum / gradedStudents; }
+    public double median() { return percentile(50); }
+    public double percentile(double p) {
+        if (gradedStudents == 0) return -1;
+        return (double) kth(rankFor(p, gradedStudents)) / SCALE;
+    }
+    // counts per 10-point bin, last bin includes 100
+    public int[] histogram() { return bins.clone(); }
+
+    long estimateBytes() {
+        long n = finals.length * 8L + assignmentSum.length * 12L;
+        for (int[] h : assignmentHist) if (h != null) n += 420;
+        return n + (fenwick == null ? 0 : fenwick.length * 4L) + 128;
+    }
+
+    // --- internals ---
+    private void addAverage(double avg) {
+        add(bucket(avg), 1); bins[bin(avg)]++;
+        averageSum += avg; gradedStudents++;
+    }
+    private void removeAverage(double avg) {
+        add(bucket(avg), -1); bins[bin(avg)]--;
+        averageSum -= avg; gradedStudents--;
+    }
+
+    private void add(int bucket, int delta) {
+        if (fenwick == null) fenwick = new int[BUCKETS + 1];
+        for (int i = bucket + 1; i <= BUCKETS; i += i & -i) fenwick[i] += delta;
+    }
+    // number of averages in buckets 0..bucket
+    private int prefix(int bucket) {
+        int s = 0;
+        for (int i = bucket + 1; i > 0; i -= i & -i) s += fenwick[i];
+        return s;
+    }
+    // smallest bucket whose prefix count reaches k (k is 1-based)
+    private int kth(long k) {
+        int pos = 0;
+        for (int step = Integer.highestOneBit(BUCKETS); step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next <= BUCKETS && fenwick[next] < k) { pos = next; k -= fenwick[next]; }
+        }
+        return pos;   // 0-based bucket
+    }
+
+    private static long rankFor(double p, int n) {
+        double q = Math.max(0, Math.min(100, p));
+        return Math.max(1, (long) Math.ceil(q / 100.0 * n));
+    }
+    private static double[] filled(int n) { double[] a = new double[n]; Arrays.fill(a, -1); return a; }
+    private static int clamp(int grade) { return Math.max(0, Math.min(100, grade)); }
+    private static int bucket(double avg) { return (int) Math.round(Math.max(0, Math.min(100, avg)) * SCALE); }
+    private static int bin(double avg) { return Math.min(9, (int) (Math.max(0, avg) / 10)); }
+
+    private void ensure(int ordinal, int slot) {
+        if (slot >= finals.length) {
+            int cap = Math.max(finals.length * 2, slot + 1), n = finals.length;
+            finals = Arrays.copyOf(finals, cap);
+            Arrays.fill(finals, n, cap, -1);
+        }
+        if (ordinal >= assignmentSum.length) {
+            int cap = Math.max(assignmentSum.length * 2, ordinal + 1);
+            assignmentSum = Arrays.copyOf(assignmentSum, cap);
+            assignmentCount = Arrays.copyOf(assignmentCount, cap);
+            assignmentHist = Arrays.copyOf(assignmentHist, cap);
+        }
+        if (assignmentHist[ordinal] == null) assignmentHist[ordinal] = new int[101];
+    }
+}
@@ -0,0 +1,62 @@
+package blackboard.courses;
+
+import blackboard.util.IdBitmap;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+// Insertion-ordered set of student ids: an int array for roster order plus a compressed bitmap
+// for membership and set operations with submission/grade bitmaps (no boxing).
+// get/size need no lock: an id is stored before size is published and a grown array already
+// holds every earlier id. remove (rare: a drop) publishes a fresh array, so a lock-free
+// reader racing it may see one id twice or miss one, but never an id that was not there.
+// add/remove/contains share the set's monitor.
+public final class EnrollmentSet {
+    private volatile int[] ids = new int[8];
+    private volatile int size;
+    private final IdBitmap members = new IdBitmap();
+
+    public synchronized boolean add(int studentId) {
+        if (!members.add(studentId)) return false;
+        int[] a = ids;
+        if (size == a.length) a = Arrays.copyOf(a, size * 2);
+        a[size] = studentId;
+        ids = a;
+        size = size + 1;
+        return true;
+    }
+
+    public synchronized boolean remove(int studentId) {
+        if (!members.remove(studentId)) return false;
+        int[] a = ids, b = new int[a.length];
+        int at = 0;
+        while (a[at] != studentId) at++;
+        System.arraycopy(a, 0, b, 0, at);
+        System.arraycopy(a, at + 1, b, at, size - at - 1);
+        b[size - 1] = a[size - 1];   // for readers still using the old size
+        size = size - 1;
+        ids = b;
+        return true;
+    }
+
+    public synchronized boolean contains(int studentId) { return members.contains(studentId); }
+    public synchronized IdBitmap bitmap() { return members.copy(); }
+    // this set minus ids / size of this set and ids, without copying the members
+    public synchronized IdBitmap without(IdBitmap ids) { return IdBitmap.andNot(members, ids); }
+    public synchronized int countIn(IdBitmap ids) { return IdBitmap.andCardinality(members, ids); }
+    public int size() { return size; }
+    public int get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        return ids[index];
+    }
+
+    // read-only boxed view for callers that still want a List<Integer>
+    public List<Integer> asList() {
+        return new AbstractList<>() {
+            @Override public Integer get(int index) { return EnrollmentSet.this.get(index); }
+            @Override public int size() { return size; }
+            @Override public boolean contains(Object o) { return o instanceof Integer i && EnrollmentSet.this.contains(i); }
+        };
+    }
+}
@@ -0,0 +1,152 @@
+package blackboard.courses;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A course's GradingScheme compiled against its Gradebook: per assignment ordinal the group it
+// counts in (a category, "other", or -1 = nowhere) and its weight. finalGrade() does one student
+// (CourseStats, on every setGrade); finals() does every student at once, column by column: each
+// pass reads one assignment's int column front to back and adds into per-group double arrays,
+// so the work is a few sequential array streams instead of a walk across all columns per
+// student. Both add in ordinal order and so give identical results. Drop-lowest keeps the k
+// lowest (grade, weight) pairs per group as it goes. Used under the course's monitor; rebuilt
+// when the assignments, their weights or the scheme change (fits() notices new grade columns).
+final class GradeCalculator {
+    private static final int NO_GRADE = Gradebook.NO_GRADE;
+
+    private final int ordinals;
+    private final int[] group;             // by ordinal
+    private final double[] weight;         // by ordinal
+    private final double[] groupWeight;    // by group
+    private final int[] drop;              // by group
+    private final int[] lowAt;             // by group: offset of its drop slots in the scratch arrays
+    // scratch of finalGrade()
+    private final double[] num, den;
+    private final int[] count, lowGrade;
+    private final double[] lowWeight;
+
+    GradeCalculator(GradingScheme scheme, List<Assignment> assignments, Gradebook book) {
+        Map<String, Assignment> byId = new HashMap<>();
+        for (Assignment a : assignments) byId.put(a.getId(), a);
+        List<GradingScheme.Category> cats = scheme.categories();
+        int other = cats.size();             // NONE: everything is "other", at full weight
+        int groups = other + 1;
+        groupWeight = new double[groups];
+        drop = new int[groups];
+        for (int c = 0; c < other; c++) { groupWeight[c] = cats.get(c).weight(); drop[c] = cats.get(c).drop(); }
+        groupWeight[other] = scheme.otherWeight();
+        lowAt = new int[groups + 1];
+        for (int g = 0; g < groups; g++) lowAt[g + 1] = lowAt[g] + drop[g];
+
+        ordinals = book.assignmentCount();
+        group = new int[ordinals];
+        weight = new double[ordinals];
+        for (int a = 0; a < ordinals; a++) {
+            Assignment x = byId.get(book.assignmentId(a));   // null: graded but never created (weight 1, no category)
+            int c = x == null ? -1 : scheme.indexOf(x.getCategory());
+            group[a] = c >= 0 ? c : groupWeight[other] > 0 ? other : -1;
+            weight[a] = x == null ? 1 : x.getWeight();
+        }
+        num = new double[groups]; den = new double[groups]; count = new int[groups];
+        lowGrade = new int[lowAt[groups]]; lowWeight = new double[lowAt[groups]];
+    }
+
+    boolean fits(Gradebook book) { return book.assignmentCount() == ordinals; }
+
+    // final grade of the student in the slot, -1 if nothing of theirs counts
+    double finalGrade(Gradebook book, int slot) {
+        if (slot < 0) return -1;
+        Arrays.fill(num, 0); Arrays.fill(den, 0); Arrays.fill(count, 0);
+        for (int a = 0; a < ordinals; a++) {
+            int g = group[a], x;
+            if (g < 0 || (x = book.grade(a, slot)) == NO_GRADE) continue;
+            double w = weight[a];
+            num[g] += w * x; den[g] += w;
+            if (drop[g] > 0) keepLowest(lowGrade, lowWeight, lowAt[g], drop[g], 1, 0, count[g], x, w);
+            count[g]++;
+        }
+        double total = 0, weights = 0;
+        for (int g = 0; g < groupWeight.length; g++) {
+            if (count[g] == 0) continue;
+            double n = num[g], d = den[g];
+            for (int j = 0, m = Math.min(drop[g], count[g] - 1); j < m; j++) {
+                n -= lowWeight[lowAt[g] + j] * lowGrade[lowAt[g] + j];
+                d -= lowWeight[lowAt[g] + j];
+            }
+            total += groupWeight[g] * (n / d);
+            weights += groupWeight[g];
+        }
+        return weights == 0 ? -1 : total / weights;
+    }
+
+    // final grades of every gradebook slot (Gradebook.studentAt), -1 where nothing counts
+    double[] finals(Gradebook book) {
+        int n = book.studentCount(), groups = groupWeight.length;
+        double[][] nums = new double[groups][], dens = new double[groups][];
+        int[][] counts = new int[groups][], lows = new int[groups][];
+        double[][] lowWeights = new double[groups][];
+        for (int a = 0; a < ordinals; a++) {
+            int g = group[a];
+            if (g < 0) continue;
+            if (nums[g] == null) {
+                nums[g] = new double[n]; dens[g] = new double[n]; counts[g] = new int[n];
+                if (drop[g] > 0) { lows[g] = new int[drop[g] * n]; lowWeights[g] = new double[drop[g] * n]; }
+            }
+            int[] col = book.column(a);
+            double w = weight[a];
+            double[] nu = nums[g], de = dens[g];
+            int[] cnt = counts[g];
+            if (drop[g] == 0) {
+                for (int s = 0; s < n; s++) {
+                    int x = col[s];
+                    if (x != NO_GRADE) { nu[s] += w * x; de[s] += w; cnt[s]++; }
+                }
+            } else {
+                int[] low = lows[g];
+                double[] lw = lowWeights[g];
+                for (int s = 0; s < n; s++) {
+                    int x = col[s];
+                    if (x == NO_GRADE) continue;
+                    nu[s] += w * x; de[s] += w;
+                    keepLowest(low, lw, 0, drop[g], n, s, cnt[s], x, w);
+                    cnt[s]++;
+                }
+            }
+        }
+        double[] total = new double[n], weights = new double[n];
+        for (int g = 0; g < groups; g++) {
+            if (nums[g] == null) continue;
+            double[] nu = nums[g], de = dens[g];
+            int[] cnt = counts[g];
+            double gw = groupWeight[g];
+            for (int j = 0; j < drop[g]; j++) {   // take back the dropped grades, lowest first
+                int[] low = lows[g];
+                double[] lw = lowWeights[g];
+                for (int s = 0; s < n; s++)
+                    if (j < cnt[s] - 1) { nu[s] -= lw[j * n + s] * low[j * n + s]; de[s] -= lw[j * n + s]; }
+            }
+            for (int s = 0; s < n; s++)
+                if (cnt[s] > 0) { total[s] += gw * (nu[s] / de[s]); weights[s] += gw; }
+        }
+        for (int s = 0; s < n; s++) total[s] = weights[s] == 0 ? -1 : total[s] / weights[s];
+        return total;
+    }
+
+    // keeps the k lowest grades seen so far for one student, ascending, in low[at + j*stride + s]
+    // (a tie keeps the earlier grade in front); filled = grades seen before this one
+    private static void keepLowest(int[] low, double[] lw, int at, int k, int stride, int s, int filled, int x, double w) {
+        int j = Math.min(filled, k);
+        if (j == k) {
+            if (x >= low[at + (k - 1) * stride + s]) return;
+            j = k - 1;
+        }
+        for (; j > 0 && low[at + (j - 1) * stride + s] > x; j--) {
+            low[at + j * stride + s] = low[at + (j - 1) * stride + s];
+            lw[at + j * stride + s] = lw[at + (j - 1) * stride + s];
+        }
+        low[at + j * stride + s] = x;
+        lw[at + j * stride + s] = w;
+    }
+}
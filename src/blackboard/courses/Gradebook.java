@@ -0,0 +1,118 @@
+package blackboard.courses;
+
+import blackboard.util.IdBitmap;
+import blackboard.util.IntIntMap;
+
+import java.util.*;
+
+// Dense gradebook: one int column per assignment ordinal, one row slot per student.
+// Empty cells hold NO_GRADE, so nothing is boxed and a lookup is two array reads.
+// Each column also keeps a bitmap of the students it has a grade for (see Course.ungraded).
+public final class Gradebook {
+    public static final int NO_GRADE = Integer.MIN_VALUE;
+    private static final IdBitmap EMPTY = new IdBitmap();
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private String[] assignmentIds = new String[4];
+    private int[][] columns = new int[4][];
+    private IdBitmap[] graded = new IdBitmap[4];
+    private int assignmentCount;
+
+    private final IntIntMap slots = new IntIntMap(-1);   // student id -> slot
+    private int[] slotStudent = new int[16];
+    private int slotCount;
+
+    public interface GradeVisitor { void visit(String assignmentId, int studentId, int grade); }
+
+    // returns the previous grade, or NO_GRADE
+    public int set(String assignmentId, int studentId, int grade) {
+        int ord = ordinalFor(assignmentId);
+        int slot = slotFor(studentId);
+        int old = columns[ord][slot];
+        columns[ord][slot] = grade;
+        if (old == NO_GRADE && grade != NO_GRADE) graded[ord].add(studentId);
+        else if (old != NO_GRADE && grade == NO_GRADE) graded[ord].remove(studentId);
+        return old;
+    }
+
+    public int get(String assignmentId, int studentId) {
+        Integer ord = ordinals.get(assignmentId);
+        int slot = slots.get(studentId);
+        return (ord == null || slot < 0) ? NO_GRADE : columns[ord][slot];
+    }
+
+    // unweighted mean of the student's recorded grades, -1 if none (Course.getFinalGrade applies the weights)
+    public double average(int studentId) {
+        int slot = slots.get(studentId);
+        if (slot < 0) return -1;
+        long total = 0; int count = 0;
+        for (int a = 0; a < assignmentCount; a++) {
+            int g = columns[a][slot];
+            if (g != NO_GRADE) { total += g; count++; }
+        }
+        return count == 0 ? -1 : (double) total / count;
+    }
+
+    public int assignmentCount() { return assignmentCount; }
+    public String assignmentId(int ordinal) { return assignmentIds[ordinal]; }
+    public int ordinal(String assignmentId) { Integer o = ordinals.get(assignmentId); return o == null ? -1 : o; }
+    // students with a grade for the assignment (live: do not modify)
+    public IdBitmap graded(String assignmentId) { Integer o = ordinals.get(assignmentId); return o == null ? EMPTY : graded[o]; }
+
+    public int studentCount() { return slotCount; }
+    public int studentAt(int slot) { return slotStudent[slot]; }
+    public int slot(int studentId) { return slots.get(studentId); }
+    public int grade(int ordinal, int slot) { return columns[ordinal][slot]; }
+    // the live column (slots 0..studentCount()-1 are meaningful), for whole-course passes
+    int[] column(int ordinal) { return columns[ordinal]; }
+
+    // approximate retained bytes (grid + slot index + assignment table)
+    long estimateBytes() {
+        long cap = slotStudent.length, bitmaps = 0;
+        for (int a = 0; a < assignmentCount; a++) bitmaps += graded[a].estimateBytes();
+        return assignmentCount * (cap * 4 + 16 + 96) + cap * 4 + (long) slotCount * 16 + 128 + bitmaps;
+    }
+
+    public void forEach(GradeVisitor v) {
+        for (int a = 0; a < assignmentCount; a++) {
+            int[] col = columns[a];
+            for (int s = 0; s < slotCount; s++) {
+                if (col[s] != NO_GRADE) v.visit(assignmentIds[a], slotStudent[s], col[s]);
+            }
+        }
+    }
+
+    private int ordinalFor(String assignmentId) {
+        Integer ord = ordinals.get(assignmentId);
+        if (ord != null) return ord;
+        if (assignmentCount == columns.length) {
+            columns = Arrays.copyOf(columns, assignmentCount * 2);
+            graded = Arrays.copyOf(graded, assignmentCount * 2);
+            assignmentIds = Arrays.copyOf(assignmentIds, assignmentCount * 2);
+        }
+        int[] col = new int[slotStudent.length];
+        Arrays.fill(col, NO_GRADE);
+        columns[assignmentCount] = col;
+        graded[assignmentCount] = new IdBitmap();
+        assignmentIds[assignmentCount] = assignmentId;
+        ordinals.put(assignmentId, assignmentCount);
+        return assignmentCount++;
+    }
+
+    private int slotFor(int studentId) {
+        int slot = slots.get(studentId);
+        if (slot >= 0) return slot;
+        if (slotCount == slotStudent.length) {
+            int cap = slotCount * 2;
+            slotStudent = Arrays.copyOf(slotStudent, cap);
+            for (int a = 0; a < assignmentCount; a++) {
+                int[] col = Arrays.copyOf(columns[a], cap);
+                Arrays.fill(col, slotCount, cap, NO_GRADE);
+                columns[a] = col;
+            }
+        }
+        slots.put(studentId, slotCount);
+        slotStudent[slotCount] = studentId;
+        return slotCount++;
+    }
+}
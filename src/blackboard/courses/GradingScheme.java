@@ -0,0 +1,91 @@
+package blackboard.courses;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// How a course weighs its categories of assignments into the final grade, written as
+//   homework=30/drop1, exams=70
+// Category weights are percentages. A student's final grade is the weighted mean of their
+// category scores over the categories they have a grade in; a category score is the
+// weighted mean (Assignment.getWeight) of its grades after dropping the `drop` lowest ones
+// (at least one grade always stays). Assignments without a known category share what is left
+// of 100% (nothing, when the categories add up to 100). NONE: every assignment in one category,
+// so the final grade is the weighted mean of all grades - the plain average with weights of 1.
+public final class GradingScheme {
+    public record Category(String name, double weight, int drop) {
+        public Category {
+            if (name == null || name.isBlank() || name.matches(".*[=,/].*")) throw new IllegalArgumentException("bad category name: " + name);
+            if (!(weight > 0) || Double.isInfinite(weight)) throw new IllegalArgumentException("category weight must be positive: " + name);
+            if (drop < 0) throw new IllegalArgumentException("cannot drop a negative number of grades: " + name);
+            name = name.trim();
+        }
+        @Override public String toString() { return name + "=" + num(weight) + (drop > 0 ? "/drop" + drop : ""); }
+    }
+
+    public static final GradingScheme NONE = new GradingScheme(List.of());
+
+    private final List<Category> categories;
+
+    public GradingScheme(List<Category> categories) {
+        for (int i = 0; i < categories.size(); i++)
+            for (int j = 0; j < i; j++)
+                if (categories.get(i).name().equals(categories.get(j).name()))
+                    throw new IllegalArgumentException("category listed twice: " + categories.get(i).name());
+        this.categories = List.copyOf(categories);
+    }
+
+    // the toString() form; blank = NONE. IllegalArgumentException names what is wrong.
+    public static GradingScheme parse(String spec) {
+        if (spec == null || spec.isBlank()) return NONE;
+        List<Category> out = new ArrayList<>();
+        for (String part : spec.split("[,;]")) {
+            if (part.isBlank()) continue;
+            int eq = part.indexOf('=');
+            if (eq < 0) throw new IllegalArgumentException("expected name=weight: " + part.trim());
+            String name = part.substring(0, eq).trim(), rest = part.substring(eq + 1).trim();
+            int drop = 0, slash = rest.indexOf('/');
+            if (slash >= 0) {
+                String d = rest.substring(slash + 1).trim().toLowerCase();
+                if (!d.startsWith("drop")) throw new IllegalArgumentException("expected /dropN: " + part.trim());
+                drop = number(d.substring(4).trim().isEmpty() ? "1" : d.substring(4).trim(), part).intValue();
+                rest = rest.substring(0, slash).trim();
+            }
+            if (rest.endsWith("%")) rest = rest.substring(0, rest.length() - 1).trim();
+            out.add(new Category(name, number(rest, part), drop));
+        }
+        return out.isEmpty() ? NONE : new GradingScheme(out);
+    }
+
+    private static Double number(String s, String part) {
+        try { return Double.parseDouble(s); }
+        catch (NumberFormatException e) { throw new IllegalArgumentException("not a number in " + part.trim() + ": " + s); }
+    }
+
+    public List<Category> categories() { return categories; }
+    public boolean isNone() { return categories.isEmpty(); }
+
+    // position of the category, -1 if the scheme has none by that name
+    public int indexOf(String name) {
+        for (int i = 0; i < categories.size(); i++) if (categories.get(i).name().equals(name)) return i;
+        return -1;
+    }
+
+    // weight of the assignments outside every category
+    public double otherWeight() {
+        if (isNone()) return 100;
+        double sum = 0;
+        for (Category c : categories) sum += c.weight();
+        return Math.max(0, 100 - sum);
+    }
+
+    @Override public boolean equals(Object o) { return o instanceof GradingScheme g && g.categories.equals(categories); }
+    @Override public int hashCode() { return categories.hashCode(); }
+    @Override public String toString() {
+        StringBuilder b = new StringBuilder();
+        for (Category c : categories) { if (!b.isEmpty()) b.append(", "); b.append(c); }
+        return b.toString();
+    }
+
+    // a weight as written in a scheme: 30, not 30.0
+    public static String num(double d) { return d == Math.rint(d) && Math.abs(d) < 1e15 ? Long.toString((long) d) : Double.toString(d); }
+}
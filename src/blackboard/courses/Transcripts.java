@@ -0,0 +1,102 @@
+package blackboard.courses;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Materialized transcripts: student -> the courses they are enrolled in (the reverse of the
+// course rosters) with each course's current final grade, plus a running GPA. Course keeps it
+// up to date on every enrollment change and grade (calls come in under the course lock, so the
+// lock order is course -> transcript), and a dashboard costs O(the student's courses).
+//
+// A course that has not been hydrated since startup contributes an unknown (NaN) grade; of()
+// loads just those courses, and a hydrating course publishes the grades of everyone enrolled.
+public final class Transcripts {
+    private static final Map<Integer, Entry> byStudent = new ConcurrentHashMap<>();
+
+    // one student's rows by course id, guarded by itself
+    private static final class Entry {
+        final Map<String, Row> rows = new TreeMap<>();
+        double points;    // sum of GPA points over graded rows
+        int graded;
+
+        void put(Row row) {
+            Row old = rows.put(row.course().getId(), row);
+            if (old != null && old.hasGrade()) { points -= points(old.finalGrade()); graded--; }
+            if (row.hasGrade()) { points += points(row.finalGrade()); graded++; }
+        }
+        void remove(Course c) {
+            Row old = rows.get(c.getId());
+            if (old == null || old.course() != c) return;
+            rows.remove(c.getId());
+            if (old.hasGrade()) { points -= points(old.finalGrade()); graded--; }
+        }
+    }
+
+    // finalGrade: 0..100, -1 when nothing is graded yet
+    public record Row(Course course, double finalGrade) {
+        public boolean hasGrade() { return finalGrade >= 0; }
+        boolean known() { return !Double.isNaN(finalGrade); }
+        public String letter() { return hasGrade() ? Transcripts.letter(finalGrade) : "-"; }
+    }
+
+    // gpa over the graded courses (4-point scale), -1 if none is graded yet
+    public record Transcript(int studentId, List<Row> rows, double gpa, int gradedCourses) {}
+
+    private Transcripts(){}
+
+    // ---- maintained by Course (under its lock) ----
+
+    static void enrolled(Course c, int studentId, double finalGrade) {
+        Entry e = byStudent.computeIfAbsent(studentId, k -> new Entry());
+        synchronized (e) { e.put(new Row(c, finalGrade)); }
+    }
+
+    static void dropped(Course c, int studentId) {
+        Entry e = byStudent.get(studentId);
+        if (e == null) return;
+        synchronized (e) { e.remove(c); }
+    }
+
+    // only for students whose transcript lists c
+    static void graded(Course c, int studentId, double finalGrade) {
+        Entry e = byStudent.get(studentId);
+        if (e == null) return;
+        synchronized (e) {
+            Row old = e.rows.get(c.getId());
+            if (old != null && old.course() == c && Double.compare(old.finalGrade(), finalGrade) != 0) e.put(new Row(c, finalGrade));
+        }
+    }
+
+    // ---- queries ----
+
+    public static List<Course> coursesOf(int studentId) {
+        Entry e = byStudent.get(studentId);
+        if (e == null) return List.of();
+        synchronized (e) {
+            List<Course> out = new ArrayList<>(e.rows.size());
+            for (Row r : e.rows.values()) out.add(r.course());
+            return out;
+        }
+    }
+
+    public static Transcript of(int studentId) {
+        Entry e = byStudent.get(studentId);
+        if (e == null) return new Transcript(studentId, List.of(), -1, 0);
+        List<Course> cold = new ArrayList<>();
+        synchronized (e) { for (Row r : e.rows.values()) if (!r.known()) cold.add(r.course()); }
+        for (Course c : cold) c.publishGrade(studentId);   // hydrates c (not under e: lock order is course -> entry)
+        synchronized (e) {
+            return new Transcript(studentId, List.copyOf(e.rows.values()), e.graded == 0 ? -1 : e.points / e.graded, e.graded);
+        }
+    }
+
+    public static void clear() { byStudent.clear(); }
+
+    // 4-point scale on the final percentage
+    public static double points(double finalGrade) {
+        return finalGrade >= 90 ? 4 : finalGrade >= 80 ? 3 : finalGrade >= 70 ? 2 : finalGrade >= 60 ? 1 : 0;
+    }
+    public static String letter(double finalGrade) {
+        return finalGrade >= 90 ? "A" : finalGrade >= 80 ? "B" : finalGrade >= 70 ? "C" : finalGrade >= 60 ? "D" : "F";
+    }
+}
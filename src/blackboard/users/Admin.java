@@ -2,62 +2,163 @@ package blackboard.users;
 
 import blackboard.util.AppState;
 import blackboard.courses.Course;
-import blackboard.util.CsvPersistable;
+import blackboard.util.BulkImport;
+import blackboard.util.Events;
+import blackboard.util.Persistable;
+import blackboard.util.ImportReport;
+import blackboard.util.Journal;
+import blackboard.util.WriteBehind;
 
 import java.nio.file.*;
+import java.util.List;
 
-public class Admin extends User implements CsvPersistable {
+public class Admin extends User implements Persistable {
     public Admin(int id, String name, String username, String password) {
         super(id, name, username, password, UserRole.ADMIN);
     }
+    Admin(UserDirectory<Admin> dir, int row, int id) { super(dir, row, id, UserRole.ADMIN); }
 
     @Override public void save() throws Exception {
-        Path dir = Paths.get("data","admins"); Files.createDirectories(dir);
-        Path file = dir.resolve(getId()+".csv");
-        String line = String.join(",",
-                String.valueOf(getId()), getName(), getUsername(), getPassword());
-        Files.writeString(file, line+System.lineSeparator());
+        AppState.storage().saveUser(this);
+        markClean();
     }
     @Override public void load() throws Exception { /* optional sanity; not needed */ }
 
-    // Simple CRUD (persist-on-create)
-    public void createTeacher(Teacher t) {
-        if (t == null) return;
-        if (AppState.teacherIdExists(t.getId())) {
-            System.out.println("❌ Teacher id already exists: " + t.getId());
-            return;
-        }
-        AppState.teachers.add(t);
-        try { t.save(); } catch (Exception e) { System.out.println("Save teacher failed: " + e.getMessage()); }
-    }
-    public void createStudent(Student s) {
-        if (s == null) return;
-        if (AppState.studentIdExists(s.getId())) {
-            System.out.println("❌ Student id already exists: " + s.getId());
-            return;
-        }
-        AppState.students.add(s);
-        try { s.save(); } catch (Exception e) { System.out.println("Save student failed: " + e.getMessage()); }
+    // Simple CRUD (persisted as journal records; the stored copies are written behind in the background)
+    // false (with the reason printed) if the id or the username is taken
+    public boolean createTeacher(Teacher t) {
+        if (t == null) return false;
+        try {
+            boolean added = Journal.atomically(() -> {
+                if (!AppState.addTeacher(t)) return false;   // id or username taken (possibly by a concurrent create)
+                Journal.createUser(t);
+                return true;
+            });
+            if (!added) {
+                System.out.println(AppState.teacherIdExists(t.getId()) ? "❌ Teacher id already exists: " + t.getId()
+                        : "❌ Teacher username '" + t.getUsername() + "' taken");
+                return false;
+            }
+            Events.userCreated(UserRole.TEACHER, t.getId());
+            WriteBehind.schedule(t);
+            return true;
+        } catch (Exception e) { System.out.println("Save teacher failed: " + e.getMessage()); return false; }
+    }
+    public boolean createStudent(Student s) {
+        if (s == null) return false;
+        try {
+            boolean added = Journal.atomically(() -> {
+                if (!AppState.addStudent(s)) return false;
+                Journal.createUser(s);
+                return true;
+            });
+            if (!added) {
+                System.out.println(AppState.studentIdExists(s.getId()) ? "❌ Student id already exists: " + s.getId()
+                        : "❌ Student username '" + s.getUsername() + "' taken");
+                return false;
+            }
+            Events.userCreated(UserRole.STUDENT, s.getId());
+            WriteBehind.schedule(s);
+            return true;
+        } catch (Exception e) { System.out.println("Save student failed: " + e.getMessage()); return false; }
+    }
+    // new details for an existing account, swapped in at once and journaled as a re-create (replay
+    // replaces the account with that id); false (with the reason printed) if there is no such
+    // account or the username is taken
+    public boolean updateTeacher(Teacher t) {
+        if (t == null) return false;
+        try {
+            boolean updated = Journal.atomically(() -> {
+                if (!AppState.updateTeacher(t)) return false;
+                Journal.createUser(t);
+                return true;
+            });
+            if (!updated) {
+                System.out.println(AppState.teacherIdExists(t.getId()) ? "❌ Teacher username '" + t.getUsername() + "' taken"
+                        : "❌ No teacher with id " + t.getId());
+                return false;
+            }
+            WriteBehind.schedule(t);
+            return true;
+        } catch (Exception e) { System.out.println("Save teacher failed: " + e.getMessage()); return false; }
     }
+    public boolean updateStudent(Student s) {
+        if (s == null) return false;
+        try {
+            boolean updated = Journal.atomically(() -> {
+                if (!AppState.updateStudent(s)) return false;
+                Journal.createUser(s);
+                return true;
+            });
+            if (!updated) {
+                System.out.println(AppState.studentIdExists(s.getId()) ? "❌ Student username '" + s.getUsername() + "' taken"
+                        : "❌ No student with id " + s.getId());
+                return false;
+            }
+            WriteBehind.schedule(s);
+            return true;
+        } catch (Exception e) { System.out.println("Save student failed: " + e.getMessage()); return false; }
+    }
+    public void deleteUser(UserRole role, int id) {
+        if (role == UserRole.ADMIN) return;   // admins are not deletable from the menu
+        try {
+            boolean removed = Journal.atomically(() -> {
+                if (role == UserRole.TEACHER && AppState.removeTeacher(id) == null) return false;
+                if (role == UserRole.STUDENT && AppState.removeStudent(id) == null) return false;
+                Journal.deleteUser(role, id);
+                return true;
+            });
+            if (removed) Events.userDeleted(role, id);
+        } catch (Exception e) { System.out.println("Delete user failed: " + e.getMessage()); }
+    }
+
     public void createCourse(blackboard.courses.Course c) {
         if (c == null) return;
-        if (AppState.courseIdExists(c.getId())) {
-            System.out.println("❌ Course id already exists: " + c.getId());
-            return;
-        }
-        AppState.courses.add(c);
-        try { c.save(); } catch (Exception e) { System.out.println("Save course failed: " + e.getMessage()); }
+        try {
+            boolean added = Journal.atomically(() -> {
+                if (!AppState.addCourse(c)) return false;
+                Journal.createCourse(c);
+                return true;
+            });
+            if (!added) { System.out.println("❌ Course id already exists: " + c.getId()); return; }
+            WriteBehind.schedule(c);
+        } catch (Exception e) { System.out.println("Save course failed: " + e.getMessage()); }
     }
 
     public void assignTeacher(Course c, Teacher t) {
         if (c==null || t==null) { System.out.println("Invalid course/teacher"); return; }
-        c.setTeacher(t);
-        try { c.save(); } catch (Exception ignore) {}
+        synchronized (c) {   // journal order = apply order for this course
+            AppState.assignTeacher(c, t);
+            try { Journal.assignTeacher(c, t); } catch (Exception e) { System.out.println("Save course failed: " + e.getMessage()); }
+        }
+        WriteBehind.schedule(c);
+    }
+
+    // term onboarding from CSV files (see BulkImport for the row format)
+    public ImportReport bulkImport(List<Path> files) throws Exception {
+        for (Path f : files) if (!Files.isRegularFile(f)) throw new NoSuchFileException(f.toString());
+        return BulkImport.run(files);
+    }
+
+    // seat or waitlist place (see Course.register); true only for a new enrollment
+    public boolean enrollStudent(Course c, Student s) {
+        if (c==null || s==null) { System.out.println("Invalid course/student"); return false; }
+        Course.Admission a;
+        try { a = c.register(s); }
+        catch (Exception e) { System.out.println("Save enrollment failed: " + e.getMessage()); return false; }
+        if (a.repeat()) System.out.println(a.seat() == Course.Seat.ENROLLED ? "Already enrolled" : "Already on the waitlist (#" + a.position() + ")");
+        else if (a.seat() == Course.Seat.WAITLISTED) System.out.println("Course full: waitlisted (#" + a.position() + ")");
+        if (!a.repeat()) WriteBehind.schedule(c);
+        return a.seat() == Course.Seat.ENROLLED && !a.repeat();
     }
 
-    public void enrollStudent(Course c, Student s) {
-        if (c==null || s==null) { System.out.println("Invalid course/student"); return; }
-        c.enroll(s);
-        try { c.save(); } catch (Exception ignore) {}
+    // frees the seat (or waitlist place); the head of the waitlist moves up
+    public boolean dropStudent(Course c, int studentId) {
+        if (c==null) { System.out.println("Invalid course"); return false; }
+        try {
+            if (!c.drop(studentId)) { System.out.println("Student is not in this course"); return false; }
+        } catch (Exception e) { System.out.println("Save drop failed: " + e.getMessage()); return false; }
+        WriteBehind.schedule(c);
+        return true;
     }
 }
\ No newline at end of file
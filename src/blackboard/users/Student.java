@@ -1,20 +1,31 @@
 package blackboard.users;
 
-import blackboard.util.CsvPersistable;
+import blackboard.courses.Course;
+import blackboard.util.AppState;
+import blackboard.util.Persistable;
+import blackboard.util.Journal;
+import blackboard.util.WriteBehind;
 
-import java.nio.file.*;
-
-public class Student extends User implements CsvPersistable {
+public class Student extends User implements Persistable {
     public Student(int id, String name, String username, String password) {
         super(id, name, username, password, UserRole.STUDENT);
     }
+    Student(UserDirectory<Student> dir, int row, int id) { super(dir, row, id, UserRole.STUDENT); }
 
     @Override public void save() throws Exception {
-        Path dir = Paths.get("data","students"); Files.createDirectories(dir);
-        Path file = dir.resolve(getId()+".csv");
-        String line = String.join(",",
-                String.valueOf(getId()), getName(), getUsername(), getPassword());
-        Files.writeString(file, line+System.lineSeparator());
+        AppState.storage().saveUser(this);
+        markClean();
     }
     @Override public void load() throws Exception { }
+
+    // false if the course has no such assignment
+    public boolean submit(Course c, String assignmentId) {
+        synchronized (c) {   // journal order = apply order for this course
+            if (!c.hasAssignment(assignmentId)) return false;
+            c.markSubmitted(assignmentId, getId());
+            try { Journal.submit(c, assignmentId, getId()); } catch (Exception e) { System.out.println("Save submission failed: " + e.getMessage()); }
+        }
+        WriteBehind.schedule(c);
+        return true;
+    }
 }
\ No newline at end of file
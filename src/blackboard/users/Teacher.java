@@ -2,29 +2,57 @@ package blackboard.users;
 
 import blackboard.courses.Assignment;
 import blackboard.courses.Course;
-import blackboard.util.CsvPersistable;
+import blackboard.courses.GradingScheme;
+import blackboard.util.AppState;
+import blackboard.util.Persistable;
+import blackboard.util.Journal;
+import blackboard.util.WriteBehind;
 
-import java.nio.file.*;
 
-public class Teacher extends User implements CsvPersistable {
+public class Teacher extends User implements Persistable {
     public Teacher(int id, String name, String username, String password) {
         super(id, name, username, password, UserRole.TEACHER);
     }
+    Teacher(UserDirectory<Teacher> dir, int row, int id) { super(dir, row, id, UserRole.TEACHER); }
 
     @Override public void save() throws Exception {
-        Path dir = Paths.get("data","teachers"); Files.createDirectories(dir);
-        Path file = dir.resolve(getId()+".csv");
-        String line = String.join(",",
-                String.valueOf(getId()), getName(), getUsername(), getPassword());
-        Files.writeString(file, line+System.lineSeparator());
+        AppState.storage().saveUser(this);
+        markClean();
     }
     @Override public void load() throws Exception { }
 
     // Features per spec: create assignment + grade
-    public void createAssignment(Course c, String assignmentId, String title) {
+    public void createAssignment(Course c, String assignmentId, String title) { createAssignment(c, assignmentId, title, "", 1); }
+
+    // weight within the category of the course's grading scheme ("" = none)
+    public void createAssignment(Course c, String assignmentId, String title, String category, double weight) {
         if (c==null || assignmentId==null || title==null) return;
-        c.addAssignment(new Assignment(assignmentId, title));
-        try { c.saveAssignments(); } catch (Exception ignore) {}
+        synchronized (c) {   // journal order = apply order for this course
+            if (c.hasAssignment(assignmentId)) return;
+            Assignment a = new Assignment(assignmentId, title, category, weight);
+            c.addAssignment(a);
+            try { Journal.addAssignment(c, a); } catch (Exception e) { System.out.println("Save assignment failed: " + e.getMessage()); }
+        }
+        WriteBehind.schedule(c);
+    }
+
+    public boolean setAssignmentWeight(Course c, String assignmentId, String category, double weight) {
+        if (c == null) return false;
+        synchronized (c) {
+            if (!c.setAssignmentWeight(assignmentId, category, weight)) return false;
+            try { Journal.assignmentWeight(c, assignmentId, category, weight); } catch (Exception e) { System.out.println("Save weight failed: " + e.getMessage()); }
+        }
+        WriteBehind.schedule(c);
+        return true;
+    }
+
+    public void setGradingScheme(Course c, GradingScheme scheme) {
+        if (c == null) return;
+        synchronized (c) {
+            c.setGradingScheme(scheme);
+            try { Journal.gradingScheme(c, scheme); } catch (Exception e) { System.out.println("Save grading scheme failed: " + e.getMessage()); }
+        }
+        WriteBehind.schedule(c);
     }
 
     public void recordGrade(Course c, String assignmentId, int studentId, int grade) throws Exception {
@@ -43,7 +71,10 @@ public class Teacher extends User implements CsvPersistable {
         }
 
         // Now record grade using your existing course-grade API
-        c.setGrade(assignmentId, studentId, grade); // or whatever your method is named
-        c.saveGrades(); // persist (use your existing method name)
+        synchronized (c) {
+            c.setGrade(assignmentId, studentId, grade);       // or whatever your method is named
+            Journal.grade(c, assignmentId, studentId, grade); // appended, not a full grades rewrite
+        }
+        WriteBehind.schedule(c);                              // stored copy catches up in the background
     }
 }
\ No newline at end of file
@@ -1,21 +1,46 @@
 package blackboard.users;
 
+// Either a plain object holding its strings (what callers construct) or a flyweight view of a
+// UserDirectory row (what the repository hands out), which decodes the strings on each call.
+// Once a plain user is added to a directory it is attached to its row, and the row's dirty flag
+// is the one every object for that account reads and writes.
 public abstract class User {
     private final int id;
     private final String name;
     private final String username;
     private final String password;
     private final UserRole role;
+    private volatile boolean dirty = true;   // stored copy out of date (new users start dirty)
+    private volatile UserDirectory<?> dir;   // set once, after row
+    private int row;
 
     protected User(int id, String name, String username, String password, UserRole role) {
         this.id = id; this.name = name; this.username = username; this.password = password; this.role = role;
     }
+    User(UserDirectory<?> dir, int row, int id, UserRole role) {
+        this(id, null, null, null, role);
+        this.row = row; this.dir = dir;
+    }
+    // a view has no strings of its own
+    private boolean view() { return name == null && username == null && password == null && dir != null; }
+
     public int getId() { return id; }
-    public String getName() { return name == null ? "" : name; }
-    public String getUsername() { return username == null ? "" : username; }
-    public String getPassword() { return password == null ? "" : password; }
+    public String getName() { return view() ? dir.name(row) : name == null ? "" : name; }
+    public String getUsername() { return view() ? dir.username(row) : username == null ? "" : username; }
+    public String getPassword() { return view() ? dir.password(row) : password == null ? "" : password; }
     public UserRole getRole() { return role; }
 
+    // compares without decoding the stored password
+    public boolean passwordMatches(String candidate) {
+        return view() ? dir.passwordMatches(row, candidate) : getPassword().equals(candidate);
+    }
+
+    public boolean isDirty() { UserDirectory<?> d = dir; return d == null ? dirty : d.isDirty(row); }
+    public void markDirty() { UserDirectory<?> d = dir; if (d == null) dirty = true; else d.setDirty(row, true); }
+    public void markClean() { UserDirectory<?> d = dir; if (d == null) dirty = false; else d.setDirty(row, false); }
+
+    void attach(UserDirectory<?> d, int row) { this.row = row; this.dir = d; }
+
     public abstract void save() throws Exception;
     public abstract void load() throws Exception;
-}
\ No newline at end of file
+}
@@ -0,0 +1,487 @@
+package blackboard.users;
+
+import blackboard.util.IdBitmap;
+import blackboard.util.IntIntMap;
+import blackboard.util.Page;
+import blackboard.util.SearchIndex;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Compact store for the accounts of one role. Columnar: one row per stored account with the id
+// and username hash in int arrays and an address into an off-heap arena (direct ByteBuffers) that
+// holds name, username and password as length-prefixed UTF-8. Lookups by id (IntIntMap) and
+// username (open addressing over rows, comparing the arena bytes) return flyweight User views
+// that decode their strings on demand; nothing per account lives on the heap except the columns.
+//
+// Bytes per account, measured with 1,000,000 students ("Student 123456", "student123456", "pw123456"):
+//   User objects in a skip list + hash map (before): ~300 heap
+//   UserDirectory: ~42 heap (columns + indexes) + ~38 off-heap (arena)
+//   + the search index over names and usernames (SearchIndex): ~30 heap with realistic names
+//
+// Rows are append-only: removing an account unlinks it from the indexes and leaves its bytes in
+// the arena (re-creating accounts is rare), so views of removed accounts keep working. Writers
+// take the write lock; lookups and iteration share the read lock; views decode without a lock
+// (a row is immutable once published and the column/chunk arrays are replaced, never resized
+// in place). The dirty flags live here too, so every view of an account agrees on them.
+public final class UserDirectory<T extends User> {
+    interface View<T extends User> { T of(UserDirectory<T> dir, int row, int id); }
+
+    private static final int CHUNK = 1 << 20;
+    private static final int NAME = 0, USERNAME = 1, PASSWORD = 2;
+
+    private final View<T> view;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // columns by row
+    private volatile int[] ids = new int[16];
+    private volatile int[] hashes = new int[16];     // username hash
+    private volatile long[] addrs = new long[16];    // chunk << 32 | offset of the row's record
+    private int rows, live, maxId = Integer.MIN_VALUE;
+    private IdBitmap removed = new IdBitmap();
+    private final IdBitmap dirty = new IdBitmap();   // guarded by itself
+
+    // indexes (live rows only)
+    private IntIntMap byId = new IntIntMap(-1);
+    private int[] byUsername = new int[32];          // row + 1, 0 = free
+    private int indexed;
+    private boolean ordered = true;                  // rows were added in id order
+    private int[] order;                             // live rows in id order, rebuilt after changes
+    private int[] byName;                            // live rows in name order, built on first use after changes
+    private final SearchIndex search = new SearchIndex(row -> name(row) + ' ' + username(row));   // words of name and username, by row
+
+    // off-heap arena
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private long arenaBytes;
+
+    private UserDirectory(View<T> view) { this.view = view; }
+
+    public static UserDirectory<Admin> admins() { return new UserDirectory<>(Admin::new); }
+    public static UserDirectory<Teacher> teachers() { return new UserDirectory<>(Teacher::new); }
+    public static UserDirectory<Student> students() { return new UserDirectory<>(Student::new); }
+
+    // ---- writes ----
+
+    // copies u in; false if the id or the username is taken (usernames are unique within a role,
+    // so a login finds the one account it names). Integer.MIN_VALUE is not a valid id (IntIntMap).
+    public boolean add(T u) {
+        if (u == null) return false;
+        if (u.getId() == Integer.MIN_VALUE) throw new IllegalArgumentException("invalid user id " + u.getId());
+        lock.writeLock().lock();
+        try {
+            if (byId.containsKey(u.getId()) || find(u.getUsername()) >= 0) return false;
+            append(u);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // replaces the account with u's id by u (new name, username or password) in one step: lookups
+    // see the old account or the new one, never neither. False if there is no such account or
+    // another one has u's username.
+    public boolean update(T u) {
+        if (u == null) return false;
+        lock.writeLock().lock();
+        try {
+            int old = byId.get(u.getId());
+            if (old < 0) return false;
+            int owner = find(u.getUsername());
+            if (owner >= 0 && owner != old) return false;
+            removed.add(old);
+            unindex(old);
+            live--;
+            search.remove(old);
+            append(u);   // takes over the id
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public T remove(int id) {
+        lock.writeLock().lock();
+        try {
+            int row = byId.get(id);
+            if (row < 0) return null;
+            byId.remove(id);
+            removed.add(row);
+            unindex(row);
+            live--;
+            order = byName = null;
+            search.remove(row);
+            return view.of(this, row, id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            ids = new int[16]; hashes = new int[16]; addrs = new long[16];
+            rows = live = 0; maxId = Integer.MIN_VALUE;
+            removed = new IdBitmap();
+            synchronized (dirty) { for (int r : dirty.toArray()) dirty.remove(r); }
+            byId = new IntIntMap(-1);
+            byUsername = new int[32]; indexed = 0;
+            ordered = true; order = byName = null;
+            chunks = new ByteBuffer[0]; arenaBytes = 0;
+            search.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---- reads ----
+
+    public T byId(int id) {
+        lock.readLock().lock();
+        try {
+            int row = byId.get(id);
+            return row < 0 ? null : view.of(this, row, id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public T byUsername(String username) {
+        if (username == null) return null;
+        lock.readLock().lock();
+        try {
+            int row = find(username);
+            return row < 0 ? null : view.of(this, row, ids[row]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() { lock.readLock().lock(); try { return live; } finally { lock.readLock().unlock(); } }
+
+    // read-only, weakly consistent view in id order (the set of rows is fixed when iteration starts)
+    public Collection<T> all() {
+        return new AbstractCollection<>() {
+            @Override public int size() { return UserDirectory.this.size(); }
+            @Override public Iterator<T> iterator() {
+                int[] rowsInOrder = order();
+                int[] idCol = ids;
+                return new Iterator<>() {
+                    int i;
+                    @Override public boolean hasNext() { return i < rowsInOrder.length; }
+                    @Override public T next() {
+                        if (i >= rowsInOrder.length) throw new NoSuchElementException();
+                        int row = rowsInOrder[i++];
+                        return view.of(UserDirectory.this, row, idCol[row]);
+                    }
+                };
+            }
+        };
+    }
+
+    // Page of accounts sorted by id or name, starting after the cursor (null: from the start).
+    // only (nullable) restricts the listing to those ids, e.g. a course roster; the page then costs
+    // the size of `only` instead of a binary search. The name order of the whole directory is
+    // sorted once after each change (adds and removes are rare next to listings).
+    public Page<T> page(Page.Sort sort, String after, int limit, IdBitmap only) {
+        int[] rows = only == null ? (sort == Page.Sort.NAME ? byName() : order()) : rowsOf(only, sort);
+        int[] idCol = ids;
+        int from = sort == Page.Sort.NAME ? afterName(rows, after) : afterId(rows, idCol, after);
+        int to = Math.min(rows.length, from + Math.max(1, limit));
+        T[] items = newArray(to - from);
+        for (int k = from; k < to; k++) items[k - from] = view.of(this, rows[k], idCol[rows[k]]);
+        String next = null;
+        if (to < rows.length) {
+            int last = rows[to - 1];
+            next = sort == Page.Sort.NAME ? Page.key(name(last), Integer.toString(idCol[last])) : Integer.toString(idCol[last]);
+        }
+        return new Page<>(List.of(items), from, rows.length, next);
+    }
+
+    // up to limit accounts whose name or username words start with the query's words (typos
+    // tolerated), best first; see SearchIndex. The index has its own lock.
+    public List<T> search(String query, int limit) {
+        int[] found = search.search(query, limit);
+        int[] idCol = ids;
+        T[] items = newArray(found.length);
+        for (int k = 0; k < found.length; k++) items[k] = view.of(this, found[k], idCol[found[k]]);
+        return List.of(items);
+    }
+
+    public void prepareSearch() { search.prepare(); }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(int n) { return (T[]) new User[n]; }
+
+    // first position whose id is above the cursor's
+    private static int afterId(int[] rows, int[] idCol, String after) {
+        if (after == null || Page.isKey(after)) return 0;
+        int id;
+        try { id = Integer.parseInt(after); } catch (NumberFormatException e) { return 0; }
+        int lo = 0, hi = rows.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (idCol[rows[mid]] <= id) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // first position whose (name, id) is above the cursor's
+    private int afterName(int[] rows, String after) {
+        if (!Page.isKey(after)) return 0;
+        String name = Page.keyName(after);
+        int id;
+        try { id = Integer.parseInt(Page.keyId(after)); } catch (NumberFormatException e) { return 0; }
+        int[] idCol = ids;
+        int lo = 0, hi = rows.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = Page.NAMES.compare(name(rows[mid]), name);
+            if (c < 0 || c == 0 && idCol[rows[mid]] <= id) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // live rows of the given ids, sorted
+    private int[] rowsOf(IdBitmap only, Page.Sort sort) {
+        int[] want = only.toArray(), rows = new int[want.length];
+        int n = 0;
+        lock.readLock().lock();
+        try {
+            for (int id : want) { int row = byId.get(id); if (row >= 0) rows[n++] = row; }
+        } finally {
+            lock.readLock().unlock();
+        }
+        rows = Arrays.copyOf(rows, n);   // in id order already (bitmaps iterate ascending)
+        return sort == Page.Sort.NAME ? sortByName(rows) : rows;
+    }
+
+    private int[] byName() {
+        lock.readLock().lock();
+        try {
+            int[] o = byName;
+            if (o != null) return o;
+        } finally {
+            lock.readLock().unlock();
+        }
+        int[] rows = order();
+        int[] sorted = sortByName(rows);
+        lock.writeLock().lock();
+        try {
+            if (order == rows) byName = sorted;   // unless the directory changed meanwhile
+            return sorted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // rows by (name, id); rows must be in id order, the sort is stable
+    private int[] sortByName(int[] rows) {
+        String[] names = new String[rows.length];
+        Integer[] at = new Integer[rows.length];
+        for (int k = 0; k < rows.length; k++) { names[k] = name(rows[k]); at[k] = k; }
+        Arrays.sort(at, (a, b) -> Page.NAMES.compare(names[a], names[b]));
+        int[] out = new int[rows.length];
+        for (int k = 0; k < out.length; k++) out[k] = rows[at[k]];
+        return out;
+    }
+
+    // heap bytes of the columns and indexes / bytes allocated off-heap for the arena
+    public long heapBytes() {
+        lock.readLock().lock();
+        try {
+            long b = ids.length * 4L + hashes.length * 4L + addrs.length * 8L + byUsername.length * 4L
+                    + removed.estimateBytes() + byId.capacity() * 8L + (order == null ? 0 : order.length * 4L)
+                    + (byName == null ? 0 : byName.length * 4L) + search.estimateBytes();
+            synchronized (dirty) { return b + dirty.estimateBytes(); }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    public long offHeapBytes() { lock.readLock().lock(); try { return arenaBytes; } finally { lock.readLock().unlock(); } }
+
+    // ---- used by the views ----
+
+    String name(int row) { return str(row, NAME); }
+    String username(int row) { return str(row, USERNAME); }
+    String password(int row) { return str(row, PASSWORD); }
+
+    boolean passwordMatches(int row, String candidate) {
+        if (candidate == null) return false;
+        return matches(row, PASSWORD, candidate.getBytes(StandardCharsets.UTF_8));
+    }
+
+    boolean isDirty(int row) { synchronized (dirty) { return dirty.contains(row); } }
+    void setDirty(int row, boolean on) { synchronized (dirty) { if (on) dirty.add(row); else dirty.remove(row); } }
+
+    // ---- internals ----
+
+    // a new row for u, indexed by id and username (write lock held, both checked free). Whatever
+    // can throw comes before the row counts: a failed add leaves no row that only all() can reach.
+    private void append(T u) {
+        int row = rows;
+        if (row == ids.length) grow();
+        String username = u.getUsername();
+        ids[row] = u.getId();
+        hashes[row] = username.hashCode();
+        addrs[row] = write(u.getName(), username, u.getPassword());
+        byId.put(u.getId(), row);
+        rows = row + 1;
+        live++;
+        index(row);
+        if (u.getId() < maxId) ordered = false;
+        maxId = Math.max(maxId, u.getId());
+        order = byName = null;
+        search.add(row, u.getName(), username);
+        if (u.isDirty()) synchronized (dirty) { dirty.add(row); }
+        u.attach(this, row);
+    }
+
+    private int[] order() {
+        lock.readLock().lock();
+        try {
+            int[] o = order;
+            if (o != null) return o;
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (order != null) return order;
+            int[] o = new int[live];
+            for (int row = 0, k = 0; row < rows; row++) if (!removed.contains(row)) o[k++] = row;
+            if (!ordered) {
+                long[] keyed = new long[o.length];   // id in the high half, row in the low half
+                for (int k = 0; k < o.length; k++) keyed[k] = ((long) ids[o[k]] << 32) | o[k];
+                Arrays.sort(keyed);
+                for (int k = 0; k < o.length; k++) o[k] = (int) keyed[k];
+            }
+            return order = o;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void grow() {
+        int cap = ids.length * 2;
+        ids = Arrays.copyOf(ids, cap);
+        hashes = Arrays.copyOf(hashes, cap);
+        addrs = Arrays.copyOf(addrs, cap);
+    }
+
+    // [varint len][utf8] x 3, never split across chunks
+    private long write(String name, String username, String password) {
+        byte[][] fields = { utf8(name), utf8(username), utf8(password) };
+        int len = 0;
+        for (byte[] f : fields) len += varintSize(f.length) + f.length;
+        ByteBuffer[] cs = chunks;
+        ByteBuffer tail = cs.length == 0 ? null : cs[cs.length - 1];
+        if (tail == null || tail.remaining() < len) {
+            tail = ByteBuffer.allocateDirect(Math.max(CHUNK, len));
+            arenaBytes += tail.capacity();
+            cs = Arrays.copyOf(cs, cs.length + 1);
+            cs[cs.length - 1] = tail;
+        }
+        long addr = ((long) (cs.length - 1) << 32) | tail.position();
+        for (byte[] f : fields) {
+            for (int v = f.length; ; v >>>= 7) {
+                if (v < 0x80) { tail.put((byte) v); break; }
+                tail.put((byte) (v & 0x7F | 0x80));
+            }
+            tail.put(f);
+        }
+        chunks = cs;   // publishes the bytes written above
+        return addr;
+    }
+
+    private static byte[] utf8(String s) { return (s == null ? "" : s).getBytes(StandardCharsets.UTF_8); }
+    private static int varintSize(int v) { int n = 1; while ((v >>>= 7) != 0) n++; return n; }
+
+    // position just after the length prefix of `field` in the row's record; length in len[0]
+    private static int seek(ByteBuffer b, int p, int field, int[] len) {
+        for (int f = 0; ; f++) {
+            int v = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte x = b.get(p++);
+                v |= (x & 0x7F) << shift;
+                if (x >= 0) break;
+            }
+            if (f == field) { len[0] = v; return p; }
+            p += v;
+        }
+    }
+
+    private String str(int row, int field) {
+        long a = addrs[row];
+        ByteBuffer b = chunks[(int) (a >>> 32)];
+        int[] len = new int[1];
+        int p = seek(b, (int) a, field, len);
+        byte[] out = new byte[len[0]];
+        b.get(p, out);
+        return new String(out, StandardCharsets.UTF_8);
+    }
+
+    private boolean matches(int row, int field, byte[] want) {
+        long a = addrs[row];
+        ByteBuffer b = chunks[(int) (a >>> 32)];
+        int[] len = new int[1];
+        int p = seek(b, (int) a, field, len);
+        if (len[0] != want.length) return false;
+        for (int i = 0; i < want.length; i++) if (b.get(p + i) != want[i]) return false;
+        return true;
+    }
+
+    private static int spread(int h) { h *= 0x9E3779B9; return h ^ (h >>> 16); }
+
+    // row whose username is `username`, or -1
+    private int find(String username) {
+        int h = username.hashCode(), mask = byUsername.length - 1;
+        byte[] want = null;
+        for (int i = spread(h) & mask; byUsername[i] != 0; i = (i + 1) & mask) {
+            int row = byUsername[i] - 1;
+            if (hashes[row] != h) continue;
+            if (want == null) want = username.getBytes(StandardCharsets.UTF_8);
+            if (matches(row, USERNAME, want)) return row;
+        }
+        return -1;
+    }
+
+    private void index(int row) {
+        if ((indexed + 1) * 4 >= byUsername.length * 3) {
+            int[] old = byUsername;
+            byUsername = new int[old.length * 2];
+            for (int slot : old) if (slot != 0) place(slot - 1);
+        }
+        place(row);
+        indexed++;
+    }
+
+    private void place(int row) {
+        int mask = byUsername.length - 1, i = spread(hashes[row]) & mask;
+        while (byUsername[i] != 0) i = (i + 1) & mask;
+        byUsername[i] = row + 1;
+    }
+
+    // drops the row from the username index, backward-shift deletion
+    private void unindex(int row) {
+        int mask = byUsername.length - 1, i = spread(hashes[row]) & mask;
+        while (byUsername[i] != 0 && byUsername[i] != row + 1) i = (i + 1) & mask;
+        if (byUsername[i] == 0) return;
+        byUsername[i] = 0;
+        indexed--;
+        for (int j = (i + 1) & mask; byUsername[j] != 0; j = (j + 1) & mask) {
+            int home = spread(hashes[byUsername[j] - 1]) & mask;
+            boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (stays) continue;
+            byUsername[i] = byUsername[j];
+            byUsername[j] = 0;
+            i = j;
+        }
+    }
+}
@@ -2,88 +2,219 @@ package blackboard.util;
 
 import blackboard.users.*;
 import blackboard.courses.Course;
+import blackboard.courses.CourseCache;
+import blackboard.courses.Transcripts;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.nio.file.*;
-import java.nio.charset.StandardCharsets;
 import java.util.Comparator;
 import java.util.stream.Stream;
 
 public final class AppState {
-    public static final List<Admin> admins   = new ArrayList<>();
-    public static final List<Teacher> teachers = new ArrayList<>();
-    public static final List<Student> students = new ArrayList<>();
-    public static final List<Course>  courses  = new ArrayList<>();
+    // all lookups go through the indexed repository; these are read-only views over it
+    public static final Repository repo = new Repository();
+    public static final Collection<Admin> admins   = repo.admins();
+    public static final Collection<Teacher> teachers = repo.teachers();
+    public static final Collection<Student> students = repo.students();
+    public static final Collection<Course>  courses  = repo.courses();
 
     private AppState(){}
 
-    public static void loadAll() throws Exception {
-        loadUsers("admins", admins, (p)->{
-            String[] a = readOne(p); return new Admin(i(a[0]), a[1], a[2], a[3]);
-        });
-        loadUsers("teachers", teachers, (p)->{
-            String[] a = readOne(p); return new Teacher(i(a[0]), a[1], a[2], a[3]);
-        });
-        loadUsers("students", students, (p)->{
-            String[] a = readOne(p); return new Student(i(a[0]), a[1], a[2], a[3]);
-        });
-
-        courses.clear();
-        Path cdir = Paths.get("data","courses");
-        if (Files.isDirectory(cdir)){
-            try (DirectoryStream<Path> ds = Files.newDirectoryStream(cdir, "*.csv")){
-                for (Path p : ds){
-                    Course c = Course.load(p);
-                    if (c != null) {
-                        c.loadSubmissionsIfExists();
-                        courses.add(c);
-                    }
-                }
+    private static LoadReport lastLoad;
+
+    // binary snapshot when there is one, otherwise the storage backend
+    public static LoadReport loadAll() throws Exception {
+        long t = Metrics.start();
+        try { return load(); } finally { Metrics.LOAD_ALL.stop(t); prepareSearch(); }
+    }
+
+    // sorts the loaded names into the search indexes off the caller's thread; searches meanwhile
+    // wait for it, adds do not
+    private static void prepareSearch() {
+        Thread t = new Thread(repo::prepareSearch, "search-index");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static LoadReport load() throws Exception {
+        repo.clear();
+        CourseCache.clear();
+        if (Snapshot.exists()) {
+            LoadReport r = new LoadReport("snapshot");
+            try {
+                Snapshot.load();
+                r.phase("snapshot");
+                if (storage().isEmpty()) unsaved();   // e.g. a newly chosen backend: fill it on the next save
+                return lastLoad = r;
+            } catch (Exception e) {
+                System.out.println("Snapshot unreadable (" + e.getMessage() + "), loading from " + storage().name() + " storage instead.");
+            }
+        }
+        return loadStorage();
+    }
+
+    private static void unsaved() {
+        for (Admin a : admins) a.markDirty();
+        for (Teacher t : teachers) t.markDirty();
+        for (Student s : students) s.markDirty();
+        for (Course c : courses) c.markUnsaved();
+    }
+
+    public static LoadReport lastLoadReport() { return lastLoad; }
+
+    // Users and course metadata from the storage backend; course details hydrate from it on first access.
+    // Results come in id order, so the outcome does not depend on directory or scheduling order.
+    public static LoadReport loadStorage() throws Exception {
+        repo.clear();
+        Storage st = storage();
+        LoadReport r = new LoadReport(st.name());
+        List<Admin> as = st.loadUsers(UserRole.ADMIN, Admin::new);
+        List<Teacher> ts = st.loadUsers(UserRole.TEACHER, Teacher::new);
+        List<Student> ss = st.loadUsers(UserRole.STUDENT, Student::new);
+        // loaded from storage, so the stored copies are current
+        for (Admin a : as) { a.markClean(); if (!repo.addAdmin(a)) skipped(a); }
+        for (Teacher t : ts) { t.markClean(); if (!repo.addTeacher(t)) skipped(t); }
+        for (Student s : ss) { s.markClean(); if (!repo.addStudent(s)) skipped(s); }
+        r.phase("users");
+
+        // teachers are indexed now, so courses can resolve their teacher id
+        List<Course> loaded = st.loadCourses(AppState::findTeacher);
+        r.phase("courses");
+        for (Course c : loaded) repo.addCourse(c);
+        r.phase("index");
+        return lastLoad = r;
+    }
+
+    // a stored account whose username an earlier one of its role already has (data written before
+    // usernames were unique): left out of memory, its stored copy untouched
+    static void skipped(User u) {
+        System.out.println("Skipping " + u.getRole().name().toLowerCase() + " " + u.getId() + ": username '" + u.getUsername() + "' taken");
+    }
+
+    // the storage backend (-Dblackboard.storage=csv|binary|sql, see Storage), opened on first use
+    private static volatile Storage storage;
+    public static Storage storage() {
+        Storage s = storage;
+        if (s != null) return s;
+        synchronized (AppState.class) {
+            if (storage == null) {
+                try { storage = Storage.open(System.getProperty("blackboard.storage", "csv")); }
+                catch (IOException e) { throw new UncheckedIOException("Could not open storage: " + e.getMessage(), e); }
             }
+            return storage;
         }
-        // (Teacher resolution: keep simple—admin assigns and saves later)
+    }
+    // exit path and reset; the next storage() opens it again
+    public static void closeStorage() throws IOException {
+        Storage s;
+        synchronized (AppState.class) { s = storage; storage = null; }
+        if (s != null) s.close();
     }
 
+    // Export to the storage backend: writes only entities whose stored copy is out of date, and
+    // removes users deleted since the last export
     public static void saveAll() throws Exception {
-        for (Admin a: admins) a.save();
-        for (Teacher t: teachers) t.save();
-        for (Student s: students) s.save();
-        for (Course c: courses) c.save();
+        long started = Metrics.start();
+        WriteBehind.awaitIdle();
+        for (Admin a: admins) if (a.isDirty()) a.save();
+        for (Teacher t: teachers) if (t.isDirty()) t.save();
+        for (Student s: students) if (s.isDirty()) s.save();
+        for (Course c: courses) if (c.isDirty()) c.save();
+        List<Gone> gone;
+        synchronized (deletedUsers) { gone = new ArrayList<>(deletedUsers); deletedUsers.clear(); }
+        for (Gone g : gone) if (!stillPresent(g)) storage().deleteUser(g.role(), g.id());
+        storage().flush();
+        Metrics.SAVE_ALL.stop(started);
     }
 
-    // --- helpers ---
-    public static boolean teacherIdExists(int id) {
-        return teachers.stream().anyMatch(t -> t.getId() == id);
+    private record Gone(UserRole role, int id) {}
+    private static final Set<Gone> deletedUsers = new LinkedHashSet<>();
+    private static void deleted(UserRole role, int id) {
+        synchronized (deletedUsers) { deletedUsers.add(new Gone(role, id)); }
     }
-    public static boolean studentIdExists(int id) {
-        return students.stream().anyMatch(s -> s.getId() == id);
+    // an update re-creates the user under the same id, so check before deleting the stored copy
+    private static boolean stillPresent(Gone g) {
+        return switch (g.role()) {
+            case ADMIN -> repo.admin(g.id()) != null;
+            case TEACHER -> repo.teacher(g.id()) != null;
+            case STUDENT -> repo.student(g.id()) != null;
+        };
     }
-    public static boolean courseIdExists(String id) {
-        if (id == null) return false;
-        String needle = id.trim();
-        return courses.stream().anyMatch(c -> c.getId().equals(needle));
+
+    // --- helpers ---
+    public static boolean teacherIdExists(int id) { return repo.teacher(id) != null; }
+    public static boolean studentIdExists(int id) { return repo.student(id) != null; }
+    public static boolean courseIdExists(String id) { return repo.course(id) != null; }
+
+    public static Teacher findTeacher(int id) { return repo.teacher(id); }
+    public static Student findStudent(int id) { return repo.student(id); }
+    public static Course findCourse(String id) { return repo.course(id); }
+    public static Collection<Course> coursesOf(Teacher t) { return repo.coursesOf(t); }
+    public static List<Course> coursesOf(Student s) { return s == null ? List.of() : Transcripts.coursesOf(s.getId()); }
+
+    // sorted, cursor-paged listings for screens that cannot show everything (see Page)
+    public static Page<Admin> admins(Page.Sort sort, String after, int limit) { return repo.admins(sort, after, limit); }
+    public static Page<Teacher> teachers(Page.Sort sort, String after, int limit) { return repo.teachers(sort, after, limit); }
+    public static Page<Student> students(Page.Sort sort, String after, int limit) { return repo.students(sort, after, limit, null); }
+    // only the students whose ids are in `only` (a roster, a submission set)
+    public static Page<Student> students(Page.Sort sort, String after, int limit, IdBitmap only) { return repo.students(sort, after, limit, only); }
+    public static Page<Course> courses(Page.Sort sort, String after, int limit) { return repo.courses(sort, after, limit); }
+
+    // search by name/username (users) or id/title (courses), best matches first
+    public static List<Admin> searchAdmins(String query, int limit) { return repo.searchAdmins(query, limit); }
+    public static List<Teacher> searchTeachers(String query, int limit) { return repo.searchTeachers(query, limit); }
+    public static List<Student> searchStudents(String query, int limit) { return repo.searchStudents(query, limit); }
+    public static List<Course> searchCourses(String query, int limit) { return repo.searchCourses(query, limit); }
+
+    public static long userHeapBytes() { return repo.userHeapBytes(); }
+    public static long userOffHeapBytes() { return repo.userOffHeapBytes(); }
+
+    // admins first, then teachers, then students (same order the old login loops used)
+    public static User authenticate(String username, String password) {
+        long t = Metrics.start();
+        User u = repo.adminByUsername(username);
+        if (u == null || !u.passwordMatches(password)) u = repo.teacherByUsername(username);
+        if (u == null || !u.passwordMatches(password)) u = repo.studentByUsername(username);
+        if (u != null && !u.passwordMatches(password)) u = null;
+        if (u == null) Metrics.LOGIN_FAILED.inc();
+        Metrics.LOGIN.stop(t);
+        return u;
     }
 
-    private interface Maker<T> { T make(Path p) throws Exception; }
-    private static <T> void loadUsers(String folder, List<T> out, Maker<T> mk) throws Exception {
-        out.clear(); Path dir = Paths.get("data", folder);
-        if (!Files.isDirectory(dir)) return;
-        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*.csv")){
-            for (Path p : ds) out.add(mk.make(p));
-        }
+    public static boolean addAdmin(Admin a) { return repo.addAdmin(a); }
+    public static boolean addTeacher(Teacher t) { return repo.addTeacher(t); }
+    public static boolean addStudent(Student s) { return repo.addStudent(s); }
+    public static boolean addCourse(Course c) { return repo.addCourse(c); }
+    public static boolean updateTeacher(Teacher t) { return repo.updateTeacher(t); }
+    public static boolean updateStudent(Student s) { return repo.updateStudent(s); }
+    public static Teacher removeTeacher(int id) {
+        Teacher t = repo.removeTeacher(id);
+        if (t != null) deleted(UserRole.TEACHER, id);
+        return t;
     }
-    private static String[] readOne(Path p) throws Exception {
-        String s = Files.readString(p, StandardCharsets.UTF_8).trim();
-        String[] a = s.split(",", -1);
-        while (a.length < 4) {
-            s += ",";
-            a = s.split(",", -1);
-        }
+    public static Student removeStudent(int id) {
+        Student s = repo.removeStudent(id);
+        if (s != null) deleted(UserRole.STUDENT, id);
+        return s;
+    }
+    public static Admin removeAdmin(int id) {
+        Admin a = repo.removeAdmin(id);
+        if (a != null) deleted(UserRole.ADMIN, id);
         return a;
     }
-    private static int i(String s){ try { return Integer.parseInt(s.trim()); } catch(Exception e){ return -1; } }
+    public static void assignTeacher(Course c, Teacher t) { repo.assignTeacher(c, t); }
 
+    // Stops the background writers first (WriteBehind drains, the evictor drops its queue), so that
+    // nothing writes into data/ or through the closed backend while it is deleted; both start
+    // again on their next use.
     public static void resetAllData() throws Exception {
+        WriteBehind.shutdown();
+        CourseCache.stop();
+        Journal.close();
+        closeStorage();
+        CourseCache.clear();
         Path data = Paths.get("data");
         if (Files.exists(data)) {
             try (Stream<Path> walk = Files.walk(data)) {
@@ -94,9 +225,6 @@ public final class AppState {
                 });
             }
         }
-        admins.clear();
-        teachers.clear();
-        students.clear();
-        courses.clear();
+        repo.clear();
     }
 }
\ No newline at end of file
@@ -0,0 +1,370 @@
+package blackboard.util;
+
+import blackboard.courses.Assignment;
+import blackboard.courses.Course;
+import blackboard.courses.Gradebook;
+import blackboard.courses.GradingScheme;
+import blackboard.users.Teacher;
+import blackboard.users.User;
+import blackboard.users.UserRole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.IntFunction;
+
+// data/store.bin: one append-only log of records [len:int][kind:byte][payload], len counting the
+// kind byte. A save appends a record that replaces the previous one for the same key (a user, a
+// course line, one of a course's three detail sets); ints are zigzag varints, strings a varint
+// byte length and UTF-8, id sets IdBitmap's serialized form.
+//   USER         role, id, name, username, password        USER_GONE    role, id
+//   COURSE       id, title, capacity, teacher+1 (0 = none), roster, waitlist
+//   ASSIGNMENTS  course, n, n x (id, title), scheme, n x (category, weight:8 bytes)   (older records end after the titles)
+//   GRADES       course, columns, per column: aid, n, n x (student, grade)
+//   SUBMISSIONS  course, n, n x (aid, students)
+// Opening scans the log once into an index of the latest record per key (a torn record at the
+// end, from a crash mid-append, is cut off); loads and hydration then read only those records.
+// Appends are buffered until flush() or the next read. When the log has grown past twice its
+// live size (+1 MB) flush() rewrites the live records into a new file and swaps it in.
+final class BinaryStorage implements Storage {
+    static final Path FILE = Paths.get("data", "store.bin");
+    private static final byte USER = 1, USER_GONE = 2, COURSE = 3, ASSIGNMENTS = 4, GRADES = 5, SUBMISSIONS = 6;
+    private static final int DETAILS = 3;           // ASSIGNMENTS, GRADES, SUBMISSIONS, by kind - ASSIGNMENTS
+    private static final long SLACK = 1 << 20;
+
+    private final Path file;
+    private FileChannel ch;
+    private long end;                                // log length including what is still buffered
+    private long live;                               // bytes of records the index points at
+    private final ByteBuffer out = ByteBuffer.allocate(64 << 10);
+    private byte[] rec = new byte[256];              // record being encoded
+    private int len;
+
+    // key -> offset of its latest record
+    private final Map<UserRole, TreeMap<Integer, Long>> users = new EnumMap<>(UserRole.class);
+    private final TreeMap<String, Long> courses = new TreeMap<>();
+    private final Map<String, long[]> details = new HashMap<>();
+
+    BinaryStorage(Path file) throws IOException {
+        this.file = file;
+        for (UserRole r : UserRole.values()) users.put(r, new TreeMap<>());
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        end = scan();
+        if (end < ch.size()) ch.truncate(end);
+    }
+
+    @Override public String name() { return "binary"; }
+    @Override public synchronized boolean isEmpty() { return courses.isEmpty() && users.values().stream().allMatch(Map::isEmpty); }
+
+    // ---- writes ----
+
+    @Override public synchronized void saveUser(User u) throws IOException {
+        begin(USER); putByte(u.getRole().ordinal()); putInt(u.getId());
+        putString(u.getName()); putString(u.getUsername()); putString(u.getPassword());
+        index(users.get(u.getRole()).put(u.getId(), append()));
+    }
+
+    @Override public synchronized void deleteUser(UserRole role, int id) throws IOException {
+        Long old = users.get(role).remove(id);
+        if (old == null) return;
+        index(old);
+        begin(USER_GONE); putByte(role.ordinal()); putInt(id);
+        append();
+        live -= 4 + len;   // a tombstone only matters until the next compaction
+    }
+
+    @Override public synchronized void saveCourse(Course c) throws IOException {
+        begin(COURSE); putString(c.getId()); putString(c.getTitle()); putInt(c.getMaxCapacity());
+        Teacher t = c.getTeacher();
+        putInt(t == null ? 0 : t.getId() + 1);
+        putIds(c.getStudentIds()); putIds(c.getWaitlist());
+        index(courses.put(c.getId(), append()));
+    }
+
+    @Override public synchronized void saveAssignments(String courseId, GradingScheme scheme, List<Assignment> assignments) throws IOException {
+        begin(ASSIGNMENTS); putString(courseId); putInt(assignments.size());
+        for (Assignment a : assignments) { putString(a.getId()); putString(a.getTitle()); }
+        putString(scheme.toString());
+        for (Assignment a : assignments) { putString(a.getCategory()); putDouble(a.getWeight()); }
+        detail(courseId, ASSIGNMENTS);
+    }
+
+    @Override public synchronized void saveGrades(String courseId, Gradebook grades) throws IOException {
+        begin(GRADES); putString(courseId); putInt(grades.assignmentCount());
+        for (int a = 0; a < grades.assignmentCount(); a++) {
+            putString(grades.assignmentId(a));
+            int n = 0;
+            for (int s = 0; s < grades.studentCount(); s++) if (grades.grade(a, s) != Gradebook.NO_GRADE) n++;
+            putInt(n);
+            for (int s = 0; s < grades.studentCount(); s++) {
+                int g = grades.grade(a, s);
+                if (g != Gradebook.NO_GRADE) { putInt(grades.studentAt(s)); putInt(g); }
+            }
+        }
+        detail(courseId, GRADES);
+    }
+
+    @Override public synchronized void saveSubmissions(String courseId, Map<String, IdBitmap> submissions) throws IOException {
+        begin(SUBMISSIONS); putString(courseId); putInt(submissions.size());
+        for (var e : submissions.entrySet()) {
+            putString(e.getKey());
+            IdBitmap ids = e.getValue();
+            int n = ids.serializedSize();
+            room(n);
+            ids.writeTo(ByteBuffer.wrap(rec, len, n));
+            len += n;
+        }
+        detail(courseId, SUBMISSIONS);
+    }
+
+    @Override public synchronized void flush() throws IOException {
+        drain();
+        if (end > 2 * live + SLACK) compact();
+    }
+
+    @Override public synchronized void close() throws IOException {
+        if (!ch.isOpen()) return;
+        drain();
+        ch.close();
+    }
+
+    // ---- reads ----
+
+    @Override public synchronized <T extends User> List<T> loadUsers(UserRole role, UserFactory<T> make) throws IOException {
+        TreeMap<Integer, Long> index = users.get(role);
+        List<T> list = new ArrayList<>(index.size());
+        if (index.isEmpty()) return list;
+        ByteBuffer log = map();
+        for (long at : index.values()) {
+            ByteBuffer r = record(log, at);
+            r.get();   // role
+            list.add(make.make(readInt(r), readString(r), readString(r), readString(r)));
+        }
+        return list;
+    }
+
+    @Override public synchronized List<Course> loadCourses(IntFunction<Teacher> teachers) throws IOException {
+        List<Course> list = new ArrayList<>(courses.size());
+        if (courses.isEmpty()) return list;
+        ByteBuffer log = map();
+        for (long at : courses.values()) {
+            ByteBuffer r = record(log, at);
+            Course c = new Course(readString(r), readString(r), readInt(r));
+            int t = readInt(r);
+            if (teachers != null && t != 0) c.setTeacher(teachers.apply(t - 1));
+            for (int i = 0, n = readInt(r); i < n; i++) c.restoreStudent(readInt(r));
+            for (int i = 0, n = readInt(r); i < n; i++) c.restoreWaitlisted(readInt(r));
+            c.setSource(this);
+            c.markClean();
+            list.add(c);
+        }
+        return list;
+    }
+
+    @Override public synchronized void hydrate(Course c) throws IOException {
+        long[] at = details.get(c.getId());
+        if (at == null) return;
+        drain();
+        if (at[0] >= 0) {
+            ByteBuffer r = read(at[0]);
+            readString(r);
+            int n = readInt(r);
+            String[] ids = new String[n], titles = new String[n];
+            for (int i = 0; i < n; i++) { ids[i] = readString(r); titles[i] = readString(r); }
+            boolean weighted = r.hasRemaining();
+            if (weighted) c.setGradingScheme(GradingScheme.parse(readString(r)));
+            for (int i = 0; i < n; i++)
+                c.addAssignment(weighted ? new Assignment(ids[i], titles[i], readString(r), r.getDouble()) : new Assignment(ids[i], titles[i]));
+        }
+        if (at[1] >= 0) {
+            ByteBuffer r = read(at[1]);
+            readString(r);
+            for (int a = 0, cols = readInt(r); a < cols; a++) {
+                String aid = readString(r);
+                for (int i = 0, n = readInt(r); i < n; i++) c.setGrade(aid, readInt(r), readInt(r));
+            }
+        }
+        if (at[2] >= 0) {
+            ByteBuffer r = read(at[2]);
+            readString(r);
+            for (int i = 0, n = readInt(r); i < n; i++) {
+                String aid = readString(r);
+                IdBitmap ids = IdBitmap.readFrom(r);
+                if (!ids.isEmpty()) c.markSubmitted(aid, ids);
+            }
+        }
+    }
+
+    // ---- log ----
+
+    // rebuilds the index (and live) from the log; returns where the last whole record ends
+    private long scan() throws IOException {
+        long size = ch.size();
+        if (size == 0) return 0;
+        ByteBuffer log = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        Metrics.BYTES_READ.add(size);
+        long at = 0;
+        scan:
+        while (at + 5 <= size) {
+            int n = log.getInt((int) at);
+            if (n < 1 || at + 4 + n > size) break;
+            ByteBuffer r = log.slice((int) at + 5, n - 1);
+            byte kind = log.get((int) at + 4);
+            switch (kind) {
+                case USER -> users.get(role(r.get())).put(readInt(r), at);
+                case USER_GONE -> users.get(role(r.get())).remove(readInt(r));
+                case COURSE -> courses.put(readString(r), at);
+                case ASSIGNMENTS, GRADES, SUBMISSIONS -> details.computeIfAbsent(readString(r), k -> empty())[kind - ASSIGNMENTS] = at;
+                default -> { break scan; }
+            }
+            at += 4 + n;
+        }
+        for (TreeMap<Integer, Long> index : users.values()) for (long o : index.values()) live += 4 + log.getInt((int) o);
+        for (long o : courses.values()) live += 4 + log.getInt((int) o);
+        for (long[] d : details.values()) for (long o : d) if (o >= 0) live += 4 + log.getInt((int) o);
+        return at;
+    }
+
+    // the previous record for a key is no longer live
+    private void index(Long replaced) throws IOException {
+        if (replaced != null && replaced >= 0) live -= 4 + recordLength(replaced);
+    }
+
+    private long recordLength(long at) throws IOException {
+        if (at >= end - out.position()) return out.getInt((int) (at - (end - out.position())));
+        ByteBuffer b = ByteBuffer.allocate(4);
+        while (b.hasRemaining() && ch.read(b, at + b.position()) >= 0) { }
+        return b.getInt(0);
+    }
+
+    private void detail(String courseId, byte kind) throws IOException {
+        long[] d = details.computeIfAbsent(courseId, k -> empty());
+        long at = append();
+        index(d[kind - ASSIGNMENTS]);
+        d[kind - ASSIGNMENTS] = at;
+    }
+    private static long[] empty() { long[] d = new long[DETAILS]; Arrays.fill(d, -1); return d; }
+
+    private void begin(byte kind) { len = 0; room(1); rec[len++] = kind; }
+
+    // appends the encoded record; returns its offset
+    private long append() throws IOException {
+        long at = end;
+        if (out.remaining() < 4 + len) drain();
+        if (out.remaining() < 4 + len) {
+            ByteBuffer b = ByteBuffer.allocate(4 + len).putInt(len).put(rec, 0, len).flip();
+            while (b.hasRemaining()) ch.write(b, at + b.position());
+            Metrics.BYTES_WRITTEN.add(4 + len);
+        } else {
+            out.putInt(len).put(rec, 0, len);
+        }
+        end += 4 + len;
+        live += 4 + len;
+        return at;
+    }
+
+    private void drain() throws IOException {
+        if (out.position() == 0) return;
+        out.flip();
+        long at = end - out.remaining();
+        Metrics.BYTES_WRITTEN.add(out.remaining());
+        while (out.hasRemaining()) ch.write(out, at + out.position());
+        out.clear();
+    }
+
+    private ByteBuffer map() throws IOException {
+        drain();
+        Metrics.BYTES_READ.add(end);
+        return ch.map(FileChannel.MapMode.READ_ONLY, 0, end);
+    }
+    private static ByteBuffer record(ByteBuffer log, long at) {
+        int n = log.getInt((int) at);
+        return log.slice((int) at + 5, n - 1);
+    }
+    private ByteBuffer read(long at) throws IOException {
+        int n = (int) recordLength(at);
+        ByteBuffer b = ByteBuffer.allocate(n - 1);
+        while (b.hasRemaining() && ch.read(b, at + 5 + b.position()) >= 0) { }
+        Metrics.BYTES_READ.add(n + 4);
+        return b.flip();
+    }
+
+    // writes the live records to a new file in key order and swaps it in
+    private void compact() throws IOException {
+        drain();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        MappedByteBuffer log = ch.map(FileChannel.MapMode.READ_ONLY, 0, end);
+        long at = 0;
+        try (FileChannel dst = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (TreeMap<Integer, Long> index : users.values())
+                for (var e : index.entrySet()) { long from = e.getValue(); e.setValue(at); at += copy(log, from, dst, at); }
+            for (var e : courses.entrySet()) { long from = e.getValue(); e.setValue(at); at += copy(log, from, dst, at); }
+            for (long[] d : details.values())
+                for (int k = 0; k < DETAILS; k++) if (d[k] >= 0) { long from = d[k]; d[k] = at; at += copy(log, from, dst, at); }
+            dst.force(true);
+        }
+        ch.close();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        end = live = at;
+    }
+    private static long copy(ByteBuffer log, long from, FileChannel dst, long at) throws IOException {
+        int n = 4 + log.getInt((int) from);
+        ByteBuffer b = log.slice((int) from, n);
+        while (b.hasRemaining()) dst.write(b, at + b.position());
+        Metrics.BYTES_WRITTEN.add(n);
+        return n;
+    }
+
+    // ---- encoding ----
+
+    private void room(int n) { if (len + n > rec.length) rec = Arrays.copyOf(rec, Math.max(len + n, rec.length * 2)); }
+    private void putByte(int b) { room(1); rec[len++] = (byte) b; }
+    private void putInt(int v) {
+        room(5);
+        int z = (v << 1) ^ (v >> 31);
+        while ((z & ~0x7F) != 0) { rec[len++] = (byte) (z & 0x7F | 0x80); z >>>= 7; }
+        rec[len++] = (byte) z;
+    }
+    private void putDouble(double d) {
+        room(8);
+        long v = Double.doubleToLongBits(d);
+        for (int shift = 56; shift >= 0; shift -= 8) rec[len++] = (byte) (v >>> shift);
+    }
+    private void putString(String s) {
+        byte[] b = s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+        putInt(b.length);
+        room(b.length);
+        System.arraycopy(b, 0, rec, len, b.length);
+        len += b.length;
+    }
+    private void putIds(List<Integer> ids) {
+        putInt(ids.size());
+        for (int id : ids) putInt(id);
+    }
+
+    private static int readInt(ByteBuffer r) {
+        int z = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = r.get();
+            z |= (b & 0x7F) << shift;
+            if (b >= 0) break;
+        }
+        return (z >>> 1) ^ -(z & 1);
+    }
+    private static String readString(ByteBuffer r) {
+        int n = readInt(r);
+        String s;
+        if (r.hasArray()) s = new String(r.array(), r.arrayOffset() + r.position(), n, StandardCharsets.UTF_8);
+        else { byte[] b = new byte[n]; r.get(r.position(), b); s = new String(b, StandardCharsets.UTF_8); }
+        r.position(r.position() + n);
+        return s;
+    }
+    private static UserRole role(byte b) { return UserRole.values()[b]; }
+}
@@ -0,0 +1,164 @@
+package blackboard.util;
+
+import blackboard.courses.Course;
+import blackboard.users.Student;
+import blackboard.users.Teacher;
+import blackboard.users.UserRole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Term onboarding: reads CSV files row by row (RFC 4180 quoting, so names and titles may hold
+// commas) and applies them straight to AppState.
+//
+//   student,<id>,<name>,<username>,<password>
+//   teacher,<id>,<name>,<username>,<password>
+//   course,<id>,<title>,<capacity>[,<teacherId>]
+//   enroll,<courseId>,<studentId>
+//
+// Rows are applied in file order, so later rows may refer to entities created earlier.
+// Every row is checked against the id/username indexes (O(1)) and course capacity; bad rows are
+// written to <file>.rejects.csv with the reason. Nothing is journaled or saved per row: at the
+// end one checkpoint makes the whole import durable and each touched entity is written once.
+public final class BulkImport {
+    public enum Kind { STUDENT, TEACHER, COURSE, ENROLL }
+
+    private final ImportReport report = new ImportReport();
+    private final Set<Persistable> touched = new LinkedHashSet<>();
+    private int coursesTouched;
+
+    private BulkImport(){}
+
+    public static ImportReport run(List<Path> files) throws Exception {
+        BulkImport imp = new BulkImport();
+        long t0 = System.nanoTime();
+        String rejects = null;
+        for (Path f : files) {
+            String r = imp.importFile(f);
+            if (r != null) rejects = rejects == null ? r : rejects + ", " + r;
+        }
+        long t1 = System.nanoTime();
+        if (!imp.touched.isEmpty()) {
+            Journal.checkpoint();                                   // durable in one step
+            for (Persistable e : imp.touched) WriteBehind.schedule(e);
+            WriteBehind.flush();                                    // CSV export, one write per entity
+        }
+        long t2 = System.nanoTime();
+        imp.report.finish((t1 - t0) / 1_000_000, (t2 - t1) / 1_000_000, imp.coursesTouched, rejects);
+        return imp.report;
+    }
+
+    // returns the rejects file name if anything was rejected
+    private String importFile(Path file) throws IOException {
+        Path rejectsPath = file.resolveSibling(file.getFileName() + ".rejects.csv");
+        int before = report.getRejected();
+        CsvIn in = CsvIn.open(file);
+        try (CsvOut rej = CsvOut.create(rejectsPath)) {
+            rej.field("line").field("reason").field("row").endRow();
+            while (in.next()) {
+                if (in.string(0).trim().startsWith("#")) continue;
+                report.row();
+                String reason = apply(in.strings());
+                if (reason != null) {
+                    report.rejected(in.line(), reason);
+                    rej.field(in.line()).field(reason).field(in.row()).endRow();
+                }
+            }
+        }
+        if (report.getRejected() == before) { Files.deleteIfExists(rejectsPath); return null; }
+        return rejectsPath.toString();
+    }
+
+    // null if applied, otherwise why not
+    private String apply(String[] p) {
+        Kind kind;
+        try { kind = Kind.valueOf(p[0].trim().toUpperCase()); }
+        catch (IllegalArgumentException e) { return "unknown row type '" + p[0].trim() + "'"; }
+        String reason = switch (kind) {
+            case STUDENT -> student(p);
+            case TEACHER -> teacher(p);
+            case COURSE -> course(p);
+            case ENROLL -> enroll(p);
+        };
+        if (reason == null) report.applied(kind);
+        return reason;
+    }
+
+    private String student(String[] p) {
+        if (p.length < 5) return "expected student,id,name,username,password";
+        Integer id = id(p[1]);
+        if (id == null) return "bad student id '" + p[1].trim() + "'";
+        if (AppState.studentIdExists(id)) return "student id " + id + " already exists";
+        String username = p[3].trim();
+        if (username.isEmpty()) return "empty username";
+        if (AppState.repo.studentByUsername(username) != null) return "student username '" + username + "' taken";
+        Student s = new Student(id, p[2].trim(), username, p[4].trim());
+        if (!AppState.addStudent(s)) return "student id " + id + " already exists";   // lost a race
+        Events.userCreated(UserRole.STUDENT, id);
+        touched.add(s);
+        return null;
+    }
+
+    private String teacher(String[] p) {
+        if (p.length < 5) return "expected teacher,id,name,username,password";
+        Integer id = id(p[1]);
+        if (id == null) return "bad teacher id '" + p[1].trim() + "'";
+        if (AppState.teacherIdExists(id)) return "teacher id " + id + " already exists";
+        String username = p[3].trim();
+        if (username.isEmpty()) return "empty username";
+        if (AppState.repo.teacherByUsername(username) != null) return "teacher username '" + username + "' taken";
+        Teacher t = new Teacher(id, p[2].trim(), username, p[4].trim());
+        if (!AppState.addTeacher(t)) return "teacher id " + id + " already exists";
+        Events.userCreated(UserRole.TEACHER, id);
+        touched.add(t);
+        return null;
+    }
+
+    private String course(String[] p) {
+        if (p.length < 4) return "expected course,id,title,capacity[,teacherId]";
+        String id = p[1].trim();
+        if (id.isEmpty()) return "empty course id";
+        if (AppState.courseIdExists(id)) return "course id " + id + " already exists";
+        if (p[2].trim().isEmpty()) return "empty course title";
+        Integer cap = id(p[3]);
+        if (cap == null || cap < 0) return "bad capacity '" + p[3].trim() + "'";
+        Teacher t = null;
+        if (p.length >= 5 && !p[4].trim().isEmpty()) {
+            Integer tid = id(p[4]);
+            t = tid == null ? null : AppState.findTeacher(tid);
+            if (t == null) return "unknown teacher '" + p[4].trim() + "'";
+        }
+        Course c = new Course(id, p[2].trim(), cap);
+        if (!AppState.addCourse(c)) return "course id " + id + " already exists";
+        if (t != null) AppState.assignTeacher(c, t);
+        touch(c);
+        return null;
+    }
+
+    private String enroll(String[] p) {
+        if (p.length < 3) return "expected enroll,courseId,studentId";
+        Course c = AppState.findCourse(p[1]);
+        if (c == null) return "unknown course '" + p[1].trim() + "'";
+        Integer sid = id(p[2]);
+        Student s = sid == null ? null : AppState.findStudent(sid);
+        if (s == null) return "unknown student '" + p[2].trim() + "'";
+        synchronized (c) {   // live sessions may be enrolling too
+            if (c.isEnrolled(sid)) return "student " + sid + " already in course " + c.getId();
+            int cap = c.getMaxCapacity();
+            if (cap > 0 && c.getStudentIds().size() >= cap) return "course " + c.getId() + " full (" + cap + ")";
+            if (!c.enroll(s)) return "course " + c.getId() + " has a waitlist";
+        }
+        touch(c);
+        return null;
+    }
+
+    private void touch(Course c) { if (touched.add(c)) coursesTouched++; }
+
+    private static Integer id(String s) {
+        try { return Integer.parseInt(s.trim()); } catch (NumberFormatException e) { return null; }
+    }
+}
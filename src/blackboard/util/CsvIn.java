@@ -0,0 +1,184 @@
+package blackboard.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// CSV decoder over bytes, the reading half of CsvOut. A cursor: next() steps to the next non-blank
+// row and records its field bounds in reused arrays; nothing is decoded until asked for, ints are
+// parsed in place and id lists (';'-separated ids and first-last runs) are visited without
+// splitting. RFC 4180 quoting: a quoted field may hold commas, line breaks and doubled quotes.
+// LF and CRLF rows; a leading UTF-8 BOM is skipped. Files from MAP_THRESHOLD up are memory-mapped.
+public final class CsvIn {
+    private static final int MAP_THRESHOLD = 1 << 20;
+
+    private final ByteBuffer in;
+    private final int limit;
+    private int pos, line, rowLine, rowStart, rowEnd;
+    private int n;                                   // fields in the current row
+    private int[] start = new int[8], end = new int[8];
+    private boolean[] quoted = new boolean[8];       // field has quotes to undo
+    private byte[] scratch = new byte[64];
+
+    public CsvIn(ByteBuffer in) {
+        this.in = in;
+        this.pos = in.position();
+        this.limit = in.limit();
+        if (limit - pos >= 3 && in.get(pos) == (byte) 0xEF && in.get(pos + 1) == (byte) 0xBB && in.get(pos + 2) == (byte) 0xBF) pos += 3;
+    }
+    public CsvIn(byte[] bytes) { this(ByteBuffer.wrap(bytes)); }
+
+    public static CsvIn open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            ByteBuffer b;
+            if (size >= MAP_THRESHOLD) {
+                b = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                b = ByteBuffer.allocate((int) size);
+                while (b.hasRemaining() && ch.read(b) >= 0) { }
+                b.flip();
+            }
+            Metrics.BYTES_READ.add(b.remaining());
+            return new CsvIn(b);
+        }
+    }
+
+    // false at the end of the input; blank rows are skipped
+    public boolean next() {
+        while (pos < limit) {
+            n = 0;
+            rowStart = pos;
+            rowLine = ++line;
+            while (true) {
+                int s = pos, e;
+                boolean q = false;
+                if (in.get(pos) == '"') {
+                    s = ++pos;
+                    while (pos < limit) {
+                        byte b = in.get(pos);
+                        if (b == '"') {
+                            if (pos + 1 < limit && in.get(pos + 1) == '"') { q = true; pos += 2; continue; }
+                            break;
+                        }
+                        if (b == '\n') line++;
+                        pos++;
+                    }
+                    e = pos;
+                    while (pos < limit && in.get(pos) != ',' && in.get(pos) != '\n') pos++;   // past the closing quote
+                } else {
+                    while (pos < limit && in.get(pos) != ',' && in.get(pos) != '\n') pos++;
+                    e = pos;
+                    if (e > s && in.get(e - 1) == '\r' && (pos == limit || in.get(pos) == '\n')) e--;
+                }
+                add(s, e, q);
+                rowEnd = pos < limit && in.get(pos) == '\n' && pos > rowStart && in.get(pos - 1) == '\r' ? pos - 1 : pos;
+                if (pos >= limit) break;
+                if (in.get(pos++) == '\n') break;
+                if (pos == limit) { add(pos, pos, false); rowEnd = pos; break; }   // trailing comma
+            }
+            if (n == 1 && isBlank(0)) continue;
+            return true;
+        }
+        n = 0;
+        return false;
+    }
+
+    // the current row: field count, 1-based line number where it starts, its text as written
+    public int fields() { return n; }
+    public int line() { return rowLine; }
+    public String row() { return decode(rowStart, rowEnd, false); }
+
+    public boolean isEmpty(int i) { return i >= n || start[i] == end[i]; }
+
+    // "" past the last field
+    public String string(int i) { return i >= n ? "" : decode(start[i], end[i], quoted[i]); }
+
+    // text from field i to the end of the row as written (separators included), for legacy rows
+    // whose last column held unquoted commas
+    public String rest(int i) { return i >= n ? "" : decode(start[i], rowEnd, false); }
+
+    // strings of every field of the row
+    public String[] strings() {
+        String[] out = new String[n];
+        for (int i = 0; i < n; i++) out[i] = string(i);
+        return out;
+    }
+
+    // surrounding blanks ignored; fallback if missing, malformed or out of int range
+    public int integer(int i, int fallback) {
+        if (i >= n) return fallback;
+        int s = start[i], e = end[i];
+        while (s < e && blank(in.get(s))) s++;
+        while (e > s && blank(in.get(e - 1))) e--;
+        return parse(s, e, fallback);
+    }
+
+    // ids in field i written as "3;7;10-14" (runs first-last); malformed tokens are skipped
+    public void forEachRange(int i, IdBitmap.RangeVisitor v) {
+        if (i >= n) return;
+        int e = end[i];
+        for (int s = start[i]; s < e; ) {
+            int t = s;
+            while (t < e && in.get(t) != ';') t++;
+            int dash = s + 1;   // a leading '-' is a sign, not a range
+            while (dash < t && in.get(dash) != '-') dash++;
+            int first = parse(trimStart(s, dash), trimEnd(s, dash), Integer.MIN_VALUE);
+            int last = dash < t ? parse(trimStart(dash + 1, t), trimEnd(dash + 1, t), Integer.MIN_VALUE) : first;
+            if (first != Integer.MIN_VALUE && last != Integer.MIN_VALUE && first <= last) v.visit(first, last);
+            s = t + 1;
+        }
+    }
+
+    private int trimStart(int s, int e) { while (s < e && blank(in.get(s))) s++; return s; }
+    private int trimEnd(int s, int e) { while (e > s && blank(in.get(e - 1))) e--; return e; }
+
+    private static boolean blank(byte b) { return (b & 0xFF) <= ' '; }
+
+    private int parse(int s, int e, int fallback) {
+        if (s >= e) return fallback;
+        boolean neg = in.get(s) == '-';
+        if (neg || in.get(s) == '+') s++;
+        if (s >= e || e - s > 10) return fallback;
+        long v = 0;
+        for (int p = s; p < e; p++) {
+            int d = in.get(p) - '0';
+            if (d < 0 || d > 9) return fallback;
+            v = v * 10 + d;
+        }
+        if (neg) v = -v;
+        return v < Integer.MIN_VALUE || v > Integer.MAX_VALUE ? fallback : (int) v;
+    }
+
+    // unquoted (a quoted field starts past its quote) and only whitespace
+    private boolean isBlank(int i) {
+        for (int p = start[i]; p < end[i]; p++) if (!blank(in.get(p))) return false;
+        return start[i] == rowStart;
+    }
+
+    private void add(int s, int e, boolean q) {
+        if (n == start.length) {
+            start = Arrays.copyOf(start, n * 2);
+            end = Arrays.copyOf(end, n * 2);
+            quoted = Arrays.copyOf(quoted, n * 2);
+        }
+        start[n] = s; end[n] = e; quoted[n] = q; n++;
+    }
+
+    private String decode(int s, int e, boolean unquote) {
+        int len = e - s;
+        if (!unquote && in.hasArray()) return new String(in.array(), in.arrayOffset() + s, len, StandardCharsets.UTF_8);
+        if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+        int k = 0;
+        for (int p = s; p < e; p++) {
+            byte b = in.get(p);
+            scratch[k++] = b;
+            if (unquote && b == '"') p++;   // "" -> "
+        }
+        return new String(scratch, 0, k, StandardCharsets.UTF_8);
+    }
+}
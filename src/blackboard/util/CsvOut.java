@@ -0,0 +1,163 @@
+package blackboard.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Buffered CSV encoder over a byte channel, the writing half of CsvIn. Memory is the fixed buffer,
+// whatever is written, and the full-size buffers are reused (one spare per thread); text is UTF-8
+// encoded and ints formatted straight into the buffer. field() quotes per RFC 4180 when needed,
+// raw() writes text as is (separators and id lists that cannot need quoting).
+public final class CsvOut implements Closeable {
+    private static final int SIZE = 1 << 16;
+    private static final ThreadLocal<ByteBuffer[]> SPARE = ThreadLocal.withInitial(() -> new ByteBuffer[1]);
+
+    private final WritableByteChannel ch;
+    private ByteBuffer buf;
+    private final boolean pooled;
+    private boolean rowStarted;
+
+    public CsvOut(WritableByteChannel ch) { this(ch, SIZE); }
+    private CsvOut(WritableByteChannel ch, int size) {
+        this.ch = ch;
+        ByteBuffer[] spare = size == SIZE ? SPARE.get() : null;
+        pooled = spare != null;
+        if (spare != null && spare[0] != null) { buf = spare[0]; spare[0] = null; }
+        else buf = ByteBuffer.allocate(size);
+    }
+
+    // replaces the file
+    public static CsvOut create(Path file) throws IOException {
+        return new CsvOut(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    // in-memory target, read back with bytes() after close()
+    public static final class Chunk implements Closeable {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        public final CsvOut out = new CsvOut(Channels.newChannel(bytes), 4096);
+        public byte[] bytes() { return bytes.toByteArray(); }
+        @Override public void close() throws IOException { out.close(); }
+    }
+
+    public CsvOut field(String s) throws IOException {
+        sep();
+        if (s == null || s.isEmpty()) return this;
+        int n = s.length();
+        if (n <= buf.remaining()) {   // the common case, plain ASCII: copied in the same pass that checks it
+            byte[] a = buf.array();
+            int p = buf.position(), i = 0;
+            for (char c; i < n && (c = s.charAt(i)) < 0x80 && c != ',' && c != '"' && c != '\n' && c != '\r'; i++) a[p + i] = (byte) c;
+            if (i == n) { buf.position(p + n); return this; }
+        }
+        int kind = scan(s);
+        if (kind != QUOTE) return text(s, false);
+        put((byte) '"');
+        text(s, true);
+        return put((byte) '"');
+    }
+
+    public CsvOut field(int v) throws IOException { sep(); return number(v); }
+
+    public CsvOut empty() throws IOException { sep(); return this; }
+
+    // unquoted text, no separator handling
+    public CsvOut raw(String s) throws IOException { return text(s == null ? "" : s, false); }
+    public CsvOut raw(char c) throws IOException { return put((byte) c); }
+    public CsvOut raw(int v) throws IOException { return number(v); }
+
+    public CsvOut endRow() throws IOException { rowStarted = false; return put((byte) '\n'); }
+
+    // pre-encoded bytes (e.g. a Chunk), written through without re-buffering large arrays
+    public void write(byte[] b) throws IOException {
+        if (b.length <= buf.remaining()) { buf.put(b); return; }
+        flush();
+        if (b.length <= buf.remaining()) { buf.put(b); return; }
+        ByteBuffer big = ByteBuffer.wrap(b);
+        while (big.hasRemaining()) ch.write(big);
+        Metrics.BYTES_WRITTEN.add(b.length);
+    }
+
+    public void flush() throws IOException {
+        buf.flip();
+        Metrics.BYTES_WRITTEN.add(buf.remaining());
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+
+    @Override public void close() throws IOException {
+        if (buf == null) return;
+        try { flush(); } finally {
+            ch.close();
+            if (pooled) { buf.clear(); SPARE.get()[0] = buf; }
+            buf = null;
+        }
+    }
+
+    private void sep() throws IOException {
+        if (rowStarted) put((byte) ',');
+        rowStarted = true;
+    }
+
+    // UTF-8 straight into the (heap) buffer's array; doubling quotes when inside a quoted field
+    private CsvOut text(String s, boolean quoted) throws IOException {
+        byte[] a = buf.array();
+        int p = buf.position(), last = a.length - 4;   // room for one code point
+        for (int i = 0, n = s.length(); i < n; i++) {
+            if (p > last) { buf.position(p); flush(); p = buf.position(); }
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (quoted && c == '"') a[p++] = '"';
+                a[p++] = (byte) c;
+            } else if (c < 0x800) {
+                a[p++] = (byte) (0xC0 | c >> 6); a[p++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                a[p++] = (byte) (0xF0 | cp >> 18); a[p++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                a[p++] = (byte) (0x80 | cp >> 6 & 0x3F); a[p++] = (byte) (0x80 | cp & 0x3F);
+            } else {
+                if (Character.isSurrogate(c)) c = '?';   // unpaired, as String.getBytes does
+                a[p++] = (byte) (0xE0 | c >> 12); a[p++] = (byte) (0x80 | c >> 6 & 0x3F); a[p++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        buf.position(p);
+        return this;
+    }
+
+    private static final int ASCII = 0, UNICODE = 1, QUOTE = 2;
+
+    // QUOTE if s needs quoting, else whether it is all ASCII
+    private static int scan(String s) {
+        int kind = ASCII;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') return QUOTE;
+            if (c >= 0x80) kind = UNICODE;
+        }
+        return kind;
+    }
+
+    private CsvOut number(int v) throws IOException {
+        if (buf.remaining() < 11) flush();
+        if (v == Integer.MIN_VALUE) return text("-2147483648", false);
+        if (v < 0) { buf.put((byte) '-'); v = -v; }
+        int start = buf.position();
+        do { buf.put((byte) ('0' + v % 10)); v /= 10; } while (v > 0);
+        for (int i = start, j = buf.position() - 1; i < j; i++, j--) {   // digits came out reversed
+            byte t = buf.get(i); buf.put(i, buf.get(j)); buf.put(j, t);
+        }
+        return this;
+    }
+
+    private CsvOut put(byte b) throws IOException {
+        if (!buf.hasRemaining()) flush();
+        buf.put(b);
+        return this;
+    }
+}
@@ -0,0 +1,255 @@
+package blackboard.util;
+
+import blackboard.courses.Assignment;
+import blackboard.courses.Course;
+import blackboard.courses.Gradebook;
+import blackboard.courses.GradingScheme;
+import blackboard.users.Teacher;
+import blackboard.users.User;
+import blackboard.users.UserRole;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+// The data/ CSV layout, one file per entity:
+//   admins|teachers|students/<id>.csv   id,name,username,password
+//   courses/<id>.csv                    id,title,maxCapacity,teacherId,students[,waitlist]   (ids ';'-separated)
+//   assignments/<id>.csv                aid,title,category,weight per line
+//   categories/<id>.csv                 name,weight,drop per line: the grading scheme (absent = none)
+//   grades/<id>.csv                     aid,studentId,grade per line
+//   submissions/<id>.csv                aid,ids per line (runs of consecutive ids as first-last)
+// Writes replace a whole file; loads read every user and course file concurrently on virtual threads.
+final class CsvStorage implements Storage {
+    private static final Path DATA = Paths.get("data");
+
+    @Override public String name() { return "csv"; }
+
+    @Override public boolean isEmpty() {
+        for (String dir : new String[]{"admins", "teachers", "students", "courses"})
+            if (Files.isDirectory(DATA.resolve(dir))) return false;
+        return true;
+    }
+
+    // ---- users ----
+
+    private static Path userFile(UserRole role, int id) { return DATA.resolve(folder(role)).resolve(id + ".csv"); }
+    private static String folder(UserRole role) {
+        return switch (role) { case ADMIN -> "admins"; case TEACHER -> "teachers"; case STUDENT -> "students"; };
+    }
+
+    @Override public void saveUser(User u) throws IOException {
+        Path file = userFile(u.getRole(), u.getId());
+        Files.createDirectories(file.getParent());
+        try (CsvOut out = CsvOut.create(file)) {
+            out.field(u.getId()).field(u.getName()).field(u.getUsername()).field(u.getPassword()).endRow();
+        }
+    }
+
+    @Override public void deleteUser(UserRole role, int id) throws IOException { Files.deleteIfExists(userFile(role, id)); }
+
+    @Override public <T extends User> List<T> loadUsers(UserRole role, UserFactory<T> make) throws IOException {
+        List<T> out = loadAll(list(folder(role)), p -> {
+            CsvIn in = CsvIn.open(p);
+            in.next();   // missing trailing fields read as ""
+            return make.make(in.integer(0, -1), in.string(1), in.string(2), in.string(3));
+        });
+        out.sort(Comparator.comparingInt(User::getId));
+        return out;
+    }
+
+    // ---- courses ----
+
+    @Override public void saveCourse(Course c) throws IOException {
+        Path dir = DATA.resolve("courses"); Files.createDirectories(dir);
+        try (CsvOut out = CsvOut.create(dir.resolve(fileName(c.getId())))) {
+            out.field(c.getId()).field(c.getTitle()).field(c.getMaxCapacity());
+            Teacher t = c.getTeacher();
+            if (t != null) out.field(t.getId()); else out.empty();
+            out.empty();
+            List<Integer> ids = c.getStudentIds();
+            for (int i = 0; i < ids.size(); i++) {
+                if (i > 0) out.raw(';');
+                out.raw(ids.get(i));
+            }
+            List<Integer> waiting = c.getWaitlist();
+            if (!waiting.isEmpty()) {
+                out.empty();
+                String sep = "";
+                for (int sid : waiting) { out.raw(sep).raw(sid); sep = ";"; }
+            }
+            out.endRow();
+        }
+    }
+
+    // teachers resolves the stored teacher id (may be null to leave courses unassigned)
+    @Override public List<Course> loadCourses(IntFunction<Teacher> teachers) throws IOException {
+        List<Course> out = loadAll(list("courses"), p -> {
+            CsvIn in = CsvIn.open(p);
+            if (!in.next()) return null;
+            Course c = new Course(in.string(0).trim(), in.string(1), in.integer(2, 0));
+            if (teachers != null && !in.isEmpty(3)) c.setTeacher(teachers.apply(in.integer(3, -1)));
+            in.forEachRange(4, (first, last) -> { for (int sid = first; sid <= last; sid++) c.restoreStudent(sid); });
+            in.forEachRange(5, (first, last) -> { for (int sid = first; sid <= last; sid++) c.restoreWaitlisted(sid); });
+            c.setSource(this);
+            c.markClean();
+            return c;
+        });
+        out.sort(Comparator.comparing(Course::getId));
+        return out;
+    }
+
+    @Override public void saveAssignments(String courseId, GradingScheme scheme, List<Assignment> assignments) throws IOException {
+        try (CsvOut out = CsvOut.create(detailFile("assignments", courseId, true))) {
+            for (Assignment a : assignments)
+                out.field(a.getId()).field(a.getTitle()).field(a.getCategory()).field(Double.toString(a.getWeight())).endRow();
+        }
+        Path file = detailFile("categories", courseId, !scheme.isNone());
+        if (scheme.isNone()) { Files.deleteIfExists(file); return; }
+        try (CsvOut out = CsvOut.create(file)) {
+            for (GradingScheme.Category c : scheme.categories())
+                out.field(c.name()).field(Double.toString(c.weight())).field(c.drop()).endRow();
+        }
+    }
+
+    @Override public void saveGrades(String courseId, Gradebook grades) throws IOException {
+        try (CsvOut out = CsvOut.create(detailFile("grades", courseId, true))) {
+            for (int a = 0; a < grades.assignmentCount(); a++) {
+                String aid = grades.assignmentId(a);
+                for (int s = 0; s < grades.studentCount(); s++) {
+                    int g = grades.grade(a, s);
+                    if (g != Gradebook.NO_GRADE) out.field(aid).field(grades.studentAt(s)).field(g).endRow();
+                }
+            }
+        }
+    }
+
+    // one line per assignment: aid,first-last;id;... (runs of consecutive student ids)
+    @Override public void saveSubmissions(String courseId, Map<String, IdBitmap> submissions) throws IOException {
+        try (CsvOut out = CsvOut.create(detailFile("submissions", courseId, true))) {
+            for (var e : submissions.entrySet()) {
+                int[] ids = e.getValue().toArray();
+                out.field(e.getKey()).raw(',');
+                for (int i = 0; i < ids.length; ) {
+                    int j = i;
+                    while (j + 1 < ids.length && ids[j + 1] == ids[j] + 1) j++;
+                    if (i > 0) out.raw(';');
+                    out.raw(ids[i]);
+                    if (j > i) out.raw('-').raw(ids[j]);
+                    i = j + 1;
+                }
+                out.endRow();
+            }
+        }
+    }
+
+    @Override public void hydrate(Course c) throws IOException {
+        Path file = detailFile("assignments", c.getId(), false);
+        if (Files.exists(file)) {
+            CsvIn in = CsvIn.open(file);
+            while (in.next()) {
+                // older files had no category or weight, and some wrote the title unquoted, commas and all
+                double w = in.fields() == 4 ? weight(in.string(3), -1) : -1;
+                if (w > 0) c.addAssignment(new Assignment(in.string(0), in.string(1), in.string(2), w));
+                else c.addAssignment(new Assignment(in.string(0), in.fields() > 2 ? in.rest(1) : in.string(1)));
+            }
+        }
+        file = detailFile("categories", c.getId(), false);
+        if (Files.exists(file)) {
+            List<GradingScheme.Category> cats = new ArrayList<>();
+            CsvIn in = CsvIn.open(file);
+            while (in.next()) {
+                try { cats.add(new GradingScheme.Category(in.string(0), weight(in.string(1), -1), in.integer(2, 0))); }
+                catch (IllegalArgumentException e) { System.out.println("Skipping category at " + file + ":" + in.line() + ": " + e.getMessage()); }
+            }
+            c.setGradingScheme(new GradingScheme(cats));
+        }
+        file = detailFile("grades", c.getId(), false);
+        if (Files.exists(file)) {
+            CsvIn in = CsvIn.open(file);
+            String aid = null;
+            while (in.next()) {
+                if (in.fields() < 3) continue;
+                int sid = in.integer(1, -1);
+                int g = in.integer(2, -1);
+                if (sid < 0 || g < 0) continue;
+                String a = in.string(0);
+                if (!a.equals(aid)) aid = a;   // rows come grouped by assignment: keep one String per run
+                c.setGrade(aid, sid, g);
+            }
+        }
+        file = detailFile("submissions", c.getId(), false);
+        if (Files.exists(file)) {
+            // also reads the older one-line-per-submission form (aid,sid)
+            Map<String, IdBitmap> byAssignment = new LinkedHashMap<>();
+            CsvIn in = CsvIn.open(file);
+            while (in.next()) {
+                if (in.fields() < 2) continue;
+                IdBitmap ids = byAssignment.computeIfAbsent(in.string(0), k -> new IdBitmap());
+                in.forEachRange(1, (first, last) -> { for (int sid = Math.max(first, 0); sid <= last && sid >= 0; sid++) ids.add(sid); });
+            }
+            for (var e : byAssignment.entrySet()) if (!e.getValue().isEmpty()) c.markSubmitted(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override public void close() { }
+
+    // positive number, fallback if missing or malformed
+    private static double weight(String s, double fallback) {
+        try { double w = Double.parseDouble(s); return w > 0 && !Double.isInfinite(w) ? w : fallback; }
+        catch (NumberFormatException e) { return fallback; }
+    }
+
+    // ---- helpers ----
+
+    private static Path detailFile(String folder, String courseId, boolean create) throws IOException {
+        Path dir = DATA.resolve(folder);
+        if (create) Files.createDirectories(dir);
+        return dir.resolve(fileName(courseId));
+    }
+
+    // file name for an id: each code point outside [a-zA-Z0-9._-] becomes '_' (no copy if none is)
+    private static String fileName(String id) {
+        int i = 0;
+        while (i < id.length() && safeChar(id.charAt(i))) i++;
+        if (i == id.length()) return id + ".csv";
+        StringBuilder b = new StringBuilder(id.length() + 4).append(id, 0, i);
+        for (; i < id.length(); i += Character.charCount(id.codePointAt(i))) b.append(safeChar(id.charAt(i)) ? id.charAt(i) : '_');
+        return b.append(".csv").toString();
+    }
+    private static boolean safeChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '.' || c == '_' || c == '-';
+    }
+
+    private static List<Path> list(String folder) throws IOException {
+        Path dir = DATA.resolve(folder);
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> p.getFileName().toString().endsWith(".csv")).toList();
+        }
+    }
+
+    private interface Reader<T> { T read(Path p) throws Exception; }
+
+    // one virtual thread per file; nulls (empty files) are left out
+    private static <T> List<T> loadAll(List<Path> files, Reader<T> reader) throws IOException {
+        List<T> out = new ArrayList<>(files.size());
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<T>> futures = new ArrayList<>(files.size());
+            for (Path p : files) futures.add(pool.submit(() -> reader.read(p)));
+            for (Future<T> f : futures) {
+                T t = f.get();
+                if (t != null) out.add(t);
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,143 @@
+package blackboard.util;
+
+import blackboard.courses.Course;
+import blackboard.users.Admin;
+import blackboard.users.Student;
+import blackboard.users.Teacher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Synthetic term at scale, built through the same Admin/Teacher/Student calls the menus use
+// (so everything is journaled and written behind like real traffic):
+//  - course popularity is Zipf-like: a few large courses, a long tail of small ones;
+//    capacities sit a little above expected demand, so popular courses fill up
+//  - each student tries 2..2*coursesPerStudent-2 courses (mean coursesPerStudent), re-drawing when full
+//  - every course gets `assignments` assignments; a student submits each with a probability that
+//    grows with their ability, and submitted work is graded ~ ability + difficulty + noise (0..100)
+// Ids continue after the largest existing ones, so a generator run adds to whatever is loaded.
+// The same spec and seed always produce the same data.
+public final class DataGenerator {
+    private static final double ZIPF = 1.0;
+
+    public record Spec(int students, int courses, int assignments, int coursesPerStudent, long seed) {
+        public Spec {
+            if (students < 0 || courses < 0 || assignments < 0 || coursesPerStudent < 1)
+                throw new IllegalArgumentException("sizes must be positive");
+        }
+        public int teachers() { return Math.max(1, courses / 3); }
+    }
+
+    public record Result(int students, int teachers, int courses, long enrollments, long submissions, long grades, long ms) {
+        @Override public String toString() {
+            return "Generated " + students + " students, " + teachers + " teachers, " + courses + " courses, "
+                    + enrollments + " enrollments, " + submissions + " submissions, " + grades + " grades in " + ms + " ms";
+        }
+    }
+
+    private DataGenerator(){}
+
+    public static Result run(Spec spec) throws Exception {
+        long t0 = System.nanoTime();
+        Random rnd = new Random(spec.seed());
+        Admin admin = admin();
+
+        int firstTeacher = maxId(AppState.teachers.stream().mapToInt(t -> t.getId()).toArray()) + 1;
+        Teacher[] teachers = new Teacher[spec.teachers()];
+        for (int i = 0; i < teachers.length; i++) {
+            int id = firstTeacher + i;
+            admin.createTeacher(teachers[i] = new Teacher(id, "Teacher " + id, "teacher" + id, "teacher" + id));
+        }
+
+        int firstStudent = maxId(AppState.students.stream().mapToInt(s -> s.getId()).toArray()) + 1;
+        Student[] students = new Student[spec.students()];
+        double[] ability = new double[students.length];
+        for (int i = 0; i < students.length; i++) {
+            int id = firstStudent + i;
+            admin.createStudent(students[i] = new Student(id, "Student " + id, "student" + id, "student" + id));
+            ability[i] = clamp(72 + rnd.nextGaussian() * 10, 35, 98);
+        }
+
+        // popularity: Zipf weight by a random rank, capacity ~ 1.2 x expected demand
+        int n = spec.courses();
+        double[] weight = new double[n], cumulative = new double[n];
+        int[] rank = shuffled(n, rnd);
+        double total = 0;
+        for (int i = 0; i < n; i++) total += weight[i] = 1 / Math.pow(rank[i] + 1, ZIPF);
+        int firstCourse = maxId(AppState.courses.stream().mapToInt(c -> parse(c.getId())).toArray()) + 1;
+        Course[] courses = new Course[n];
+        for (int i = 0; i < n; i++) {
+            cumulative[i] = (i == 0 ? 0 : cumulative[i - 1]) + weight[i] / total;
+            double demand = (double) spec.students() * spec.coursesPerStudent() * weight[i] / total;
+            int cap = Math.max(10, (int) Math.ceil(demand * 1.2));
+            String id = String.valueOf(firstCourse + i);
+            admin.createCourse(courses[i] = new Course(id, "Course " + id, cap));
+            admin.assignTeacher(courses[i], teachers[i % teachers.length]);
+            for (int a = 1; a <= spec.assignments(); a++)
+                teachers[i % teachers.length].createAssignment(courses[i], "A" + a, "Assignment " + a);
+        }
+
+        // enrollments
+        List<List<Integer>> rosters = new ArrayList<>(n);   // index into students[]
+        for (int i = 0; i < n; i++) rosters.add(new ArrayList<>());
+        long enrollments = 0;
+        for (int s = 0; s < students.length && n > 0; s++) {
+            int want = Math.min(n, 2 + rnd.nextInt(Math.max(1, 2 * spec.coursesPerStudent() - 3)));
+            for (int k = 0, tries = 0; k < want && tries < want * 8; tries++) {
+                int c = pick(cumulative, rnd.nextDouble());
+                Course course = courses[c];
+                if (course.isEnrolled(students[s].getId())) continue;
+                if (course.getStudentIds().size() >= course.getMaxCapacity()) continue;   // full, draw again
+                if (admin.enrollStudent(course, students[s])) { rosters.get(c).add(s); enrollments++; k++; }
+            }
+        }
+
+        // submissions and grades
+        long submissions = 0, grades = 0;
+        for (int c = 0; c < n; c++) {
+            Teacher t = teachers[c % teachers.length];
+            for (int a = 1; a <= spec.assignments(); a++) {
+                String aid = "A" + a;
+                double difficulty = rnd.nextGaussian() * 5;
+                for (int s : rosters.get(c)) {
+                    if (rnd.nextDouble() > 0.55 + ability[s] / 250) continue;   // ~85% submit on average
+                    students[s].submit(courses[c], aid);
+                    submissions++;
+                    int g = (int) Math.round(clamp(ability[s] + difficulty + rnd.nextGaussian() * 8, 0, 100));
+                    t.recordGrade(courses[c], aid, students[s].getId(), g);
+                    grades++;
+                }
+            }
+        }
+        return new Result(students.length, teachers.length, n, enrollments, submissions, grades,
+                (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    // the first admin; a default admin/admin is created on an empty system so the data can be used
+    private static Admin admin() throws Exception {
+        for (Admin a : AppState.admins) return a;
+        Admin a = new Admin(1, "admin", "admin", "admin");
+        AppState.addAdmin(a);
+        a.save();
+        return a;
+    }
+
+    // index of the course whose cumulative probability covers u
+    private static int pick(double[] cumulative, double u) {
+        int i = Arrays.binarySearch(cumulative, u);
+        return Math.min(cumulative.length - 1, i >= 0 ? i : -i - 1);
+    }
+
+    private static int[] shuffled(int n, Random rnd) {
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++) a[i] = i;
+        for (int i = n - 1; i > 0; i--) { int j = rnd.nextInt(i + 1); int t = a[i]; a[i] = a[j]; a[j] = t; }
+        return a;
+    }
+
+    private static int maxId(int[] ids) { int m = 0; for (int id : ids) m = Math.max(m, id); return m; }
+    private static int parse(String s) { try { return Integer.parseInt(s.trim()); } catch (NumberFormatException e) { return 0; } }
+    private static double clamp(double v, double lo, double hi) { return Math.max(lo, Math.min(hi, v)); }
+}
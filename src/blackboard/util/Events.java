@@ -0,0 +1,223 @@
+package blackboard.util;
+
+import blackboard.users.UserRole;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Domain event bus. The places that change state publish what happened (a student enrolled or
+// dropped, a grade recorded, a submission made, a user created or deleted) and subscribers react
+// on their own threads, so caches, statistics or exports can hook in without touching the code
+// that makes the change.
+//
+// A preallocated ring of -Dblackboard.events.ring slots (a power of two, default 4096), shared by
+// every subscriber. publish() claims the next sequence number, fills the slot in place and marks
+// it available: no allocation, no lock, and nothing at all while nobody is subscribed. Each
+// subscriber has a thread that takes every available slot in order as one batch (on() says which
+// event ends it) and then records how far it got. An idle subscriber polls less and less often
+// (up to every 10 ms) instead of being woken per event, so publishing stays a slot write; a
+// publisher only wakes it once a quarter of the ring is waiting. A publisher that would overwrite
+// a slot some subscriber has not handled yet waits for it (backpressure; counted in stalls()).
+//
+// Publishers may hold a course monitor, so a handler must never wait for one - that includes
+// Course's synchronized methods. Events carry the ids and values a handler needs. The Event
+// passed to on() is the ring slot itself: copy what you keep before returning.
+// Journal replay is muted (its changes were published when they first happened).
+public final class Events {
+    public enum Type { STUDENT_ENROLLED, STUDENT_DROPPED, GRADE_RECORDED, SUBMISSION_MADE, USER_CREATED, USER_DELETED }
+
+    // one ring slot; fields that do not apply to the type are null / 0
+    public static final class Event {
+        private long sequence;
+        private Type type;
+        private String courseId, assignmentId;
+        private UserRole role;
+        private int id, grade;
+
+        public long sequence() { return sequence; }
+        public Type type() { return type; }
+        public String courseId() { return courseId; }
+        public String assignmentId() { return assignmentId; }
+        public int studentId() { return id; }
+        public int grade() { return grade; }
+        // USER_CREATED / USER_DELETED
+        public UserRole role() { return role; }
+        public int userId() { return id; }
+
+        @Override public String toString() {
+            return switch (type) {
+                case STUDENT_ENROLLED, STUDENT_DROPPED -> type + " " + courseId + " student " + id;
+                case GRADE_RECORDED -> type + " " + courseId + "/" + assignmentId + " student " + id + " = " + grade;
+                case SUBMISSION_MADE -> type + " " + courseId + "/" + assignmentId + " student " + id;
+                case USER_CREATED, USER_DELETED -> type + " " + role + " " + id;
+            };
+        }
+    }
+
+    public interface Handler { void on(Event e, boolean endOfBatch) throws Exception; }
+
+    private static final int SIZE = Math.max(2, Integer.highestOneBit(Integer.getInteger("blackboard.events.ring", 4096)));
+    private static final int MASK = SIZE - 1, SHIFT = Integer.numberOfTrailingZeros(SIZE);
+    private static final int WAKE = Math.max(1, SIZE / 4);   // backlog at which a publisher wakes a sleeping subscriber
+    private static final long MAX_IDLE_NANOS = 10_000_000;
+    private static final Event[] ring = new Event[SIZE];
+    private static final int[] round = new int[SIZE];   // lap (sequence >>> SHIFT) a slot was last published for
+    private static final VarHandle ROUND = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final AtomicLong claimed = new AtomicLong();
+    private static final LongAdder stalls = new LongAdder();
+    private static volatile Subscription[] subscribers = new Subscription[0];
+    private static volatile long gate = Long.MIN_VALUE;  // lowest handled sequence seen by a publisher
+    private static volatile boolean muted;
+
+    static {
+        for (int i = 0; i < SIZE; i++) ring[i] = new Event();
+        Arrays.fill(round, -1);
+    }
+
+    private Events(){}
+
+    // ---- publishing ----
+
+    public static void studentEnrolled(String courseId, int studentId) { publish(Type.STUDENT_ENROLLED, courseId, null, null, studentId, 0); }
+    public static void studentDropped(String courseId, int studentId) { publish(Type.STUDENT_DROPPED, courseId, null, null, studentId, 0); }
+    public static void gradeRecorded(String courseId, String assignmentId, int studentId, int grade) {
+        publish(Type.GRADE_RECORDED, courseId, assignmentId, null, studentId, grade);
+    }
+    public static void submissionMade(String courseId, String assignmentId, int studentId) {
+        publish(Type.SUBMISSION_MADE, courseId, assignmentId, null, studentId, 0);
+    }
+    public static void userCreated(UserRole role, int id) { publish(Type.USER_CREATED, null, null, role, id, 0); }
+    public static void userDeleted(UserRole role, int id) { publish(Type.USER_DELETED, null, null, role, id, 0); }
+
+    private static void publish(Type type, String courseId, String assignmentId, UserRole role, int id, int grade) {
+        Subscription[] subs = subscribers;
+        if (subs.length == 0 || muted) return;
+        long seq = claimed.getAndIncrement();
+        if (seq - SIZE > gate) awaitSpace(seq - SIZE, subs);
+        Event e = ring[(int) seq & MASK];
+        e.sequence = seq; e.type = type; e.courseId = courseId; e.assignmentId = assignmentId;
+        e.role = role; e.id = id; e.grade = grade;
+        ROUND.setRelease(round, (int) seq & MASK, (int) (seq >>> SHIFT));
+        for (Subscription s : subs) if (s.sleeping && seq - s.done >= WAKE) LockSupport.unpark(s.thread);
+    }
+
+    // backpressure: until every subscriber has handled sequence wrap, the slot's previous lap
+    private static void awaitSpace(long wrap, Subscription[] subs) {
+        long min;
+        boolean stalled = false;
+        for (int spins = 0; wrap > (min = handled(subs)); spins++) {
+            if (!stalled) { stalled = true; stalls.increment(); }
+            for (Subscription s : subs) if (s.sleeping) LockSupport.unpark(s.thread);
+            if (spins < 100) Thread.onSpinWait(); else LockSupport.parkNanos(50_000);
+        }
+        gate = min;
+    }
+
+    private static long handled(Subscription[] subs) {
+        long min = Long.MAX_VALUE;
+        for (Subscription s : subs) if (!s.closed) min = Math.min(min, s.done);   // a stale array may hold closed ones
+        return min;
+    }
+
+    private static boolean available(long seq) {
+        return (int) ROUND.getAcquire(round, (int) seq & MASK) == (int) (seq >>> SHIFT);
+    }
+
+    // Journal.replay: re-applied changes are not news
+    static void mute(boolean on) { muted = on; }
+
+    // ---- subscribing ----
+
+    // handler gets every event published from now on, on a daemon thread of its own
+    public static synchronized Subscription subscribe(String name, Handler handler) {
+        Subscription s = new Subscription(name, handler, claimed.get() - 1);
+        Subscription[] subs = Arrays.copyOf(subscribers, subscribers.length + 1);
+        subs[subs.length - 1] = s;
+        subscribers = subs;
+        s.thread.start();
+        return s;
+    }
+
+    private static synchronized void unsubscribe(Subscription s) {
+        Subscription[] subs = subscribers;
+        int i = Arrays.asList(subs).indexOf(s);
+        if (i < 0) return;
+        Subscription[] rest = new Subscription[subs.length - 1];
+        System.arraycopy(subs, 0, rest, 0, i);
+        System.arraycopy(subs, i + 1, rest, i, rest.length - i);
+        subscribers = rest;
+        gate = Long.MIN_VALUE;
+    }
+
+    // blocks until every subscriber has handled everything published before the call
+    public static void awaitIdle() {
+        long last = claimed.get() - 1;
+        for (Subscription s : subscribers) s.await(last);
+    }
+
+    public static long published() { return claimed.get(); }
+    public static long stalls() { return stalls.sum(); }
+    // events published but not yet handled by the slowest subscriber
+    public static long backlog() {
+        Subscription[] subs = subscribers;
+        return subs.length == 0 ? 0 : claimed.get() - 1 - handled(subs);
+    }
+
+    public static final class Subscription implements AutoCloseable {
+        private final String name;
+        private final Handler handler;
+        private final Thread thread;
+        private volatile long done;                  // last sequence handled
+        private volatile boolean sleeping, closed;
+
+        private Subscription(String name, Handler handler, long from) {
+            this.name = name; this.handler = handler; this.done = from;
+            this.thread = new Thread(this::run, "events-" + name);
+            thread.setDaemon(true);
+        }
+
+        private void run() {
+            long next = done + 1;
+            int idle = 0;
+            long nap = 0;
+            while (!closed) {
+                long end = next;
+                while (end - next < SIZE && available(end)) end++;
+                if (end == next) {
+                    if (++idle < 100) { Thread.onSpinWait(); continue; }
+                    nap = Math.min(MAX_IDLE_NANOS, nap == 0 ? 50_000 : nap * 2);
+                    sleeping = true;
+                    if (!available(next) && !closed) LockSupport.parkNanos(this, nap);
+                    sleeping = false;
+                    continue;
+                }
+                idle = 0;
+                nap = 0;
+                for (long seq = next; seq < end; seq++) {
+                    Event e = ring[(int) seq & MASK];
+                    try { handler.on(e, seq == end - 1); }
+                    catch (Exception ex) { System.out.println("Event handler " + name + " failed on " + e + ": " + ex.getMessage()); }
+                }
+                done = end - 1;
+                next = end;
+            }
+        }
+
+        private void await(long seq) {
+            while (done < seq && thread.isAlive()) { LockSupport.unpark(thread); LockSupport.parkNanos(100_000); }
+        }
+
+        // delivers what was published before the call, then stops
+        @Override public void close() {
+            await(claimed.get() - 1);
+            unsubscribe(this);
+            closed = true;
+            LockSupport.unpark(thread);
+            try { thread.join(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }
+    }
+}
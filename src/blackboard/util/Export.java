@@ -0,0 +1,111 @@
+package blackboard.util;
+
+import blackboard.courses.Course;
+import blackboard.courses.Gradebook;
+import blackboard.users.Student;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Cross-course export: one merged CSV with a row per (course, enrolled student, assignment)
+//
+//   course_id,course_title,student_id,student_name,assignment_id,grade,submitted
+//
+// (students of a course without assignments get one row with the last three fields empty).
+// Courses are visited one at a time, so memory does not grow with the number of courses.
+// With parallel=true the CSV encoding of up to WINDOW courses runs on virtual threads while
+// the calling thread copies the next rosters; chunks are written in course order, so the
+// output is identical either way. Rosters are always copied on the calling thread, which keeps
+// hydration/eviction (CourseCache) single threaded.
+public final class Export {
+    private static final int WINDOW = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+    private static final String HEADER = "course_id,course_title,student_id,student_name,assignment_id,grade,submitted";
+
+    private Export(){}
+
+    public record Result(Path file, int courses, long rows, long bytes, long ms) {
+        @Override public String toString() {
+            return "Exported " + rows + " rows from " + courses + " courses to " + file + " (" + (bytes >> 10) + " KB) in " + ms + " ms";
+        }
+    }
+
+    public static Result run(Path file, boolean parallel) throws IOException {
+        long t0 = System.nanoTime();
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        List<Course> courses = new ArrayList<>(AppState.courses);
+        long rows = 0;
+        try (CsvOut out = CsvOut.create(file)) {
+            out.raw(HEADER).raw('\n');
+            if (!parallel) {
+                for (Course c : courses) rows += encode(c.roster(), out);
+            } else {
+                rows = parallel(courses, out);
+            }
+        }
+        return new Result(file, courses.size(), rows, Files.size(file), (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    private record Encoded(byte[] bytes, long rows) {}
+
+    private static long parallel(List<Course> courses, CsvOut out) throws IOException {
+        long rows = 0;
+        ArrayDeque<Future<Encoded>> inFlight = new ArrayDeque<>();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Course c : courses) {
+                if (inFlight.size() >= WINDOW) rows += drain(inFlight.poll(), out);
+                Course.Roster r = c.roster();
+                inFlight.add(pool.submit(() -> {
+                    CsvOut.Chunk chunk = new CsvOut.Chunk();
+                    long n = encode(r, chunk.out);
+                    chunk.close();
+                    return new Encoded(chunk.bytes(), n);
+                }));
+            }
+            while (!inFlight.isEmpty()) rows += drain(inFlight.poll(), out);
+        }
+        return rows;
+    }
+
+    private static long drain(Future<Encoded> f, CsvOut out) throws IOException {
+        try {
+            Encoded e = f.get();
+            out.write(e.bytes());
+            return e.rows();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("export interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+    }
+
+    private static long encode(Course.Roster r, CsvOut out) throws IOException {
+        long rows = 0;
+        for (int i = 0; i < r.students().length; i++) {
+            int sid = r.students()[i];
+            Student s = AppState.findStudent(sid);
+            String name = s == null ? "" : s.getName();
+            if (r.assignments().length == 0) {
+                out.field(r.courseId()).field(r.title()).field(sid).field(name).empty().empty().empty().endRow();
+                rows++;
+                continue;
+            }
+            for (int a = 0; a < r.assignments().length; a++) {
+                out.field(r.courseId()).field(r.title()).field(sid).field(name).field(r.assignments()[a]);
+                int g = r.grades()[a][i];
+                if (g == Gradebook.NO_GRADE) out.empty(); else out.field(g);
+                out.field(r.submitted()[a][i] ? "yes" : "no").endRow();
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
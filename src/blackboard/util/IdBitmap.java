@@ -0,0 +1,318 @@
+package blackboard.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Compressed set of int ids (Roaring-style). Ids are split by their high 16 bits into chunks;
+// a chunk keeps its low 16 bits as a sorted char[] while it holds at most ARRAY_MAX ids and as
+// a 65536-bit bitset beyond that, so a sparse set costs ~2 bytes per id and a dense one ~1 bit.
+// and/andNot/or work chunk by chunk (a word at a time between bitsets). Ids iterate in unsigned
+// order. Not thread-safe: owners guard it with their own lock.
+public final class IdBitmap {
+    private static final int ARRAY_MAX = 4096;   // a bitset (1024 longs) is smaller beyond this
+    private static final int WORDS = 1024;
+
+    private int[] highs = new int[2];        // sorted chunk keys (id >>> 16)
+    private Chunk[] chunks = new Chunk[2];
+    private int n;                           // chunks in use
+
+    private static final class Chunk {
+        char[] array;    // sorted low bits, or null when bits is used
+        long[] bits;
+        int card;
+
+        Chunk copy() {
+            Chunk c = new Chunk();
+            c.array = array == null ? null : Arrays.copyOf(array, Math.max(card, 1));
+            c.bits = bits == null ? null : bits.clone();
+            c.card = card;
+            return c;
+        }
+        boolean contains(char low) {
+            return bits != null ? (bits[low >>> 6] & (1L << low)) != 0 : Arrays.binarySearch(array, 0, card, low) >= 0;
+        }
+    }
+
+    public IdBitmap(){}
+
+    public static IdBitmap of(int... ids) { IdBitmap b = new IdBitmap(); for (int id : ids) b.add(id); return b; }
+
+    public boolean add(int id) {
+        int at = chunk(id >>> 16);
+        Chunk c;
+        if (at < 0) { c = new Chunk(); c.array = new char[4]; insertChunk(-at - 1, id >>> 16, c); }
+        else c = chunks[at];
+        char low = (char) id;
+        if (c.bits != null) {
+            long mask = 1L << low;
+            if ((c.bits[low >>> 6] & mask) != 0) return false;
+            c.bits[low >>> 6] |= mask; c.card++;
+            return true;
+        }
+        int i = Arrays.binarySearch(c.array, 0, c.card, low);
+        if (i >= 0) return false;
+        i = -i - 1;
+        if (c.card == ARRAY_MAX) { toBits(c); return add(id); }
+        if (c.card == c.array.length) c.array = Arrays.copyOf(c.array, Math.min(ARRAY_MAX, c.card * 2));
+        System.arraycopy(c.array, i, c.array, i + 1, c.card - i);
+        c.array[i] = low; c.card++;
+        return true;
+    }
+
+    public boolean remove(int id) {
+        int at = chunk(id >>> 16);
+        if (at < 0) return false;
+        Chunk c = chunks[at];
+        char low = (char) id;
+        if (c.bits != null) {
+            long mask = 1L << low;
+            if ((c.bits[low >>> 6] & mask) == 0) return false;
+            c.bits[low >>> 6] &= ~mask; c.card--;
+            if (c.card <= ARRAY_MAX) toArray(c);
+        } else {
+            int i = Arrays.binarySearch(c.array, 0, c.card, low);
+            if (i < 0) return false;
+            System.arraycopy(c.array, i + 1, c.array, i, c.card - i - 1);
+            c.card--;
+        }
+        if (c.card == 0) removeChunk(at);
+        return true;
+    }
+
+    public boolean contains(int id) {
+        int at = chunk(id >>> 16);
+        return at >= 0 && chunks[at].contains((char) id);
+    }
+
+    public int cardinality() { int total = 0; for (int i = 0; i < n; i++) total += chunks[i].card; return total; }
+    public boolean isEmpty() { return n == 0; }
+
+    public IdBitmap copy() {
+        IdBitmap b = new IdBitmap();
+        b.highs = Arrays.copyOf(highs, Math.max(2, n));
+        b.chunks = new Chunk[b.highs.length];
+        for (int i = 0; i < n; i++) b.chunks[i] = chunks[i].copy();
+        b.n = n;
+        return b;
+    }
+
+    public void forEach(IntConsumer v) {
+        for (int i = 0; i < n; i++) {
+            int base = highs[i] << 16;
+            Chunk c = chunks[i];
+            if (c.bits == null) { for (int k = 0; k < c.card; k++) v.accept(base | c.array[k]); continue; }
+            for (int w = 0; w < WORDS; w++)
+                for (long word = c.bits[w]; word != 0; word &= word - 1) v.accept(base | (w << 6) + Long.numberOfTrailingZeros(word));
+        }
+    }
+
+    public int[] toArray() {
+        int[] out = new int[cardinality()];
+        int[] at = {0};
+        forEach(id -> out[at[0]++] = id);
+        return out;
+    }
+
+    public interface RangeVisitor { void visit(int first, int last); }
+
+    // maximal runs of consecutive ids, in order
+    public void forEachRange(RangeVisitor v) {
+        long[] run = {0, -2};   // first, last (as unsigned longs); last == -2: none yet
+        forEach(id -> {
+            long u = id & 0xFFFFFFFFL;
+            if (u == run[1] + 1) { run[1] = u; return; }
+            if (run[1] != -2) v.visit((int) run[0], (int) run[1]);
+            run[0] = run[1] = u;
+        });
+        if (run[1] != -2) v.visit((int) run[0], (int) run[1]);
+    }
+
+    // ---- set operations (new bitmaps, arguments unchanged) ----
+
+    public static IdBitmap and(IdBitmap a, IdBitmap b) {
+        IdBitmap out = new IdBitmap();
+        for (int i = 0, j = 0; i < a.n && j < b.n; ) {
+            if (a.highs[i] < b.highs[j]) i++;
+            else if (a.highs[i] > b.highs[j]) j++;
+            else { Chunk c = and(a.chunks[i], b.chunks[j]); if (c.card > 0) out.appendChunk(a.highs[i], c); i++; j++; }
+        }
+        return out;
+    }
+
+    public static IdBitmap andNot(IdBitmap a, IdBitmap b) {
+        IdBitmap out = new IdBitmap();
+        for (int i = 0, j = 0; i < a.n; ) {
+            while (j < b.n && b.highs[j] < a.highs[i]) j++;
+            Chunk c = j < b.n && b.highs[j] == a.highs[i] ? andNot(a.chunks[i], b.chunks[j]) : a.chunks[i].copy();
+            if (c.card > 0) out.appendChunk(a.highs[i], c);
+            i++;
+        }
+        return out;
+    }
+
+    public static IdBitmap or(IdBitmap a, IdBitmap b) {
+        IdBitmap out = new IdBitmap();
+        int i = 0, j = 0;
+        while (i < a.n || j < b.n) {
+            if (j == b.n || (i < a.n && a.highs[i] < b.highs[j])) { out.appendChunk(a.highs[i], a.chunks[i].copy()); i++; }
+            else if (i == a.n || b.highs[j] < a.highs[i]) { out.appendChunk(b.highs[j], b.chunks[j].copy()); j++; }
+            else { out.appendChunk(a.highs[i], or(a.chunks[i], b.chunks[j])); i++; j++; }
+        }
+        return out;
+    }
+
+    // |a and b| without building the intersection
+    public static int andCardinality(IdBitmap a, IdBitmap b) {
+        int total = 0;
+        for (int i = 0, j = 0; i < a.n && j < b.n; ) {
+            if (a.highs[i] < b.highs[j]) i++;
+            else if (a.highs[i] > b.highs[j]) j++;
+            else {
+                Chunk x = a.chunks[i], y = b.chunks[j];
+                if (x.bits != null && y.bits != null) for (int w = 0; w < WORDS; w++) total += Long.bitCount(x.bits[w] & y.bits[w]);
+                else {
+                    Chunk small = x.bits == null ? x : y, other = small == x ? y : x;
+                    for (int k = 0; k < small.card; k++) if (other.contains(small.array[k])) total++;
+                }
+                i++; j++;
+            }
+        }
+        return total;
+    }
+
+    private static Chunk and(Chunk x, Chunk y) {
+        if (x.bits != null && y.bits != null) {
+            Chunk c = new Chunk(); c.bits = new long[WORDS];
+            for (int w = 0; w < WORDS; w++) c.card += Long.bitCount(c.bits[w] = x.bits[w] & y.bits[w]);
+            if (c.card <= ARRAY_MAX) toArray(c);
+            return c;
+        }
+        Chunk small = x.bits == null ? x : y, other = small == x ? y : x;
+        Chunk c = new Chunk(); c.array = new char[Math.max(1, small.card)];
+        for (int k = 0; k < small.card; k++) if (other.contains(small.array[k])) c.array[c.card++] = small.array[k];
+        return c;
+    }
+
+    private static Chunk andNot(Chunk x, Chunk y) {
+        if (x.bits != null) {
+            Chunk c = new Chunk(); c.bits = x.bits.clone(); c.card = x.card;
+            if (y.bits != null) { c.card = 0; for (int w = 0; w < WORDS; w++) c.card += Long.bitCount(c.bits[w] &= ~y.bits[w]); }
+            else for (int k = 0; k < y.card; k++) {
+                char low = y.array[k];
+                if ((c.bits[low >>> 6] & (1L << low)) != 0) { c.bits[low >>> 6] &= ~(1L << low); c.card--; }
+            }
+            if (c.card <= ARRAY_MAX) toArray(c);
+            return c;
+        }
+        Chunk c = new Chunk(); c.array = new char[Math.max(1, x.card)];
+        for (int k = 0; k < x.card; k++) if (!y.contains(x.array[k])) c.array[c.card++] = x.array[k];
+        return c;
+    }
+
+    private static Chunk or(Chunk x, Chunk y) {
+        Chunk c = new Chunk();
+        if (x.bits != null || y.bits != null || x.card + y.card > ARRAY_MAX) {
+            c.bits = new long[WORDS];
+            orInto(c.bits, x); orInto(c.bits, y);
+            for (long w : c.bits) c.card += Long.bitCount(w);
+            if (c.card <= ARRAY_MAX) toArray(c);
+            return c;
+        }
+        c.array = new char[Math.max(1, x.card + y.card)];   // merge two sorted arrays
+        int i = 0, j = 0;
+        while (i < x.card || j < y.card) {
+            if (j == y.card || (i < x.card && x.array[i] < y.array[j])) c.array[c.card++] = x.array[i++];
+            else if (i == x.card || y.array[j] < x.array[i]) c.array[c.card++] = y.array[j++];
+            else { c.array[c.card++] = x.array[i++]; j++; }
+        }
+        return c;
+    }
+
+    private static void orInto(long[] bits, Chunk c) {
+        if (c.bits != null) for (int w = 0; w < WORDS; w++) bits[w] |= c.bits[w];
+        else for (int k = 0; k < c.card; k++) bits[c.array[k] >>> 6] |= 1L << c.array[k];
+    }
+
+    private static void toBits(Chunk c) {
+        c.bits = new long[WORDS];
+        for (int k = 0; k < c.card; k++) c.bits[c.array[k] >>> 6] |= 1L << c.array[k];
+        c.array = null;
+    }
+
+    private static void toArray(Chunk c) {
+        char[] a = new char[Math.max(1, c.card)];
+        int k = 0;
+        for (int w = 0; w < WORDS; w++)
+            for (long word = c.bits[w]; word != 0; word &= word - 1) a[k++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+        c.array = a; c.bits = null;
+    }
+
+    // ---- chunk index ----
+
+    private int chunk(int high) { return Arrays.binarySearch(highs, 0, n, high); }
+
+    private void insertChunk(int at, int high, Chunk c) {
+        if (n == highs.length) { highs = Arrays.copyOf(highs, n * 2); chunks = Arrays.copyOf(chunks, n * 2); }
+        System.arraycopy(highs, at, highs, at + 1, n - at);
+        System.arraycopy(chunks, at, chunks, at + 1, n - at);
+        highs[at] = high; chunks[at] = c; n++;
+    }
+
+    private void appendChunk(int high, Chunk c) { insertChunk(n, high, c); }
+
+    private void removeChunk(int at) {
+        System.arraycopy(highs, at + 1, highs, at, n - at - 1);
+        System.arraycopy(chunks, at + 1, chunks, at, n - at - 1);
+        chunks[--n] = null;
+    }
+
+    // ---- size and serialization ----
+
+    // approximate retained bytes
+    public long estimateBytes() {
+        long total = 48 + highs.length * 8L;
+        for (int i = 0; i < n; i++) total += 32 + (chunks[i].bits != null ? WORDS * 8 : chunks[i].array.length * 2L);
+        return total;
+    }
+
+    // chunks:int then per chunk high:int card:int and either card x char (card <= ARRAY_MAX) or WORDS x long
+    public int serializedSize() {
+        int total = 4;
+        for (int i = 0; i < n; i++) total += 8 + (chunks[i].bits != null ? WORDS * 8 : chunks[i].card * 2);
+        return total;
+    }
+
+    public void writeTo(ByteBuffer out) {
+        out.putInt(n);
+        for (int i = 0; i < n; i++) {
+            Chunk c = chunks[i];
+            out.putInt(highs[i]).putInt(c.card);
+            if (c.bits != null) for (long w : c.bits) out.putLong(w);
+            else for (int k = 0; k < c.card; k++) out.putChar(c.array[k]);
+        }
+    }
+
+    public static IdBitmap readFrom(ByteBuffer in) {
+        IdBitmap b = new IdBitmap();
+        for (int i = 0, chunks = in.getInt(); i < chunks; i++) {
+            int high = in.getInt();
+            Chunk c = new Chunk();
+            c.card = in.getInt();
+            if (c.card > ARRAY_MAX) { c.bits = new long[WORDS]; for (int w = 0; w < WORDS; w++) c.bits[w] = in.getLong(); }
+            else { c.array = new char[Math.max(1, c.card)]; for (int k = 0; k < c.card; k++) c.array[k] = in.getChar(); }
+            b.appendChunk(high, c);
+        }
+        return b;
+    }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        forEachRange((first, last) -> {
+            if (sb.length() > 1) sb.append(';');
+            sb.append(first);
+            if (last != first) sb.append('-').append(last);
+        });
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,57 @@
+package blackboard.util;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// Outcome of a BulkImport: rows applied per kind, rejected rows (all of them go to the
+// rejects file, the first few are kept here for the console) and timings.
+public final class ImportReport {
+    private static final int SHOWN = 20;
+
+    private final Map<BulkImport.Kind, Integer> applied = new EnumMap<>(BulkImport.Kind.class);
+    private final List<String> firstRejects = new ArrayList<>();
+    private int rows, rejected, coursesWritten;
+    private long readMs, persistMs;
+    private String rejectsFile;
+
+    ImportReport() {}
+
+    void row() { rows++; }
+    void applied(BulkImport.Kind k) { applied.merge(k, 1, Integer::sum); }
+    void rejected(long line, String reason) {
+        rejected++;
+        if (firstRejects.size() < SHOWN) firstRejects.add("line " + line + ": " + reason);
+    }
+    void finish(long readMs, long persistMs, int coursesWritten, String rejectsFile) {
+        this.readMs = readMs; this.persistMs = persistMs;
+        this.coursesWritten = coursesWritten; this.rejectsFile = rejectsFile;
+    }
+
+    public int getRows() { return rows; }
+    public int getApplied(BulkImport.Kind k) { return applied.getOrDefault(k, 0); }
+    public int getRejected() { return rejected; }
+    public List<String> getFirstRejects() { return firstRejects; }
+    public int getCoursesWritten() { return coursesWritten; }
+    public String getRejectsFile() { return rejectsFile; }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder("Imported ").append(rows - rejected).append(" of ").append(rows).append(" rows (");
+        boolean first = true;
+        for (var e : applied.entrySet()) {
+            if (!first) sb.append(", ");
+            sb.append(e.getValue()).append(' ').append(e.getKey().name().toLowerCase());
+            first = false;
+        }
+        sb.append(") in ").append(readMs).append(" ms, persisted ").append(coursesWritten)
+          .append(" courses in ").append(persistMs).append(" ms");
+        if (rejected > 0) {
+            sb.append("\n").append(rejected).append(" rejected");
+            if (rejectsFile != null) sb.append(" (all listed in ").append(rejectsFile).append(')');
+            for (String r : firstRejects) sb.append("\n  ").append(r);
+            if (rejected > firstRejects.size()) sb.append("\n  ...");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package blackboard.util;
+
+import java.util.Arrays;
+
+// Open-addressing int -> int hash map (linear probing, no boxing).
+// Integer.MIN_VALUE is reserved as the empty-key marker.
+public final class IntIntMap {
+    private static final int FREE = Integer.MIN_VALUE;
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private final int missing;
+
+    public IntIntMap(int missingValue) { this(16, missingValue); }
+    public IntIntMap(int expected, int missingValue) {
+        int cap = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new int[cap]; values = new int[cap];
+        Arrays.fill(keys, FREE);
+        missing = missingValue;
+    }
+
+    public int size() { return size; }
+    public int capacity() { return keys.length; }
+    public boolean containsKey(int key) { return key != FREE && keys[find(key)] == key; }
+
+    public int get(int key) {
+        if (key == FREE) return missing;
+        int i = find(key);
+        return keys[i] == key ? values[i] : missing;
+    }
+
+    public void put(int key, int value) {
+        if (key == FREE) throw new IllegalArgumentException("reserved key");
+        int i = find(key);
+        if (keys[i] != key) {
+            keys[i] = key; size++;
+            values[i] = value;
+            if (size * 4 >= keys.length * 3) grow();
+            return;
+        }
+        values[i] = value;
+    }
+
+    // returns the old value (or the missing marker)
+    public int remove(int key) {
+        if (key == FREE) return missing;
+        int i = find(key);
+        if (keys[i] != key) return missing;
+        int old = values[i];
+        int mask = keys.length - 1;
+        // backward-shift delete keeps probe chains intact without tombstones
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == FREE) break;
+            int home = mix(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j]; values[i] = values[j]; i = j;
+            }
+        }
+        keys[i] = FREE; size--;
+        return old;
+    }
+
+    public void clear() { Arrays.fill(keys, FREE); size = 0; }
+
+    private int find(int key) {
+        int mask = keys.length - 1, i = mix(key) & mask;
+        while (keys[i] != FREE && keys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    private void grow() {
+        int[] ok = keys, ov = values;
+        keys = new int[ok.length * 2]; values = new int[ok.length * 2];
+        Arrays.fill(keys, FREE); size = 0;
+        for (int i = 0; i < ok.length; i++) if (ok[i] != FREE) put(ok[i], ov[i]);
+    }
+
+    private static int mix(int k) { int h = k * 0x9E3779B9; return h ^ (h >>> 16); }
+}
@@ -0,0 +1,294 @@
+package blackboard.util;
+
+import blackboard.courses.Assignment;
+import blackboard.courses.Course;
+import blackboard.courses.GradingScheme;
+import blackboard.users.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Append-only write-ahead journal (data/journal-<generation>.bin).
+// Every mutation is one fixed 17-byte record: [op:1][a:4][b:4][c:4][d:4].
+// String operands (course/assignment ids, names...) are interned: the first time a string
+// is used a STR record [op:1][code:4][len:4][utf8] is appended and records refer to its code.
+// Each generation file has its own string table.
+// Startup = load the last snapshot + replay() every generation in order. checkpoint() starts a
+// new generation, writes a snapshot (which covers at least everything before the switch) and
+// then deletes the older generations. Appends continue meanwhile; replaying a record whose
+// effect the snapshot already contains is harmless, every operation is idempotent.
+//
+// Ordering: callers append while holding the lock of what they changed (the course), or run
+// the change and its append inside atomically() when it creates or removes an entity.
+//
+// Durability: each append (or batch, see seats()) is forced to disk before it returns, so a
+// change that was journaled survives a power loss, not just a crash of the JVM.
+// -Dblackboard.journal.sync=false leaves that to the OS page cache (faster, for benchmarks).
+public final class Journal {
+    private static final byte STR = 'S';
+    private static final byte ENROLL = 'E';          // a=course        c=student
+    private static final byte WAITLIST = 'W';        // a=course        c=student
+    private static final byte DROP = 'X';            // a=course        c=student
+    private static final byte GRADE = 'G';           // a=course b=aid  c=student d=grade
+    private static final byte SUBMIT = 'U';          // a=course b=aid  c=student
+    private static final byte NEW_ADMIN = 'a';       // a=id b=name c=username d=password
+    private static final byte NEW_TEACHER = 't';
+    private static final byte NEW_STUDENT = 's';
+    private static final byte DEL_USER = 'D';        // a=role ordinal  c=id
+    private static final byte NEW_COURSE = 'C';      // a=course b=title c=capacity d=teacher(-1)
+    private static final byte NEW_ASSIGNMENT = 'A';  // a=course b=aid  c=title
+    private static final byte SET_TEACHER = 'T';     // a=course        c=teacher(-1)
+    private static final byte WEIGHT = 'w';          // a=course b=aid  c=category d=weight (as a string)
+    private static final byte SCHEME = 'g';          // a=course b=GradingScheme.toString()
+    private static final int RECORD = 17;
+
+    private static final int CHECKPOINT_EVERY = 10_000;
+    private static final boolean SYNC = Boolean.parseBoolean(System.getProperty("blackboard.journal.sync", "true"));
+    private static final Path DIR = Paths.get("data");
+
+    private static FileChannel ch;
+    private static final ByteBuffer buf = ByteBuffer.allocate(8192);
+    private static final Map<String, Integer> codes = new HashMap<>();
+    private static final List<String> strings = new ArrayList<>();
+    private static int records;
+    private static long generation = 1;
+    private static boolean checkpointQueued;
+    private static final Object checkpointLock = new Object();   // taken before Journal.class, never under a course lock
+
+    private Journal(){}
+
+    public interface Change { boolean apply() throws IOException; }
+
+    // runs the change (which appends its own records) with no other append in between, so e.g.
+    // an enrollment can never be journaled before the student it refers to; returns its result
+    public static synchronized boolean atomically(Change change) throws IOException { return change.apply(); }
+
+    // --- appends (synchronized with code() so a rotation cannot split a record from its strings) ---
+    public static synchronized void enroll(Course c, int studentId) throws IOException {
+        append(ENROLL, code(c.getId()), 0, studentId, 0);
+    }
+    // one admission pass or drop of c (see Course.register): one flush for the whole batch
+    public static synchronized void seats(Course c, int[] studentIds, Course.Seat[] seats, int n) throws IOException {
+        int course = code(c.getId());
+        for (int i = 0; i < n; i++) {
+            byte op = switch (seats[i]) { case ENROLLED -> ENROLL; case WAITLISTED -> WAITLIST; case DROPPED -> DROP; };
+            put(op, course, 0, studentIds[i], 0);
+        }
+        commit();
+    }
+    public static synchronized void grade(Course c, String assignmentId, int studentId, int grade) throws IOException {
+        append(GRADE, code(c.getId()), code(assignmentId), studentId, grade);
+    }
+    public static synchronized void submit(Course c, String assignmentId, int studentId) throws IOException {
+        append(SUBMIT, code(c.getId()), code(assignmentId), studentId, 0);
+    }
+    public static synchronized void createUser(User u) throws IOException {
+        byte op = switch (u.getRole()) { case ADMIN -> NEW_ADMIN; case TEACHER -> NEW_TEACHER; case STUDENT -> NEW_STUDENT; };
+        append(op, u.getId(), code(u.getName()), code(u.getUsername()), code(u.getPassword()));
+    }
+    public static synchronized void deleteUser(UserRole role, int id) throws IOException {
+        append(DEL_USER, role.ordinal(), 0, id, 0);
+    }
+    public static synchronized void createCourse(Course c) throws IOException {
+        int teacher = c.getTeacher() == null ? -1 : c.getTeacher().getId();
+        append(NEW_COURSE, code(c.getId()), code(c.getTitle()), c.getMaxCapacity(), teacher);
+    }
+    public static synchronized void addAssignment(Course c, Assignment a) throws IOException {
+        put(NEW_ASSIGNMENT, code(c.getId()), code(a.getId()), code(a.getTitle()), 0);
+        if (!a.isPlain()) put(WEIGHT, code(c.getId()), code(a.getId()), code(a.getCategory()), code(Double.toString(a.getWeight())));
+        commit();
+    }
+    public static synchronized void assignmentWeight(Course c, String assignmentId, String category, double weight) throws IOException {
+        append(WEIGHT, code(c.getId()), code(assignmentId), code(category), code(Double.toString(weight)));
+    }
+    public static synchronized void gradingScheme(Course c, GradingScheme scheme) throws IOException {
+        append(SCHEME, code(c.getId()), code(scheme.toString()), 0, 0);
+    }
+    public static synchronized void assignTeacher(Course c, Teacher t) throws IOException {
+        append(SET_TEACHER, code(c.getId()), 0, t == null ? -1 : t.getId(), 0);
+    }
+
+    // --- lifecycle ---
+
+    // applies every generation on top of whatever AppState.loadAll() read, then appends to the last
+    public static synchronized void replay() throws IOException {
+        close();
+        List<Long> gens = generations();
+        generation = gens.isEmpty() ? 1 : gens.get(gens.size() - 1);
+        Events.mute(true);
+        try { for (long g : gens) replay(g); }
+        finally { Events.mute(false); }
+    }
+
+    // one generation file; a torn record at its end is cut off
+    private static void replay(long g) throws IOException {
+        codes.clear(); strings.clear();   // per-file string table; the last one stays for appending
+        Path file = file(g);
+        long valid = 0;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            Metrics.BYTES_READ.add(in.size());
+            try {
+                while (map.hasRemaining()) {
+                    apply(map);
+                    valid = map.position();
+                }
+            } catch (EOFException | java.nio.BufferUnderflowException torn) {
+                // a crash mid-append leaves a partial record; everything before it is good
+            }
+        }
+        if (valid < Files.size(file)) {
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) { out.truncate(valid); }
+        }
+    }
+
+    // snapshot + compaction. Callers must not hold a course lock (the snapshot takes each one).
+    public static void checkpoint() throws Exception {
+        synchronized (checkpointLock) {
+            long keep = rotate();
+            Snapshot.write();
+            for (long g : generations()) if (g < keep) Files.deleteIfExists(file(g));
+        }
+    }
+
+    public static synchronized void close() throws IOException {
+        if (ch != null) { ch.close(); ch = null; }
+        codes.clear(); strings.clear(); records = 0;
+    }
+
+    // --- internals ---
+    private static synchronized void append(byte op, int a, int b, int c, int d) throws IOException {
+        put(op, a, b, c, d);
+        commit();
+    }
+
+    private static void put(byte op, int a, int b, int c, int d) throws IOException {
+        if (buf.remaining() < RECORD) flush();
+        buf.put(op).putInt(a).putInt(b).putInt(c).putInt(d);
+        records++;
+    }
+
+    private static void commit() throws IOException {
+        flush();
+        if (SYNC) ch.force(false);
+        if (records >= CHECKPOINT_EVERY && !checkpointQueued) {
+            // the appending thread may hold a course lock, so the snapshot is written elsewhere
+            checkpointQueued = true;
+            Thread.ofVirtual().name("journal-checkpoint").start(() -> {
+                try { checkpoint(); }
+                catch (Exception e) { System.out.println("Checkpoint failed: " + e.getMessage()); }
+                finally { synchronized (Journal.class) { checkpointQueued = false; } }
+            });
+        }
+    }
+
+    // closes the current generation; the next append starts the following one
+    private static synchronized long rotate() throws IOException {
+        if (ch != null) { flush(); if (SYNC) ch.force(false); }
+        close();
+        return ++generation;
+    }
+
+    private static Path file(long gen) { return DIR.resolve("journal-" + gen + ".bin"); }
+
+    private static List<Long> generations() throws IOException {
+        List<Long> out = new ArrayList<>();
+        if (!Files.isDirectory(DIR)) return out;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(DIR, "journal-*.bin")) {
+            for (Path p : ds) {
+                String n = p.getFileName().toString();
+                try { out.add(Long.parseLong(n.substring(8, n.length() - 4))); } catch (NumberFormatException ignored) { }
+            }
+        }
+        Collections.sort(out);
+        return out;
+    }
+
+    private static synchronized int code(String s) throws IOException {
+        if (s == null) s = "";
+        Integer c = codes.get(s);
+        if (c != null) return c;
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int code = strings.size();
+        if (buf.remaining() < 9 + bytes.length) flush();
+        if (buf.remaining() < 9 + bytes.length) throw new IOException("string too long for journal: " + bytes.length);
+        buf.put(STR).putInt(code).putInt(bytes.length).put(bytes);
+        codes.put(s, code); strings.add(s);
+        return code;
+    }
+
+    private static void flush() throws IOException {
+        if (ch == null) open();
+        buf.flip();
+        Metrics.BYTES_WRITTEN.add(buf.remaining());
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+
+    private static void open() throws IOException {
+        Files.createDirectories(DIR);
+        ch = FileChannel.open(file(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        ch.position(ch.size());
+    }
+
+    private static void apply(ByteBuffer in) throws IOException {
+        byte op = in.get();
+        if (op == STR) {
+            int code = in.getInt(), len = in.getInt();
+            if (len < 0 || len > in.remaining()) throw new EOFException();
+            byte[] bytes = new byte[len]; in.get(bytes);
+            String s = new String(bytes, StandardCharsets.UTF_8);
+            if (code != strings.size()) throw new IOException("journal string table out of order");
+            codes.put(s, code); strings.add(s);
+            return;
+        }
+        if (in.remaining() < RECORD - 1) throw new EOFException();
+        int a = in.getInt(), b = in.getInt(), c = in.getInt(), d = in.getInt();
+        records++;
+        switch (op) {
+            case ENROLL -> {
+                Course crs = AppState.findCourse(str(a)); Student s = AppState.findStudent(c);
+                if (crs != null && s != null) crs.restoreStudent(c);
+            }
+            case WAITLIST -> {
+                Course crs = AppState.findCourse(str(a));
+                if (crs != null && AppState.findStudent(c) != null) crs.restoreWaitlisted(c);
+            }
+            case DROP -> { Course crs = AppState.findCourse(str(a)); if (crs != null) crs.restoreDropped(c); }
+            case GRADE -> { Course crs = AppState.findCourse(str(a)); if (crs != null) crs.setGrade(str(b), c, d); }
+            case SUBMIT -> { Course crs = AppState.findCourse(str(a)); if (crs != null) crs.markSubmitted(str(b), c); }
+            case NEW_ADMIN -> { AppState.repo.removeAdmin(a); AppState.addAdmin(new Admin(a, str(b), str(c), str(d))); }
+            case NEW_TEACHER -> { AppState.removeTeacher(a); AppState.addTeacher(new Teacher(a, str(b), str(c), str(d))); }
+            case NEW_STUDENT -> { AppState.removeStudent(a); AppState.addStudent(new Student(a, str(b), str(c), str(d))); }
+            case DEL_USER -> {
+                UserRole role = UserRole.values()[a];
+                if (role == UserRole.TEACHER) AppState.removeTeacher(c);
+                else if (role == UserRole.STUDENT) AppState.removeStudent(c);
+                else AppState.removeAdmin(c);
+            }
+            case NEW_COURSE -> {
+                Course crs = new Course(str(a), str(b), c);
+                if (d >= 0) crs.setTeacher(AppState.findTeacher(d));
+                AppState.addCourse(crs);
+            }
+            case NEW_ASSIGNMENT -> { Course crs = AppState.findCourse(str(a)); if (crs != null) crs.addAssignment(new Assignment(str(b), str(c))); }
+            case WEIGHT -> {
+                Course crs = AppState.findCourse(str(a));
+                if (crs != null) crs.setAssignmentWeight(str(b), str(c), Double.parseDouble(str(d)));
+            }
+            case SCHEME -> { Course crs = AppState.findCourse(str(a)); if (crs != null) crs.setGradingScheme(GradingScheme.parse(str(b))); }
+            case SET_TEACHER -> { Course crs = AppState.findCourse(str(a)); if (crs != null) AppState.assignTeacher(crs, c < 0 ? null : AppState.findTeacher(c)); }
+            default -> throw new IOException("unknown journal record '" + (char) op + "'");
+        }
+    }
+
+    private static String str(int code) throws IOException {
+        if (code < 0 || code >= strings.size()) throw new IOException("journal refers to unknown string " + code);
+        return strings.get(code);
+    }
+}
@@ -0,0 +1,38 @@
+package blackboard.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// What AppState.loadAll() read and how long each phase took.
+public final class LoadReport {
+    private final String source;
+    private final Map<String, Long> phaseMs = new LinkedHashMap<>();
+    private long phaseStart = System.nanoTime();
+    private final long start = phaseStart;
+
+    LoadReport(String source) { this.source = source; }
+
+    // closes the current phase under this name and starts the next one
+    void phase(String name) {
+        long now = System.nanoTime();
+        phaseMs.put(name, (now - phaseStart) / 1_000_000);
+        phaseStart = now;
+    }
+
+    public String getSource() { return source; }
+    public Map<String, Long> getPhaseMs() { return phaseMs; }
+    public long getTotalMs() { return (phaseStart - start) / 1_000_000; }
+
+    @Override public String toString() {
+        StringBuilder sb = new StringBuilder("Loaded ").append(AppState.admins.size() + AppState.teachers.size() + AppState.students.size())
+                .append(" users, ").append(AppState.courses.size()).append(" courses from ").append(source)
+                .append(" in ").append(getTotalMs()).append(" ms (");
+        boolean first = true;
+        for (var e : phaseMs.entrySet()) {
+            if (!first) sb.append(", ");
+            sb.append(e.getKey()).append(' ').append(e.getValue()).append(" ms");
+            first = false;
+        }
+        return sb.append(')').toString();
+    }
+}
@@ -0,0 +1,290 @@
+package blackboard.util;
+
+import blackboard.courses.CourseCache;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Process-wide counters, gauges and latency timers (log-linear histograms, ~3% precision).
+// Off by default: a disabled timer costs one field read (start() returns 0 and stop(0) returns),
+// a disabled counter the same. Configured from system properties by configure():
+//   -Dblackboard.metrics=true            record
+//   -Dblackboard.metrics.jmx=true        MXBeans under "blackboard:" (default: same as metrics;
+//                                        recording can also be switched on from there)
+//   -Dblackboard.metrics.file=<path>     append a JSON snapshot line every
+//   -Dblackboard.metrics.period=<s>      seconds (default 10)
+// With recording on at startup, domain events are counted too (events.<type>, see Events).
+public final class Metrics {
+    private static volatile boolean enabled;
+    private static volatile boolean jmx;
+    private static final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private static final Map<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+    private static final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+
+    // instrumented paths
+    public static final Timer COURSE_SAVE = timer("course.save");
+    public static final Timer SAVE_GRADES = timer("course.saveGrades");
+    public static final Timer SAVE_SUBMISSIONS = timer("course.saveSubmissions");
+    public static final Timer SAVE_ASSIGNMENTS = timer("course.saveAssignments");
+    public static final Timer REGISTER = timer("course.register");
+    public static final Timer LOAD_ALL = timer("state.loadAll");
+    public static final Timer SAVE_ALL = timer("state.saveAll");
+    public static final Timer LOGIN = timer("auth.login");
+    public static final Counter LOGIN_FAILED = counter("auth.failed");
+    public static final Counter BYTES_WRITTEN = counter("io.bytesWritten");
+    public static final Counter BYTES_READ = counter("io.bytesRead");
+
+    private static final int MENU_CHOICES = 20;
+
+    static {
+        gauge("cache.residentBytes", CourseCache::getResidentBytes);
+        gauge("cache.residentCourses", CourseCache::getResidentCourses);
+        gauge("cache.hits", CourseCache::getHits);
+        gauge("cache.misses", CourseCache::getMisses);
+        gauge("cache.evictions", CourseCache::getEvictions);
+        gauge("cache.writeBacks", CourseCache::getWriteBacks);
+        gauge("writeBehind.pending", WriteBehind::getPending);
+        gauge("state.students", () -> AppState.students.size());
+        gauge("state.courses", () -> AppState.courses.size());
+        gauge("users.heapBytes", AppState::userHeapBytes);
+        gauge("users.offHeapBytes", AppState::userOffHeapBytes);
+        gauge("events.published", Events::published);
+        gauge("events.backlog", Events::backlog);
+        gauge("events.stalls", Events::stalls);
+    }
+
+    private Metrics(){}
+
+    public static boolean enabled() { return enabled; }
+    public static void setEnabled(boolean on) { enabled = on; }
+
+    // timestamp for Timer.stop, or 0 when disabled
+    public static long start() { return enabled ? System.nanoTime() : 0; }
+
+    public static Counter counter(String name) { return counters.computeIfAbsent(name, n -> register(new Counter(), "Counter", n)); }
+    public static Timer timer(String name) { return timers.computeIfAbsent(name, n -> register(new Timer(), "Timer", n)); }
+    public static void gauge(String name, LongSupplier value) { gauges.computeIfAbsent(name, n -> register(new Gauge(value), "Gauge", n)); }
+
+    // wall time of one menu action (prompts included), per role and choice
+    public static void menu(String role, String choice, long start) {
+        if (start == 0) return;
+        int n;
+        try { n = Integer.parseInt(choice.trim()); } catch (NumberFormatException e) { n = -1; }
+        timer("menu." + role + "." + (n >= 1 && n <= MENU_CHOICES ? String.valueOf(n) : "other")).stop(start);
+    }
+
+    public static void reset() {
+        for (Counter c : counters.values()) c.reset();
+        for (Timer t : timers.values()) t.reset();
+    }
+
+    // -Dblackboard.metrics* (see the class comment); call once at startup
+    public static void configure() {
+        boolean on = Boolean.getBoolean("blackboard.metrics");
+        setEnabled(on);
+        if (Boolean.parseBoolean(System.getProperty("blackboard.metrics.jmx", String.valueOf(on)))) exposeJmx();
+        String file = System.getProperty("blackboard.metrics.file");
+        if (file != null && !file.isBlank()) dumpEvery(Paths.get(file), Long.getLong("blackboard.metrics.period", 10));
+        if (on) countEvents();
+    }
+
+    // events.<type> counters (events.gradeRecorded, ...), fed by an Events subscriber
+    private static void countEvents() {
+        Counter[] byType = new Counter[Events.Type.values().length];
+        for (Events.Type t : Events.Type.values()) {
+            StringBuilder name = new StringBuilder("events.");
+            for (String w : t.name().toLowerCase().split("_")) name.append(name.length() == 7 ? w : Character.toUpperCase(w.charAt(0)) + w.substring(1));
+            byType[t.ordinal()] = counter(name.toString());
+        }
+        Events.subscribe("metrics", (e, endOfBatch) -> byType[e.type().ordinal()].inc());
+    }
+
+    // ---- metric types ----
+
+    public interface CounterMXBean { long getCount(); }
+    public interface GaugeMXBean { long getValue(); }
+    public interface TimerMXBean {
+        long getCount();
+        double getMeanMicros();
+        double getP50Micros();
+        double getP99Micros();
+        double getP999Micros();
+        double getMaxMicros();
+    }
+
+    public static final class Counter implements CounterMXBean {
+        private final LongAdder n = new LongAdder();
+        private Counter(){}
+        public void inc() { if (enabled) n.increment(); }
+        public void add(long v) { if (enabled) n.add(v); }
+        @Override public long getCount() { return n.sum(); }
+        void reset() { n.reset(); }
+    }
+
+    public record Gauge(LongSupplier value) implements GaugeMXBean {
+        @Override public long getValue() { return value.getAsLong(); }
+    }
+
+    // nanosecond histogram: values below 2^SUB are exact, above that every power of two is
+    // split into 2^SUB buckets, so any bucket is within 1/2^SUB of its values
+    public static final class Timer implements TimerMXBean {
+        private static final int SUB = 5, SUBS = 1 << SUB, MAX_EXP = 42;   // up to ~73 minutes
+        private final AtomicLongArray buckets = new AtomicLongArray((MAX_EXP - SUB + 1) * SUBS + SUBS);
+        private final LongAdder count = new LongAdder(), sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        private Timer(){}
+
+        public void stop(long start) { if (start != 0) record(System.nanoTime() - start); }
+
+        public void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            buckets.incrementAndGet(index(nanos));
+            count.increment();
+            sum.add(nanos);
+            if (nanos > max.get()) max.accumulateAndGet(nanos, Math::max);
+        }
+
+        private static int index(long v) {
+            if (v < SUBS) return (int) v;
+            int exp = Math.min(63 - Long.numberOfLeadingZeros(v), MAX_EXP);
+            int shift = exp - SUB;
+            return (shift + 1) * SUBS + (int) ((v >>> shift) & (SUBS - 1));
+        }
+
+        // middle of the bucket
+        private static long value(int i) {
+            if (i < SUBS) return i;
+            int shift = i / SUBS - 1;
+            long low = ((long) (SUBS + i % SUBS)) << shift;
+            return low + (1L << shift) / 2;
+        }
+
+        public long percentileNanos(double p) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p / 100 * n)), seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min(value(i), max.get());
+            }
+            return max.get();
+        }
+
+        @Override public long getCount() { return count.sum(); }
+        @Override public double getMeanMicros() { long n = count.sum(); return n == 0 ? 0 : sum.sum() / (double) n / 1e3; }
+        @Override public double getP50Micros() { return percentileNanos(50) / 1e3; }
+        @Override public double getP99Micros() { return percentileNanos(99) / 1e3; }
+        @Override public double getP999Micros() { return percentileNanos(99.9) / 1e3; }
+        @Override public double getMaxMicros() { return max.get() / 1e3; }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+            count.reset(); sum.reset(); max.set(0);
+        }
+    }
+
+    // ---- JMX ----
+
+    public interface MetricsMXBean {
+        boolean isEnabled();
+        void setEnabled(boolean on);
+        void reset();
+        String getSnapshot();
+    }
+
+    private static final class Control implements MetricsMXBean {
+        @Override public boolean isEnabled() { return enabled; }
+        @Override public void setEnabled(boolean on) { Metrics.setEnabled(on); }
+        @Override public void reset() { Metrics.reset(); }
+        @Override public String getSnapshot() { return snapshot(); }
+    }
+
+    // registers everything created so far and everything created later
+    public static synchronized void exposeJmx() {
+        if (jmx) return;
+        jmx = true;
+        register(new Control(), "Metrics", null);
+        counters.forEach((n, c) -> register(c, "Counter", n));
+        gauges.forEach((n, g) -> register(g, "Gauge", n));
+        timers.forEach((n, t) -> register(t, "Timer", n));
+    }
+
+    private static <T> T register(T bean, String type, String name) {
+        if (!jmx) return bean;
+        try {
+            ObjectName on = new ObjectName("blackboard:type=" + type + (name == null ? "" : ",name=" + ObjectName.quote(name)));
+            var server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(on)) server.registerMBean(bean, on);
+        } catch (Exception e) {
+            System.out.println("Metrics: JMX registration of " + name + " failed: " + e.getMessage());
+        }
+        return bean;
+    }
+
+    // ---- snapshots ----
+
+    // one JSON object: time, counters, gauges, timers (micros)
+    public static String snapshot() {
+        StringBuilder sb = new StringBuilder(1024).append("{\"time\":").append(System.currentTimeMillis());
+        sb.append(",\"enabled\":").append(enabled).append(",\"counters\":{");
+        String sep = "";
+        for (var e : counters.entrySet()) { sb.append(sep).append(quote(e.getKey())).append(':').append(e.getValue().getCount()); sep = ","; }
+        sb.append("},\"gauges\":{");
+        sep = "";
+        for (var e : gauges.entrySet()) {
+            long v;
+            try { v = e.getValue().getValue(); } catch (RuntimeException ex) { continue; }
+            sb.append(sep).append(quote(e.getKey())).append(':').append(v); sep = ",";
+        }
+        sb.append("},\"timers\":{");
+        sep = "";
+        for (var e : timers.entrySet()) {
+            Timer t = e.getValue();
+            if (t.getCount() == 0) continue;
+            sb.append(sep).append(quote(e.getKey())).append(String.format(
+                    ":{\"count\":%d,\"meanUs\":%.1f,\"p50Us\":%.1f,\"p99Us\":%.1f,\"p999Us\":%.1f,\"maxUs\":%.1f}",
+                    t.getCount(), t.getMeanMicros(), t.getP50Micros(), t.getP99Micros(), t.getP999Micros(), t.getMaxMicros()));
+            sep = ",";
+        }
+        return sb.append("}}").toString();
+    }
+
+    // appends a snapshot line to file every `seconds` on a daemon thread, and a last one at exit
+    public static void dumpEvery(Path file, long seconds) {
+        long ms = Math.max(1, seconds) * 1000;
+        Thread t = new Thread(() -> {
+            while (true) {
+                try { Thread.sleep(ms); } catch (InterruptedException e) { return; }
+                dump(file);
+            }
+        }, "metrics-dump");
+        t.setDaemon(true);
+        t.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> dump(file), "metrics-final-dump"));
+    }
+
+    private static void dump(Path file) {
+        try {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            Files.writeString(file, snapshot() + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.out.println("Metrics dump failed: " + e.getMessage());
+        }
+    }
+
+    private static String quote(String s) { return '"' + s.replace("\\", "\\\\").replace("\"", "\\\"") + '"'; }
+}
@@ -0,0 +1,30 @@
+package blackboard.util;
+
+import java.util.Comparator;
+import java.util.List;
+
+// One page of a sorted listing (users, courses, a course roster). items are entries from..from+size-1
+// of total; next is the cursor for the page after this one, null on the last page. A cursor is the
+// sort key of the last entry shown, so pass it back as `after` to continue: a listing that changes
+// between calls still pages without skipping or repeating what stayed, and every page costs a
+// binary search plus its own entries, wherever it starts.
+public record Page<T>(List<T> items, int from, int total, String next) {
+    public enum Sort { ID, NAME }
+
+    // entries per page for the menus (-Dblackboard.page)
+    public static final int SIZE = Math.max(1, Integer.getInteger("blackboard.page", 20));
+
+    // names (titles for courses) case-insensitively, ties broken exactly and then by id
+    public static final Comparator<String> NAMES = String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    public boolean hasNext() { return next != null; }
+    public boolean isEmpty() { return items.isEmpty(); }
+
+    // cursor of a NAME-sorted entry: name, then the id after the last NUL
+    public static String key(String name, String id) { return name + '\0' + id; }
+    public static String keyName(String cursor) { return cursor.substring(0, cursor.lastIndexOf('\0')); }
+    public static String keyId(String cursor) { return cursor.substring(cursor.lastIndexOf('\0') + 1); }
+
+    // a NAME cursor handed to an ID-sorted listing (or the reverse) restarts it from the top
+    public static boolean isKey(String cursor) { return cursor != null && cursor.indexOf('\0') >= 0; }
+}
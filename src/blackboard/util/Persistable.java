@@ -0,0 +1,9 @@
+package blackboard.util;
+
+// Entities that write themselves through the storage backend (AppState.storage()).
+// Implementations track whether their stored copy is out of date; save() clears the flag.
+public interface Persistable {
+    void save() throws Exception;
+    boolean isDirty();
+    void markDirty();
+}
@@ -0,0 +1,170 @@
+package blackboard.util;
+
+import blackboard.users.*;
+import blackboard.courses.Course;
+import blackboard.courses.Transcripts;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// In-memory store behind AppState: users in compact per-role directories (indexed by id and
+// username), courses by id, plus teacher -> courses (student -> courses is kept by Transcripts,
+// which the course rosters update directly).
+// Safe for concurrent use: adds are putIfAbsent (exactly one of two racing creates wins) and
+// listings are weakly consistent views in id order, the same order a load inserts in.
+public final class Repository {
+    private static final Comparator<Course> BY_ID = Comparator.comparing(Course::getId);
+    private static final Comparator<Course> BY_TITLE = Comparator.comparing(Course::getTitle, Page.NAMES).thenComparing(BY_ID);
+
+    // one directory per role; usernames are expected to be unique within a role
+    private final UserDirectory<Admin> admins = UserDirectory.admins();
+    private final UserDirectory<Teacher> teachers = UserDirectory.teachers();
+    private final UserDirectory<Student> students = UserDirectory.students();
+    private final ConcurrentSkipListMap<String, Course> coursesById = new ConcurrentSkipListMap<>();
+    private final Map<Integer, Set<Course>> coursesByTeacher = new ConcurrentHashMap<>();
+    // course listings for pages, sorted when first asked for after a change (courseEpoch counts them)
+    private record Sorted(int epoch, Course[] courses) {}
+    private final AtomicInteger courseEpoch = new AtomicInteger();
+    private volatile Sorted courseOrder, courseTitleOrder;
+    // course search: documents are positions in courseDocs (courses are only ever added, or all
+    // cleared). Appends and clears hold courseDocsLock; the index reads the array without it.
+    private final Object courseDocsLock = new Object();
+    private volatile Course[] courseDocs = new Course[16];
+    private int courseDocCount;
+    private final SearchIndex courseSearch = new SearchIndex(i -> courseDocs[i].getId() + ' ' + courseDocs[i].getTitle());
+
+    // --- users ---
+    public boolean addAdmin(Admin a) { return admins.add(a); }
+    public boolean addTeacher(Teacher t) { return teachers.add(t); }
+    public boolean addStudent(Student s) { return students.add(s); }
+
+    // same id, new details; false if there is no such account or the username is taken
+    public boolean updateTeacher(Teacher t) { return teachers.update(t); }
+    public boolean updateStudent(Student s) { return students.update(s); }
+
+    // teacher -> courses is keyed by id, so a re-created teacher keeps their courses
+    public Teacher removeTeacher(int id) { return teachers.remove(id); }
+    public Student removeStudent(int id) { return students.remove(id); }
+    public Admin removeAdmin(int id) { return admins.remove(id); }
+
+    public Admin admin(int id) { return admins.byId(id); }
+    public Teacher teacher(int id) { return teachers.byId(id); }
+    public Student student(int id) { return students.byId(id); }
+
+    public Admin adminByUsername(String u) { return admins.byUsername(u); }
+    public Teacher teacherByUsername(String u) { return teachers.byUsername(u); }
+    public Student studentByUsername(String u) { return students.byUsername(u); }
+
+    public Collection<Admin> admins() { return admins.all(); }
+    public Collection<Teacher> teachers() { return teachers.all(); }
+    public Collection<Student> students() { return students.all(); }
+
+    // sorted pages of accounts; only (nullable) restricts them to those ids
+    public Page<Admin> admins(Page.Sort sort, String after, int limit) { return admins.page(sort, after, limit, null); }
+    public Page<Teacher> teachers(Page.Sort sort, String after, int limit) { return teachers.page(sort, after, limit, null); }
+    public Page<Student> students(Page.Sort sort, String after, int limit, IdBitmap only) { return students.page(sort, after, limit, only); }
+
+    // best matches for a name/username query (SearchIndex)
+    public List<Admin> searchAdmins(String query, int limit) { return admins.search(query, limit); }
+    public List<Teacher> searchTeachers(String query, int limit) { return teachers.search(query, limit); }
+    public List<Student> searchStudents(String query, int limit) { return students.search(query, limit); }
+
+    // sorts what was added to the search indexes since their last search (after a load)
+    public void prepareSearch() {
+        admins.prepareSearch(); teachers.prepareSearch(); students.prepareSearch();
+        courseSearch.prepare();
+    }
+
+    // memory held by the user directories: heap (columns, indexes) and off-heap (strings)
+    public long userHeapBytes() { return admins.heapBytes() + teachers.heapBytes() + students.heapBytes(); }
+    public long userOffHeapBytes() { return admins.offHeapBytes() + teachers.offHeapBytes() + students.offHeapBytes(); }
+
+    // --- courses ---
+    public boolean addCourse(Course c) {
+        if (c == null || coursesById.putIfAbsent(c.getId(), c) != null) return false;
+        courseEpoch.incrementAndGet();
+        synchronized (courseDocsLock) {
+            if (courseDocCount == courseDocs.length) courseDocs = Arrays.copyOf(courseDocs, courseDocCount * 2);
+            courseDocs[courseDocCount] = c;
+            courseSearch.add(courseDocCount++, c.getId(), c.getTitle());
+        }
+        Teacher t = c.getTeacher();
+        if (t != null) indexTeacher(t.getId(), c);
+        return true;
+    }
+    public Course course(String id) { return id == null ? null : coursesById.get(id.trim()); }
+    public Collection<Course> courses() { return Collections.unmodifiableCollection(coursesById.values()); }
+
+    // best matches for a course id/title query (SearchIndex)
+    public List<Course> searchCourses(String query, int limit) {
+        int[] found = courseSearch.search(query, limit);
+        Course[] docs = courseDocs;
+        List<Course> out = new ArrayList<>(found.length);
+        for (int i : found) out.add(docs[i]);
+        return out;
+    }
+
+    // page of courses by id or by title, after the cursor (null: from the start)
+    public Page<Course> courses(Page.Sort sort, String after, int limit) {
+        boolean byTitle = sort == Page.Sort.NAME;
+        int epoch = courseEpoch.get();
+        Sorted sorted = byTitle ? courseTitleOrder : courseOrder;
+        if (sorted == null || sorted.epoch() != epoch) {
+            Course[] copy = coursesById.values().toArray(new Course[0]);   // in id order
+            if (byTitle) Arrays.sort(copy, BY_TITLE);
+            sorted = new Sorted(epoch, copy);
+            if (byTitle) courseTitleOrder = sorted; else courseOrder = sorted;
+        }
+        Course[] all = sorted.courses();
+        int lo = 0, hi = all.length;
+        if (byTitle ? Page.isKey(after) : after != null && !Page.isKey(after)) {
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                Course c = all[mid];
+                int cmp = byTitle ? Page.NAMES.compare(c.getTitle(), Page.keyName(after)) : 0;
+                if (cmp == 0) cmp = c.getId().compareTo(byTitle ? Page.keyId(after) : after);
+                if (cmp <= 0) lo = mid + 1; else hi = mid;
+            }
+        }
+        int to = Math.min(all.length, lo + Math.max(1, limit));
+        String next = null;
+        if (to < all.length) {
+            Course last = all[to - 1];
+            next = byTitle ? Page.key(last.getTitle(), last.getId()) : last.getId();
+        }
+        return new Page<>(List.of(Arrays.copyOfRange(all, lo, to)), lo, all.length, next);
+    }
+
+    // keeps the teacher -> courses index in sync when a course changes hands (under the course's lock)
+    public void assignTeacher(Course c, Teacher t) {
+        if (c == null) return;
+        synchronized (c) {
+            Teacher old = c.getTeacher();
+            if (old != null) {
+                Set<Course> mine = coursesByTeacher.get(old.getId());
+                if (mine != null) mine.remove(c);
+            }
+            c.setTeacher(t);
+            if (t != null && coursesById.get(c.getId()) == c) indexTeacher(t.getId(), c);
+        }
+    }
+    public Collection<Course> coursesOf(Teacher t) {
+        if (t == null) return Collections.emptyList();
+        Set<Course> mine = coursesByTeacher.get(t.getId());
+        return mine == null ? Collections.emptyList() : Collections.unmodifiableCollection(mine);
+    }
+    private void indexTeacher(int teacherId, Course c) {
+        coursesByTeacher.computeIfAbsent(teacherId, k -> new ConcurrentSkipListSet<>(BY_ID)).add(c);
+    }
+
+    public void clear() {
+        admins.clear(); teachers.clear(); students.clear();
+        coursesById.clear(); coursesByTeacher.clear();
+        synchronized (courseDocsLock) { courseSearch.clear(); courseDocs = new Course[16]; courseDocCount = 0; }
+        courseEpoch.incrementAndGet();
+        Transcripts.clear();
+    }
+}
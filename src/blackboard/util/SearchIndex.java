@@ -0,0 +1,507 @@
+package blackboard.util;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+// Search over the words of a few short texts per document (a user's name and username, a course's
+// id and title), for the pickers: "smi" finds Smith and Smithers, "smtih" finds them too, "jo smi"
+// only those that also have a word starting with "jo". Documents are ints chosen by the owner,
+// never reused after remove(); text gives a document's words back for queries of several words.
+//
+// Texts are split into words (runs of letters, runs of digits: "student42" is "student" + "42"),
+// lowercased and stripped of accents. The distinct words are kept sorted in one byte array, each
+// with an ascending slice of a flat int array of its documents (~8 bytes per distinct word plus 4
+// per document word). A prefix is a binary search for its range, which is walked breadth first
+// (the word itself, then longer words by length) until k documents are found, however many words
+// share the prefix. Typos (MAX_EDITS, fewer for short words, adjacent swaps count as one) are
+// found by a Levenshtein walk over the same sorted words that drops a branch as soon as its
+// prefix is too far off; they only run when the prefix does not fill k.
+// Ranking, best first: exact word, prefix (shorter words first), one typo, two typos; with
+// several query words their ranks add up. Ties go to the lower document number.
+// Adds go to an unsorted tail that searches scan and that is merged into the sorted words when
+// it passes TAIL words, or by prepare() (AppState sorts a bulk load in the background). A merge
+// sorts a detached tail outside the monitor: adds carry on into a fresh tail and never wait for
+// it, only other searches do. Removed documents are skipped until a merge drops them. Thread safe.
+public final class SearchIndex {
+    public static final int MAX_EDITS = 2;
+    private static final int TAIL = 1 << 12;      // at most this many words are searched linearly before a merge
+    private static final int NODES = 1 << 15;     // prefix ranges one breadth-first walk may open
+    private static final int VERIFY = 1 << 12;    // documents one search may check against the other query words
+
+    private final IntFunction<String> text;
+
+    // sorted words: word i = bytes[wordAt[i] .. wordAt[i + 1]), its documents docs[docsAt[i] .. docsAt[i + 1])
+    private byte[] bytes = new byte[0];
+    private int[] wordAt = {0};
+    private int[] docsAt = {0};
+    private int[] docs = new int[0];
+    private int words;
+    private Tail tail = new Tail();
+    private IdBitmap removed = new IdBitmap();
+    private int removedCount;
+    // held by merges, searches and clear (then the monitor); the sorted words only change under it
+    private final ReentrantLock mergeLock = new ReentrantLock();
+
+    public SearchIndex(IntFunction<String> text) { this.text = text; }
+
+    public synchronized void add(int doc, String... texts) {
+        Tail t0 = tail;
+        int first = t0.n;   // this document's words so far: tail words first .. n-1
+        for (String t : texts) {
+            if (t == null) continue;
+            if (!isAscii(t)) {
+                for (String w : split(t)) { byte[] b = utf8(w); t0.room(b.length); System.arraycopy(b, 0, t0.bytes, t0.at[t0.n], b.length); t0.commit(doc, first, b.length); }
+                continue;
+            }
+            // the same words as split(), without the garbage (bulk loads add a million of these)
+            int kind = 0, start = 0;
+            for (int i = 0; i <= t.length(); i++) {
+                char c = i < t.length() ? t.charAt(i) : ' ';
+                int k = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' ? 1 : c >= '0' && c <= '9' ? 2 : 0;
+                if (k == kind) continue;
+                if (kind != 0) {
+                    t0.room(i - start);
+                    for (int x = start, at = t0.at[t0.n]; x < i; x++) t0.bytes[at++] = (byte) Character.toLowerCase(t.charAt(x));
+                    t0.commit(doc, first, i - start);
+                }
+                start = i; kind = k;
+            }
+        }
+    }
+
+    public synchronized void remove(int doc) {
+        if (!removed.contains(doc)) { removed.add(doc); removedCount++; }
+    }
+
+    public void clear() {
+        mergeLock.lock();
+        try {
+            synchronized (this) {
+                bytes = new byte[0]; wordAt = new int[]{0}; docsAt = new int[]{0}; docs = new int[0]; words = 0;
+                tail = new Tail();
+                removed = new IdBitmap(); removedCount = 0;
+            }
+        } finally { mergeLock.unlock(); }
+    }
+
+    public synchronized long estimateBytes() {
+        return bytes.length + 4L * (wordAt.length + docsAt.length + docs.length) + tail.bytes.length
+                + 4L * (tail.at.length + tail.doc.length) + removed.estimateBytes() + 128;
+    }
+
+    // merges everything added or removed so far, so that the next search finds it sorted
+    public void prepare() {
+        mergeLock.lock();
+        try {
+            if (pending(0, 0)) merge();
+        } finally { mergeLock.unlock(); }
+    }
+
+    private synchronized boolean pending(int words, int removals) { return tail.n > words || removedCount > removals; }
+
+    // up to k documents matching every word of the query, best first (see above)
+    public int[] search(String query, int k) {
+        List<String> split = split(query);
+        if (split.isEmpty() || k <= 0) return new int[0];
+        mergeLock.lock();
+        try {
+            if (pending(Math.min(TAIL, Math.max(256, words >> 4)), TAIL)) merge();
+            synchronized (this) { return search(split, k); }
+        } finally { mergeLock.unlock(); }
+    }
+
+    private int[] search(List<String> split, int k) {
+        byte[][] q = new byte[split.size()][];
+        for (int i = 0; i < q.length; i++) q[i] = utf8(split.get(i));
+
+        // lead with the query word that begins the fewest document words
+        int lead = 0, lo = 0, hi = 0;
+        long fewest = Long.MAX_VALUE;
+        for (int i = 0; i < q.length; i++) {
+            int l = lowerBound(q[i]), h = prefixEnd(q[i], l);
+            if (docsAt[h] - docsAt[l] < fewest) { fewest = docsAt[h] - docsAt[l]; lead = i; lo = l; hi = h; }
+        }
+        Query s = new Query(q, lead, k);
+        s.prefix(lo, hi);
+        s.tail();
+        if (s.prefixed.cardinality() < k) s.fuzzy();
+        return s.best();
+    }
+
+    // ---- one search ----
+
+    private final class Query {
+        final byte[][] q;
+        final byte[] w;              // the lead word
+        final int lead, k, max;
+        final Map<Integer, Long> found = new HashMap<>();   // document -> rank << 40 | length << 32 | document
+        final IdBitmap prefixed = new IdBitmap();            // documents whose lead word matched without typos
+        int verified;
+
+        Query(byte[][] q, int lead, int k) { this.q = q; this.lead = lead; this.k = k; w = q[lead]; max = maxEdits(w.length); }
+
+        // the words starting with w, breadth first: one level per word length
+        void prefix(int lo, int hi) {
+            if (lo >= hi) return;
+            int[] level = {lo, hi};
+            int n = 2, opened = 1;
+            for (int d = w.length; n > 0 && found.size() < k && opened < NODES; d++) {
+                int[] next = new int[16];
+                int m = 0;
+                for (int r = 0; r < n; r += 2) {
+                    int a = level[r], b = level[r + 1];
+                    if (length(a) == d) offer(a++, d == w.length ? 0 : 1, d);
+                    while (a < b) {
+                        int e = runEnd(a, b, d, at(a, d));
+                        if (m + 2 > next.length) next = Arrays.copyOf(next, next.length * 2);
+                        next[m++] = a; next[m++] = e;
+                        a = e;
+                    }
+                }
+                opened += m / 2;
+                level = next; n = m;
+            }
+        }
+
+        // words added since the last merge
+        void tail() {
+            Tail t = tail;
+            for (int j = 0; j < t.n; j++) {
+                if (removed.contains(t.doc[j])) continue;
+                int from = t.at[j], to = t.at[j + 1];
+                int rank = rank(w, t.bytes, from, to);
+                if (rank >= 0) consider(t.doc[j], rank, to - from);
+            }
+        }
+
+        // the sorted words within max edits of a prefix of w's length
+        void fuzzy() {
+            if (max == 0 || words == 0) return;
+            List<int[]> hits = new ArrayList<>();    // lo, hi, edits
+            int[] row = new int[w.length + 1];
+            for (int j = 0; j <= w.length; j++) row[j] = j;
+            walk(0, words, 0, row, null, -1, hits);
+            hits.sort((x, y) -> x[2] != y[2] ? Integer.compare(x[2], y[2]) : Integer.compare(x[0], y[0]));
+            int taken = 0;   // the tail's typo matches may be worse than these, so count only these
+            for (int[] h : hits)
+                for (int i = h[0]; i < h[1] && taken < k; i++) taken += offer(i, 1 + h[2], length(i));
+        }
+
+        // row[j] = edits between w[0..j) and the d bytes every word in [lo, hi) starts with
+        void walk(int lo, int hi, int d, int[] row, int[] prev, int last, List<int[]> hits) {
+            int m = w.length;
+            if (row[m] <= max) {
+                if (row[m] == 0) return;                   // the prefix itself, walked already
+                hits.add(new int[]{lo, hi, row[m]});
+                int least = row[m];
+                for (int v : row) least = Math.min(least, v);
+                if (least >= row[m]) return;               // nothing below can come closer
+            }
+            int i = lo;
+            if (i < hi && length(i) == d) i++;
+            while (i < hi) {
+                int c = at(i, d), e = runEnd(i, hi, d, c);
+                int[] nr = new int[m + 1];
+                nr[0] = row[0] + 1;
+                int least = nr[0];
+                for (int j = 1; j <= m; j++) {
+                    int x = w[j - 1] & 0xFF;
+                    nr[j] = Math.min(Math.min(nr[j - 1] + 1, row[j] + 1), row[j - 1] + (x == c ? 0 : 1));
+                    if (prev != null && j > 1 && x == last && (w[j - 2] & 0xFF) == c) nr[j] = Math.min(nr[j], prev[j - 2] + 1);
+                    least = Math.min(least, nr[j]);
+                }
+                if (least <= max) walk(i, e, d + 1, nr, row, c, hits);
+                i = e;
+            }
+        }
+
+        // the documents of sorted word i, up to k; how many were taken
+        int offer(int i, int rank, int length) {
+            int taken = 0;
+            for (int p = docsAt[i]; p < docsAt[i + 1] && taken < k; p++) {
+                int doc = docs[p];
+                if (!removed.contains(doc) && consider(doc, rank, length)) taken++;
+            }
+            return taken;
+        }
+
+        // true if the document matches the other query words too
+        boolean consider(int doc, int rank, int length) {
+            int total = rank;
+            if (q.length > 1) {
+                if (verified++ >= VERIFY) return false;
+                List<byte[]> theirs = distinctWords(text.apply(doc));
+                for (int i = 0; i < q.length; i++) {
+                    if (i == lead) continue;
+                    int best = -1;
+                    for (byte[] t : theirs) {
+                        int r = rank(q[i], t, 0, t.length);
+                        if (r >= 0 && (best < 0 || r < best)) best = r;
+                    }
+                    if (best < 0) return false;
+                    total += best;
+                }
+            }
+            long key = (long) total << 40 | (long) Math.min(length, 255) << 32 | doc;
+            found.merge(doc, key, Math::min);
+            if (rank <= 1) prefixed.add(doc);
+            return true;
+        }
+
+        int[] best() {
+            long[] keys = new long[found.size()];
+            int n = 0;
+            for (long key : found.values()) keys[n++] = key;
+            Arrays.sort(keys);
+            int[] out = new int[Math.min(k, n)];
+            for (int i = 0; i < out.length; i++) out[i] = (int) keys[i];
+            return out;
+        }
+    }
+
+    // 0 = the word, 1 = a prefix of it, 1 + edits = a prefix within edits; -1 = too far off
+    private static int rank(byte[] w, byte[] t, int from, int to) {
+        int n = to - from;
+        if (n >= w.length && Arrays.equals(w, 0, w.length, t, from, from + w.length)) return n == w.length ? 0 : 1;
+        int max = maxEdits(w.length);
+        if (max == 0) return -1;
+        int m = w.length, best = Integer.MAX_VALUE;
+        int[] prev = null, row = new int[m + 1];
+        for (int j = 0; j <= m; j++) row[j] = j;
+        for (int d = 0; d < n; d++) {
+            int c = t[from + d] & 0xFF;
+            int[] nr = new int[m + 1];
+            nr[0] = d + 1;
+            int least = nr[0];
+            for (int j = 1; j <= m; j++) {
+                int x = w[j - 1] & 0xFF;
+                nr[j] = Math.min(Math.min(nr[j - 1] + 1, row[j] + 1), row[j - 1] + (x == c ? 0 : 1));
+                if (prev != null && j > 1 && x == (t[from + d - 1] & 0xFF) && (w[j - 2] & 0xFF) == c) nr[j] = Math.min(nr[j], prev[j - 2] + 1);
+                least = Math.min(least, nr[j]);
+            }
+            best = Math.min(best, nr[m]);
+            if (least > max) break;
+            prev = row; row = nr;
+        }
+        return best <= max ? 1 + best : -1;
+    }
+
+    private static int maxEdits(int length) { return Math.min(MAX_EDITS, length <= 2 ? 0 : length <= 5 ? 1 : 2); }
+
+    // ---- sorted words ----
+
+    private int length(int i) { return wordAt[i + 1] - wordAt[i]; }
+    // byte d of word i, -1 past its end
+    private int at(int i, int d) { int p = wordAt[i] + d; return p < wordAt[i + 1] ? bytes[p] & 0xFF : -1; }
+
+    // first position in [lo, hi) past the words whose byte d is c (all of them share the d bytes before)
+    private int runEnd(int lo, int hi, int d, int c) {
+        int a = lo + 1, b = hi;
+        while (a < b) { int mid = (a + b) >>> 1; if (at(mid, d) <= c) a = mid + 1; else b = mid; }
+        return a;
+    }
+
+    // first word >= w
+    private int lowerBound(byte[] w) {
+        int a = 0, b = words;
+        while (a < b) {
+            int mid = (a + b) >>> 1;
+            if (Arrays.compareUnsigned(bytes, wordAt[mid], wordAt[mid + 1], w, 0, w.length) < 0) a = mid + 1; else b = mid;
+        }
+        return a;
+    }
+
+    // first word at or after lo that does not start with w
+    private int prefixEnd(byte[] w, int lo) {
+        int a = lo, b = words;
+        while (a < b) {
+            int mid = (a + b) >>> 1;
+            int n = Math.min(length(mid), w.length);
+            if (Arrays.compareUnsigned(bytes, wordAt[mid], wordAt[mid] + n, w, 0, w.length) <= 0) a = mid + 1; else b = mid;
+        }
+        return a;
+    }
+
+    // ---- merging the tail ----
+
+    // under mergeLock: sorts a detached tail into a new copy of the sorted words, then installs it
+    private void merge() {
+        Tail t;
+        IdBitmap gone;
+        synchronized (this) { t = tail; tail = new Tail(); gone = removed.copy(); }
+        int[] order = t.sorted();
+        int tailed = t.n;
+
+        byte[] nb = new byte[bytes.length + t.at[tailed]];
+        int[] nw = new int[words + tailed + 1], nda = new int[words + tailed + 1], nd = new int[docs.length + tailed];
+        int n = 0, nbLen = 0, ndLen = 0;
+        int i = 0, g = 0, ge = t.sameEnd(order, 0);   // tail words order[g .. ge) are the same word
+        int[] group = new int[16];
+        while (i < words || g < tailed) {
+            int c = i >= words ? 1 : g >= tailed ? -1
+                    : Arrays.compareUnsigned(bytes, wordAt[i], wordAt[i + 1], t.bytes, t.at[order[g]], t.at[order[g] + 1]);
+            int start = ndLen;
+            if (c <= 0) {
+                for (int p = docsAt[i]; p < docsAt[i + 1]; p++) if (!gone.contains(docs[p])) nd[ndLen++] = docs[p];
+            }
+            if (c >= 0) {
+                if (group.length < ge - g) group = new int[ge - g];
+                int m = 0;
+                for (int x = g; x < ge; x++) if (!gone.contains(t.doc[order[x]])) group[m++] = t.doc[order[x]];
+                ndLen = mergeDocs(nd, start, ndLen, group, m);
+            }
+            if (ndLen > start) {
+                int from = c <= 0 ? wordAt[i] : t.at[order[g]], len = c <= 0 ? length(i) : t.at[order[g] + 1] - from;
+                System.arraycopy(c <= 0 ? bytes : t.bytes, from, nb, nbLen, len);
+                nbLen += len;
+                nw[++n] = nbLen;
+                nda[n] = ndLen;
+            }
+            if (c <= 0) i++;
+            if (c >= 0) { g = ge; ge = t.sameEnd(order, g); }
+        }
+        nb = Arrays.copyOf(nb, nbLen); nw = Arrays.copyOf(nw, n + 1); nda = Arrays.copyOf(nda, n + 1); nd = Arrays.copyOf(nd, ndLen);
+        synchronized (this) {
+            bytes = nb; wordAt = nw; docsAt = nda; docs = nd; words = n;
+            removed = IdBitmap.andNot(removed, gone);   // what was removed meanwhile stays to be skipped
+            removedCount = removed.cardinality();
+        }
+    }
+
+    // adds the m documents of more into out[start .. end) (ascending, no repeats); new end
+    private static int mergeDocs(int[] out, int start, int end, int[] more, int m) {
+        Arrays.sort(more, 0, m);
+        int[] had = Arrays.copyOfRange(out, start, end);
+        int a = 0, b = 0, p = start;
+        while (a < had.length || b < m) {
+            int v = b >= m || a < had.length && had[a] <= more[b] ? had[a++] : more[b++];
+            if (p == start || out[p - 1] != v) out[p++] = v;
+        }
+        return p;
+    }
+
+    // words in the order they were added: word j = bytes[at[j] .. at[j + 1]) of document doc[j]
+    private static final class Tail {
+        byte[] bytes = new byte[256];
+        int[] at = new int[33];
+        int[] doc = new int[32];
+        int n;
+
+        void room(int len) {
+            if (n + 1 == doc.length) { doc = Arrays.copyOf(doc, doc.length * 2); at = Arrays.copyOf(at, doc.length + 1); }
+            int end = at[n];
+            if (end + len > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, end + len));
+        }
+
+        // the len bytes just written after the last word become one, unless the document has that word already
+        void commit(int d, int first, int len) {
+            int end = at[n];
+            for (int j = first; j < n; j++) if (Arrays.equals(bytes, at[j], at[j + 1], bytes, end, end + len)) return;
+            doc[n] = d;
+            at[++n] = end + len;
+        }
+
+        // the word numbers in byte order: by their first 3 bytes (9 bits each, 0 = past the end)
+        // in a primitive sort, then the runs that share all 3 by the rest
+        int[] sorted() {
+            long[] keys = new long[n];
+            for (int j = 0; j < n; j++) {
+                long p = 0;
+                for (int d = 0; d < 3; d++) p = p << 9 | byteAt(j, d) + 1;
+                keys[j] = p << 32 | j;
+            }
+            Arrays.sort(keys);
+            int[] order = new int[n];
+            for (int j = 0; j < n; j++) order[j] = (int) keys[j];
+            for (int a = 0, b; a < n; a = b) {
+                long p = keys[a] >>> 32;
+                for (b = a + 1; b < n && keys[b] >>> 32 == p; b++) { }
+                if (b - a > 1 && (p & 0x1FF) != 0) sort(order, a, b, 3);
+            }
+            return order;
+        }
+
+        // first position past g in sorted order with another word
+        int sameEnd(int[] order, int g) {
+            int e = g;
+            while (e < n && compare(order[g], order[e]) == 0) e++;
+            return e;
+        }
+
+        // byte d of word j, -1 past its end
+        int byteAt(int j, int d) { int p = at[j] + d; return p < at[j + 1] ? bytes[p] & 0xFF : -1; }
+        int compare(int x, int y) { return Arrays.compareUnsigned(bytes, at[x], at[x + 1], bytes, at[y], at[y + 1]); }
+
+        // three-way radix quicksort of words by their bytes from d on
+        void sort(int[] a, int lo, int hi, int d) {
+            while (hi - lo > 1) {
+                if (hi - lo < 12) {
+                    for (int x = lo + 1; x < hi; x++)
+                        for (int y = x; y > lo && compare(a[y - 1], a[y]) > 0; y--) { int t = a[y]; a[y] = a[y - 1]; a[y - 1] = t; }
+                    return;
+                }
+                int pivot = byteAt(a[(lo + hi) >>> 1], d), lt = lo, gt = hi - 1, x = lo;
+                while (x <= gt) {
+                    int c = byteAt(a[x], d);
+                    if (c < pivot) { int t = a[lt]; a[lt++] = a[x]; a[x++] = t; }
+                    else if (c > pivot) { int t = a[gt]; a[gt--] = a[x]; a[x] = t; }
+                    else x++;
+                }
+                sort(a, lo, lt, d);
+                sort(a, gt + 1, hi, d);
+                if (pivot < 0) return;   // the middle part are equal words
+                lo = lt; hi = gt + 1; d++;
+            }
+        }
+    }
+
+    // ---- words ----
+
+    // lowercase, accent-free words of s: runs of letters or of digits
+    public static List<String> split(String s) {
+        List<String> out = new ArrayList<>();
+        if (s == null || s.isEmpty()) return out;
+        String f = fold(s);
+        int start = 0, kind = 0;
+        for (int i = 0; i < f.length(); ) {
+            int cp = f.codePointAt(i);
+            int k = Character.isLetter(cp) ? 1 : Character.isDigit(cp) ? 2 : 0;
+            if (k != kind) { if (kind != 0) out.add(f.substring(start, i)); start = i; kind = k; }
+            i += Character.charCount(cp);
+        }
+        if (kind != 0) out.add(f.substring(start));
+        return out;
+    }
+
+    private static String fold(String s) {
+        if (!isAscii(s)) s = Normalizer.normalize(s, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return s.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) if (s.charAt(i) >= 0x80) return false;
+        return true;
+    }
+
+    private static List<byte[]> distinctWords(String... texts) {
+        List<byte[]> out = new ArrayList<>(4);
+        for (String t : texts)
+            for (String w : split(t)) {
+                byte[] b = utf8(w);
+                boolean seen = false;
+                for (byte[] o : out) if (Arrays.equals(o, b)) { seen = true; break; }
+                if (!seen) out.add(b);
+            }
+        return out;
+    }
+
+    private static byte[] utf8(String s) { return s.getBytes(StandardCharsets.UTF_8); }
+}
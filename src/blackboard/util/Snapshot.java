@@ -0,0 +1,303 @@
+package blackboard.util;
+
+import blackboard.courses.Assignment;
+import blackboard.courses.Course;
+import blackboard.courses.CourseSource;
+import blackboard.courses.GradingScheme;
+import blackboard.users.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Single-file binary snapshot of AppState (data/snapshot.bin), loaded through a memory map.
+//
+// header : magic "BBSNAP02" | version:int | sections:int | sections x [type:int count:int offset:long length:long]
+// section: count x [length:int][payload]
+//   user    payload: id:int name username password            (strings are [len:int][utf8])
+//   details payload: n x (aid title) | real:int | n x (aidIndex:int sid:int grade:int) | n x (aidIndex:int sid:int)
+//                    | n x (aidIndex:int IdBitmap)   submissions: written as bitmaps with an empty pair list,
+//                                                    files without the bitmap tail list every pair
+//                    | scheme real x (category weight:double)   grading (absent in older files = unweighted)
+//   course  payload: id title capacity:int teacherId:int n x studentId detailsOffset:long detailsLength:int
+//                    [n x waitlisted studentId]   (absent in older files = empty waitlist)
+//
+// Course details are not decoded at startup: each course keeps a pointer to its details
+// record and hydrates from it on first access (see CourseCache). The pointer holds the channel
+// of the file it was written to, so a checkpoint can replace the file while other threads
+// still hydrate from the old one.
+// The storage backend (see Storage) keeps the per-entity copy; this file is only what startup and
+// checkpoints use.
+public final class Snapshot {
+    public static final Path FILE = Paths.get("data", "snapshot.bin");
+    private static final byte[] MAGIC = "BBSNAP02".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 2;
+    private static final int ADMINS = 1, TEACHERS = 2, STUDENTS = 3, COURSES = 4, DETAILS = 5;
+    private static final int SECTIONS = 5;
+    private static final int HEADER = MAGIC.length + 8 + SECTIONS * 24;
+
+    private static FileChannel current;   // open on the file courses hydrate from
+
+    private Snapshot(){}
+
+    public static boolean exists() { return Files.exists(FILE); }
+
+    // details of one course inside a snapshot file (positional reads, safe from any thread)
+    private record Details(FileChannel file, long offset, int length) implements CourseSource {
+        @Override public void hydrate(Course c) throws IOException { details(c, ByteBuffer.wrap(raw())); }
+        byte[] raw() throws IOException {
+            ByteBuffer b = ByteBuffer.allocate(length);
+            while (b.hasRemaining()) if (file.read(b, offset + b.position()) < 0) throw new IOException("snapshot truncated");
+            Metrics.BYTES_READ.add(length);
+            return b.array();
+        }
+    }
+
+    // written to a temp file and moved into place, so a crash never leaves a half snapshot.
+    // Other threads may keep mutating meanwhile; each course is copied under its own lock.
+    // Cold courses are copied from where they live and stay cold: a checkpoint does not pull
+    // every evicted course back past the heap budget.
+    public static synchronized void write() throws IOException {
+        Files.createDirectories(FILE.getParent());
+        Path tmp = FILE.resolveSibling("snapshot.bin.tmp");
+        List<Course> courses = new ArrayList<>(AppState.courses);
+        long[] offsets = new long[courses.size()];
+        int[] lengths = new int[courses.size()];
+        long[] versions = new long[courses.size()];
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Out out = new Out(ch);
+            out.pos = HEADER;
+            ch.position(HEADER);
+            long[][] index = new long[SECTIONS][];
+            index[0] = users(out, ADMINS, AppState.admins);
+            index[1] = users(out, TEACHERS, AppState.teachers);
+            index[2] = users(out, STUDENTS, AppState.students);
+
+            // details first, so the course records can point at them
+            long start = out.pos;
+            for (int i = 0; i < courses.size(); i++) {
+                Course c = courses.get(i);
+                Bytes b;
+                synchronized (c) {   // the version must match what is encoded
+                    versions[i] = c.detailsVersion();
+                    if (!c.isHydrated() && c.getSource() instanceof Details d) b = Bytes.of(d.raw());   // copy, don't decode
+                    else b = details(c.peekDetails());   // a cold course stays cold
+                }
+                offsets[i] = out.pos + 4;
+                lengths[i] = b.length();
+                out.record(b);
+            }
+            out.flush();
+            index[3] = new long[]{DETAILS, courses.size(), start, out.pos - start};
+
+            start = out.pos;
+            Bytes b = new Bytes();
+            for (int i = 0; i < courses.size(); i++) {
+                b.reset();
+                Course c = courses.get(i);
+                synchronized (c) { course(b, c, offsets[i], lengths[i]); }
+                out.record(b);
+            }
+            out.flush();
+            index[4] = new long[]{COURSES, courses.size(), start, out.pos - start};
+
+            ByteBuffer h = ByteBuffer.allocate(HEADER);
+            h.put(MAGIC).putInt(VERSION).putInt(SECTIONS);
+            for (long[] s : index) h.putInt((int) s[0]).putInt((int) s[1]).putLong(s[2]).putLong(s[3]);
+            h.flip();
+            Metrics.BYTES_WRITTEN.add(h.remaining());
+            ch.write(h, 0);
+            ch.force(false);
+        }
+        Files.move(tmp, FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // every course's details now also live in the new file (as of versions[i])
+        FileChannel old = current, ch = FileChannel.open(FILE, StandardOpenOption.READ);
+        current = ch;
+        for (int i = 0; i < courses.size(); i++) courses.get(i).rebase(new Details(ch, offsets[i], lengths[i]), versions[i]);
+        if (old != null) old.close();   // nothing points into the replaced file any more
+    }
+
+    // fills AppState.repo (caller clears it first); course details stay on disk until used
+    public static synchronized void load() throws IOException {
+        FileChannel ch = FileChannel.open(FILE, StandardOpenOption.READ);
+        try {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException("snapshot larger than 2 GB");
+            ByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            byte[] magic = new byte[MAGIC.length];
+            map.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("not a (current) snapshot file: " + FILE);
+            int version = map.getInt(), sections = map.getInt();
+            if (version != VERSION) throw new IOException("unsupported snapshot version " + version);
+            for (int i = 0; i < sections; i++) {
+                int type = map.getInt(), count = map.getInt();
+                long offset = map.getLong(), length = map.getLong();
+                if (type == DETAILS) continue;   // read lazily through Details
+                Metrics.BYTES_READ.add(length);
+                ByteBuffer sec = map.slice((int) offset, (int) length);
+                for (int r = 0; r < count; r++) {
+                    int len = sec.getInt();
+                    ByteBuffer rec = sec.slice(sec.position(), len);
+                    sec.position(sec.position() + len);
+                    // the storage backend is assumed to match the snapshot, so everything starts clean
+                    switch (type) {
+                        case ADMINS -> { Admin a = new Admin(rec.getInt(), str(rec), str(rec), str(rec)); a.markClean(); if (!AppState.addAdmin(a)) AppState.skipped(a); }
+                        case TEACHERS -> { Teacher t = new Teacher(rec.getInt(), str(rec), str(rec), str(rec)); t.markClean(); if (!AppState.addTeacher(t)) AppState.skipped(t); }
+                        case STUDENTS -> { Student s = new Student(rec.getInt(), str(rec), str(rec), str(rec)); s.markClean(); if (!AppState.addStudent(s)) AppState.skipped(s); }
+                        case COURSES -> { Course c = course(rec, ch); c.markClean(); AppState.addCourse(c); }
+                        default -> { }   // unknown sections are skipped, the index tells us how far
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+        if (current != null) current.close();
+        current = ch;
+    }
+
+    // --- encoding ---
+    private static long[] users(Out out, int type, Collection<? extends User> users) throws IOException {
+        long start = out.pos;
+        Bytes b = new Bytes();
+        for (User u : users) {
+            b.reset();
+            b.putInt(u.getId()); b.putStr(u.getName()); b.putStr(u.getUsername()); b.putStr(u.getPassword());
+            out.record(b);
+        }
+        out.flush();
+        return new long[]{type, users.size(), start, out.pos - start};
+    }
+
+    private static void course(Bytes b, Course c, long detailsOffset, int detailsLength) {
+        b.putStr(c.getId()); b.putStr(c.getTitle());
+        b.putInt(c.getMaxCapacity());
+        b.putInt(c.getTeacher() == null ? -1 : c.getTeacher().getId());
+        List<Integer> ids = c.getStudentIds();
+        b.putInt(ids.size());
+        for (int i = 0; i < ids.size(); i++) b.putInt(ids.get(i));
+        b.putLong(detailsOffset); b.putInt(detailsLength);
+        List<Integer> waiting = c.getWaitlist();
+        b.putInt(waiting.size());
+        for (int sid : waiting) b.putInt(sid);
+    }
+
+    private static Bytes details(Course c) {
+        Bytes b = new Bytes();
+        // assignment ids referenced by grades/submissions get an index into this table
+        Map<String, Integer> aidIndex = new LinkedHashMap<>();
+        for (Assignment a : c.getAssignments()) aidIndex.put(a.getId(), aidIndex.size());
+        Bytes cells = new Bytes();
+        int[] n = new int[1];
+        c.forEachGrade((aid, sid, g) -> {
+            cells.putInt(aidIndex.computeIfAbsent(aid, k -> aidIndex.size())); cells.putInt(sid); cells.putInt(g); n[0]++;
+        });
+        Map<Integer, IdBitmap> subs = new LinkedHashMap<>();
+        for (String aid : c.submittedAssignments()) subs.put(aidIndex.computeIfAbsent(aid, k -> aidIndex.size()), c.submitted(aid));
+
+        // assignment table: real assignments first, then ids only seen in grades/submissions (untitled)
+        b.putInt(aidIndex.size());
+        Map<String, String> titles = new HashMap<>();
+        for (Assignment a : c.getAssignments()) titles.put(a.getId(), a.getTitle());
+        for (String aid : aidIndex.keySet()) { b.putStr(aid); b.putStr(titles.get(aid)); }
+        b.putInt(c.getAssignments().size());
+        b.putInt(n[0]); b.put(cells);
+        b.putInt(0);
+        b.putInt(subs.size());
+        for (var e : subs.entrySet()) { b.putInt(e.getKey()); b.put(e.getValue()); }
+        b.putStr(c.getGradingScheme().toString());
+        for (Assignment a : c.getAssignments()) { b.putStr(a.getCategory()); b.putDouble(a.getWeight()); }
+        return b;
+    }
+
+    private static Course course(ByteBuffer r, FileChannel file) {
+        Course c = new Course(str(r), str(r), r.getInt());
+        int teacherId = r.getInt();
+        if (teacherId >= 0) c.setTeacher(AppState.findTeacher(teacherId));
+        for (int i = 0, n = r.getInt(); i < n; i++) c.restoreStudent(r.getInt());
+        c.setSource(new Details(file, r.getLong(), r.getInt()));
+        if (r.remaining() >= 4) for (int i = 0, n = r.getInt(); i < n; i++) c.restoreWaitlisted(r.getInt());
+        return c;
+    }
+
+    private static void details(Course c, ByteBuffer r) {
+        int na = r.getInt();
+        String[] aids = new String[na], titles = new String[na];
+        for (int i = 0; i < na; i++) { aids[i] = str(r); titles[i] = str(r); }
+        int real = r.getInt();
+        for (int i = 0; i < real; i++) c.addAssignment(new Assignment(aids[i], titles[i]));
+        for (int i = 0, n = r.getInt(); i < n; i++) c.setGrade(aids[r.getInt()], r.getInt(), r.getInt());
+        for (int i = 0, n = r.getInt(); i < n; i++) c.markSubmitted(aids[r.getInt()], r.getInt());
+        if (r.remaining() >= 4) for (int i = 0, n = r.getInt(); i < n; i++) c.markSubmitted(aids[r.getInt()], IdBitmap.readFrom(r));
+        if (r.remaining() >= 4) {
+            c.setGradingScheme(GradingScheme.parse(str(r)));
+            for (int i = 0; i < real; i++) {
+                String category = str(r);
+                double weight = r.getDouble();
+                if (!category.isEmpty() || weight != 1) c.setAssignmentWeight(aids[i], category, weight);
+            }
+        }
+    }
+
+    private static String str(ByteBuffer r) {
+        int len = r.getInt();
+        if (len == 0) return "";
+        byte[] b = new byte[len];
+        r.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // growable record buffer
+    private static final class Bytes {
+        ByteBuffer buf = ByteBuffer.allocate(256);
+        static Bytes of(byte[] raw) { Bytes b = new Bytes(); b.buf = ByteBuffer.wrap(raw); b.buf.position(raw.length); return b; }
+        void reset() { buf.clear(); }
+        void ensure(int n) {
+            if (buf.remaining() >= n) return;
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + n));
+            buf.flip(); bigger.put(buf); buf = bigger;
+        }
+        void putInt(int v) { ensure(4); buf.putInt(v); }
+        void putLong(long v) { ensure(8); buf.putLong(v); }
+        void putDouble(double v) { ensure(8); buf.putDouble(v); }
+        void putStr(String s) {
+            byte[] b = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+            ensure(4 + b.length); buf.putInt(b.length).put(b);
+        }
+        void put(IdBitmap ids) { ensure(ids.serializedSize()); ids.writeTo(buf); }
+        void put(Bytes other) { ensure(other.buf.position()); buf.put(other.buf.array(), 0, other.buf.position()); }
+        int length() { return buf.position(); }
+    }
+
+    // buffered channel writer that tracks the file position
+    private static final class Out {
+        final FileChannel ch;
+        final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+        long pos;
+        Out(FileChannel ch) { this.ch = ch; }
+        void record(Bytes b) throws IOException {
+            int len = b.length();
+            if (buf.remaining() < 4 + len) flush();
+            if (buf.remaining() < 4 + len) {          // oversized record, write it straight through
+                buf.putInt(len); flush();
+                ByteBuffer big = ByteBuffer.wrap(b.buf.array(), 0, len);
+                while (big.hasRemaining()) ch.write(big);
+                Metrics.BYTES_WRITTEN.add(len);
+            } else {
+                buf.putInt(len).put(b.buf.array(), 0, len);
+            }
+            pos += 4 + len;
+        }
+        void flush() throws IOException {
+            buf.flip();
+            Metrics.BYTES_WRITTEN.add(buf.remaining());
+            while (buf.hasRemaining()) ch.write(buf);
+            buf.clear();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package blackboard.util;
+
+import blackboard.courses.Assignment;
+import blackboard.courses.Course;
+import blackboard.courses.Gradebook;
+import blackboard.courses.GradingScheme;
+import blackboard.users.Teacher;
+import blackboard.users.User;
+import blackboard.users.UserRole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.*;
+import java.util.*;
+import java.util.function.IntFunction;
+
+// An embedded SQL database over plain JDBC (H2 by default, in data/sql/; see Storage.open).
+//   users(role, id, name, username, password)          courses(id, title, capacity, teacher, students, waitlist)
+//   assignments(course, pos, id, title, category, weight)   grades(course, pos, assignment, students, grades)
+//   submissions(course, pos, assignment, students)     schemes(course, spec)   (GradingScheme.toString; none = no row)
+// Rosters, waitlists, submission sets and grade columns are binary columns (ids and grades as
+// 4-byte ints / IdBitmap's serialized form): a course line is one row and a course's grades one
+// row per assignment, like the Gradebook's columns (a row per grade cost ~40 us each to rewrite
+// with H2). Saves copy what they are given into a pending set, the latest per key; flush() - and
+// every read - applies it as batched prepared DELETEs and INSERTs in one transaction, so a
+// write-behind batch or saveAll is one commit. Plain SQL only, so any JDBC driver on the class
+// path can stand in for H2 via -Dblackboard.storage.url (and .user / .password).
+final class SqlStorage implements Storage {
+    static final String URL = "jdbc:h2:file:./data/sql/blackboard";
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS users (role VARCHAR(16) NOT NULL, id INT NOT NULL, name VARCHAR NOT NULL, "
+            + "username VARCHAR NOT NULL, password VARCHAR NOT NULL, PRIMARY KEY (role, id))",
+        "CREATE TABLE IF NOT EXISTS courses (id VARCHAR PRIMARY KEY, title VARCHAR NOT NULL, capacity INT NOT NULL, "
+            + "teacher INT, students VARBINARY NOT NULL, waitlist VARBINARY NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS assignments (course VARCHAR NOT NULL, pos INT NOT NULL, id VARCHAR NOT NULL, "
+            + "title VARCHAR NOT NULL, category VARCHAR DEFAULT '' NOT NULL, weight DOUBLE PRECISION DEFAULT 1 NOT NULL, "
+            + "PRIMARY KEY (course, pos))",
+        // databases created before assignments had weights
+        "ALTER TABLE assignments ADD COLUMN IF NOT EXISTS category VARCHAR DEFAULT '' NOT NULL",
+        "ALTER TABLE assignments ADD COLUMN IF NOT EXISTS weight DOUBLE PRECISION DEFAULT 1 NOT NULL",
+        "CREATE TABLE IF NOT EXISTS schemes (course VARCHAR PRIMARY KEY, spec VARCHAR NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS grades (course VARCHAR NOT NULL, pos INT NOT NULL, assignment VARCHAR NOT NULL, "
+            + "students VARBINARY NOT NULL, grades VARBINARY NOT NULL, PRIMARY KEY (course, pos))",
+        "CREATE TABLE IF NOT EXISTS submissions (course VARCHAR NOT NULL, pos INT NOT NULL, assignment VARCHAR NOT NULL, "
+            + "students VARBINARY NOT NULL, PRIMARY KEY (course, pos))",
+    };
+
+    private record UserRow(UserRole role, int id, String name, String username, String password) {}
+    private record UserKey(UserRole role, int id) {}
+    private record CourseRow(String id, String title, int capacity, Integer teacher, byte[] students, byte[] waitlist) {}
+    private record GradeRow(String assignment, byte[] students, byte[] grades) {}
+    private record AssignmentRows(GradingScheme scheme, List<Assignment> list) {}
+
+    private final Connection db;
+    // pending writes; a null user row is a delete
+    private final Map<UserKey, UserRow> users = new LinkedHashMap<>();
+    private final Map<String, CourseRow> courses = new LinkedHashMap<>();
+    private final Map<String, AssignmentRows> assignments = new LinkedHashMap<>();
+    private final Map<String, List<GradeRow>> grades = new LinkedHashMap<>();
+    private final Map<String, Map<String, byte[]>> submissions = new LinkedHashMap<>();
+
+    SqlStorage(String url) throws IOException {
+        try {
+            db = DriverManager.getConnection(url, System.getProperty("blackboard.storage.user", "sa"),
+                    System.getProperty("blackboard.storage.password", ""));
+            db.setAutoCommit(false);
+            try (Statement st = db.createStatement()) { for (String ddl : SCHEMA) st.execute(ddl); }
+            db.commit();
+        } catch (SQLException e) {
+            throw new IOException("cannot open " + url + ": " + e.getMessage()
+                    + ("08001".equals(e.getSQLState()) ? " (is the JDBC driver on the class path? see README)" : ""), e);
+        }
+    }
+
+    @Override public String name() { return "sql"; }
+
+    @Override public synchronized boolean isEmpty() throws IOException {
+        flush();
+        try (Statement st = db.createStatement();
+             ResultSet u = st.executeQuery("SELECT 1 FROM users LIMIT 1")) {
+            if (u.next()) return false;
+            try (ResultSet c = st.executeQuery("SELECT 1 FROM courses LIMIT 1")) { return !c.next(); }
+        } catch (SQLException e) { throw failed(e); }
+    }
+
+    // ---- writes (buffered) ----
+
+    @Override public synchronized void saveUser(User u) {
+        users.put(new UserKey(u.getRole(), u.getId()), new UserRow(u.getRole(), u.getId(), u.getName(), u.getUsername(), u.getPassword()));
+    }
+    @Override public synchronized void deleteUser(UserRole role, int id) { users.put(new UserKey(role, id), null); }
+
+    @Override public synchronized void saveCourse(Course c) {
+        Teacher t = c.getTeacher();
+        courses.put(c.getId(), new CourseRow(c.getId(), c.getTitle(), c.getMaxCapacity(), t == null ? null : t.getId(),
+                ints(c.getStudentIds()), ints(c.getWaitlist())));
+    }
+
+    @Override public synchronized void saveAssignments(String courseId, GradingScheme scheme, List<Assignment> list) {
+        assignments.put(courseId, new AssignmentRows(scheme, List.copyOf(list)));
+    }
+
+    @Override public synchronized void saveGrades(String courseId, Gradebook book) {
+        List<GradeRow> rows = new ArrayList<>();
+        for (int a = 0; a < book.assignmentCount(); a++) {
+            int n = 0;
+            for (int s = 0; s < book.studentCount(); s++) if (book.grade(a, s) != Gradebook.NO_GRADE) n++;
+            ByteBuffer sids = ByteBuffer.allocate(n * 4), gs = ByteBuffer.allocate(n * 4);
+            for (int s = 0; s < book.studentCount(); s++) {
+                int g = book.grade(a, s);
+                if (g != Gradebook.NO_GRADE) { sids.putInt(book.studentAt(s)); gs.putInt(g); }
+            }
+            rows.add(new GradeRow(book.assignmentId(a), sids.array(), gs.array()));
+        }
+        grades.put(courseId, rows);
+    }
+
+    @Override public synchronized void saveSubmissions(String courseId, Map<String, IdBitmap> byAssignment) {
+        Map<String, byte[]> copy = new LinkedHashMap<>();
+        for (var e : byAssignment.entrySet()) {
+            ByteBuffer b = ByteBuffer.allocate(e.getValue().serializedSize());
+            e.getValue().writeTo(b);
+            copy.put(e.getKey(), b.array());
+        }
+        submissions.put(courseId, copy);
+    }
+
+    @Override public synchronized void flush() throws IOException {
+        if (users.isEmpty() && courses.isEmpty() && assignments.isEmpty() && grades.isEmpty() && submissions.isEmpty()) return;
+        try {
+            if (!users.isEmpty()) {
+                try (PreparedStatement del = db.prepareStatement("DELETE FROM users WHERE role = ? AND id = ?");
+                     PreparedStatement ins = db.prepareStatement("INSERT INTO users VALUES (?, ?, ?, ?, ?)")) {
+                    for (var e : users.entrySet()) {
+                        del.setString(1, e.getKey().role().name()); del.setInt(2, e.getKey().id()); del.addBatch();
+                        UserRow u = e.getValue();
+                        if (u == null) continue;
+                        ins.setString(1, u.role().name()); ins.setInt(2, u.id());
+                        ins.setString(3, u.name()); ins.setString(4, u.username()); ins.setString(5, u.password());
+                        ins.addBatch();
+                    }
+                    del.executeBatch(); ins.executeBatch();
+                }
+            }
+            if (!courses.isEmpty()) {
+                try (PreparedStatement del = db.prepareStatement("DELETE FROM courses WHERE id = ?");
+                     PreparedStatement ins = db.prepareStatement("INSERT INTO courses VALUES (?, ?, ?, ?, ?, ?)")) {
+                    for (CourseRow c : courses.values()) {
+                        del.setString(1, c.id()); del.addBatch();
+                        ins.setString(1, c.id()); ins.setString(2, c.title()); ins.setInt(3, c.capacity());
+                        if (c.teacher() == null) ins.setNull(4, Types.INTEGER); else ins.setInt(4, c.teacher());
+                        ins.setBytes(5, c.students()); ins.setBytes(6, c.waitlist());
+                        ins.addBatch();
+                    }
+                    del.executeBatch(); ins.executeBatch();
+                }
+            }
+            if (!assignments.isEmpty()) {
+                try (PreparedStatement del = db.prepareStatement("DELETE FROM assignments WHERE course = ?");
+                     PreparedStatement ins = db.prepareStatement(
+                             "INSERT INTO assignments (course, pos, id, title, category, weight) VALUES (?, ?, ?, ?, ?, ?)");
+                     PreparedStatement delScheme = db.prepareStatement("DELETE FROM schemes WHERE course = ?");
+                     PreparedStatement insScheme = db.prepareStatement("INSERT INTO schemes VALUES (?, ?)")) {
+                    for (var e : assignments.entrySet()) {
+                        del.setString(1, e.getKey()); del.addBatch();
+                        delScheme.setString(1, e.getKey()); delScheme.addBatch();
+                        int pos = 0;
+                        for (Assignment a : e.getValue().list()) {
+                            ins.setString(1, e.getKey()); ins.setInt(2, pos++); ins.setString(3, a.getId()); ins.setString(4, a.getTitle());
+                            ins.setString(5, a.getCategory()); ins.setDouble(6, a.getWeight());
+                            ins.addBatch();
+                        }
+                        GradingScheme scheme = e.getValue().scheme();
+                        if (!scheme.isNone()) { insScheme.setString(1, e.getKey()); insScheme.setString(2, scheme.toString()); insScheme.addBatch(); }
+                    }
+                    del.executeBatch(); ins.executeBatch();
+                    delScheme.executeBatch(); insScheme.executeBatch();
+                }
+            }
+            if (!grades.isEmpty()) {
+                try (PreparedStatement del = db.prepareStatement("DELETE FROM grades WHERE course = ?");
+                     PreparedStatement ins = db.prepareStatement("INSERT INTO grades VALUES (?, ?, ?, ?, ?)")) {
+                    for (var e : grades.entrySet()) {
+                        del.setString(1, e.getKey()); del.addBatch();
+                        int pos = 0;
+                        for (GradeRow g : e.getValue()) {
+                            ins.setString(1, e.getKey()); ins.setInt(2, pos++); ins.setString(3, g.assignment());
+                            ins.setBytes(4, g.students()); ins.setBytes(5, g.grades());
+                            ins.addBatch();
+                        }
+                    }
+                    del.executeBatch(); ins.executeBatch();
+                }
+            }
+            if (!submissions.isEmpty()) {
+                try (PreparedStatement del = db.prepareStatement("DELETE FROM submissions WHERE course = ?");
+                     PreparedStatement ins = db.prepareStatement("INSERT INTO submissions VALUES (?, ?, ?, ?)")) {
+                    for (var e : submissions.entrySet()) {
+                        del.setString(1, e.getKey()); del.addBatch();
+                        int pos = 0;
+                        for (var s : e.getValue().entrySet()) {
+                            ins.setString(1, e.getKey()); ins.setInt(2, pos++); ins.setString(3, s.getKey()); ins.setBytes(4, s.getValue());
+                            ins.addBatch();
+                        }
+                    }
+                    del.executeBatch(); ins.executeBatch();
+                }
+            }
+            db.commit();
+        } catch (SQLException e) {
+            try { db.rollback(); } catch (SQLException ignored) { }
+            throw failed(e);   // still pending: the next flush retries
+        }
+        users.clear(); courses.clear(); assignments.clear(); grades.clear(); submissions.clear();
+    }
+
+    @Override public synchronized void close() throws IOException {
+        try {
+            if (db.isClosed()) return;
+            flush();
+            db.close();
+        } catch (SQLException e) { throw failed(e); }
+    }
+
+    // ---- reads ----
+
+    @Override public synchronized <T extends User> List<T> loadUsers(UserRole role, UserFactory<T> make) throws IOException {
+        flush();
+        List<T> list = new ArrayList<>();
+        try (PreparedStatement q = db.prepareStatement("SELECT id, name, username, password FROM users WHERE role = ? ORDER BY id")) {
+            q.setString(1, role.name());
+            try (ResultSet r = q.executeQuery()) {
+                while (r.next()) list.add(make.make(r.getInt(1), r.getString(2), r.getString(3), r.getString(4)));
+            }
+        } catch (SQLException e) { throw failed(e); }
+        return list;
+    }
+
+    @Override public synchronized List<Course> loadCourses(IntFunction<Teacher> teachers) throws IOException {
+        flush();
+        List<Course> list = new ArrayList<>();
+        try (Statement st = db.createStatement();
+             ResultSet r = st.executeQuery("SELECT id, title, capacity, teacher, students, waitlist FROM courses ORDER BY id")) {
+            while (r.next()) {
+                Course c = new Course(r.getString(1), r.getString(2), r.getInt(3));
+                int t = r.getInt(4);
+                if (teachers != null && !r.wasNull()) c.setTeacher(teachers.apply(t));
+                ByteBuffer ids = ByteBuffer.wrap(r.getBytes(5));
+                while (ids.hasRemaining()) c.restoreStudent(ids.getInt());
+                ids = ByteBuffer.wrap(r.getBytes(6));
+                while (ids.hasRemaining()) c.restoreWaitlisted(ids.getInt());
+                c.setSource(this);
+                c.markClean();
+                list.add(c);
+            }
+        } catch (SQLException e) { throw failed(e); }
+        return list;
+    }
+
+    @Override public synchronized void hydrate(Course c) throws IOException {
+        flush();
+        try {
+            try (PreparedStatement q = db.prepareStatement("SELECT spec FROM schemes WHERE course = ?")) {
+                q.setString(1, c.getId());
+                try (ResultSet r = q.executeQuery()) { if (r.next()) c.setGradingScheme(GradingScheme.parse(r.getString(1))); }
+            }
+            try (PreparedStatement q = db.prepareStatement("SELECT id, title, category, weight FROM assignments WHERE course = ? ORDER BY pos")) {
+                q.setString(1, c.getId());
+                try (ResultSet r = q.executeQuery()) {
+                    while (r.next()) c.addAssignment(new Assignment(r.getString(1), r.getString(2), r.getString(3), r.getDouble(4)));
+                }
+            }
+            try (PreparedStatement q = db.prepareStatement("SELECT assignment, students, grades FROM grades WHERE course = ? ORDER BY pos")) {
+                q.setString(1, c.getId());
+                try (ResultSet r = q.executeQuery()) {
+                    while (r.next()) {
+                        String aid = r.getString(1);
+                        ByteBuffer sids = ByteBuffer.wrap(r.getBytes(2)), gs = ByteBuffer.wrap(r.getBytes(3));
+                        while (sids.hasRemaining()) c.setGrade(aid, sids.getInt(), gs.getInt());
+                    }
+                }
+            }
+            try (PreparedStatement q = db.prepareStatement("SELECT assignment, students FROM submissions WHERE course = ? ORDER BY pos")) {
+                q.setString(1, c.getId());
+                try (ResultSet r = q.executeQuery()) {
+                    while (r.next()) {
+                        IdBitmap ids = IdBitmap.readFrom(ByteBuffer.wrap(r.getBytes(2)));
+                        if (!ids.isEmpty()) c.markSubmitted(r.getString(1), ids);
+                    }
+                }
+            }
+        } catch (SQLException e) { throw failed(e); }
+    }
+
+    // ---- helpers ----
+
+    private static byte[] ints(List<Integer> ids) {
+        ByteBuffer b = ByteBuffer.allocate(ids.size() * 4);
+        for (int id : ids) b.putInt(id);
+        return b.array();
+    }
+
+    private static IOException failed(SQLException e) { return new IOException("sql storage: " + e.getMessage(), e); }
+}
@@ -0,0 +1,65 @@
+package blackboard.util;
+
+import blackboard.courses.Assignment;
+import blackboard.courses.Course;
+import blackboard.courses.CourseSource;
+import blackboard.courses.Gradebook;
+import blackboard.courses.GradingScheme;
+import blackboard.users.Teacher;
+import blackboard.users.User;
+import blackboard.users.UserRole;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+// Storage engine SPI: where the per-entity copy of the data lives. Persistable.save() and the
+// course cache's write-back go through it, and a start without a snapshot loads from it; the
+// journal and snapshot sit in front of it whichever backend is chosen. Selected at startup with
+// -Dblackboard.storage (see open()):
+//   csv     data/<admins|teachers|students|courses|assignments|categories|grades|submissions>/... (the default)
+//   binary  data/store.bin, one append-only log of records, compacted as it grows (BinaryStorage)
+//   sql     an embedded database over JDBC, H2 in data/sql/ unless -Dblackboard.storage.url says
+//           otherwise (SqlStorage)
+//
+// A storage is also the CourseSource of the courses it loaded or wrote back: hydrate(c) fills in
+// c's assignments, grades and submissions. Implementations are safe for concurrent use; course
+// data is written by callers holding that course's monitor, so the lock order is course -> storage.
+public interface Storage extends CourseSource, Closeable {
+    interface UserFactory<T extends User> { T make(int id, String name, String username, String password); }
+
+    String name();
+
+    // nothing stored yet (a fresh data directory or database)
+    boolean isEmpty() throws IOException;
+
+    // ---- writes ----
+    void saveUser(User u) throws IOException;
+    void deleteUser(UserRole role, int id) throws IOException;
+    // the course line: id, title, capacity, teacher, roster, waitlist
+    void saveCourse(Course c) throws IOException;
+    // details, passed in by the course (under its monitor); the grading scheme goes with the assignments
+    void saveAssignments(String courseId, GradingScheme scheme, List<Assignment> assignments) throws IOException;
+    void saveGrades(String courseId, Gradebook grades) throws IOException;
+    void saveSubmissions(String courseId, Map<String, IdBitmap> submissions) throws IOException;
+    // end of a batch of writes (write-behind, saveAll): backends that buffer make them durable here.
+    // Reads always see earlier writes, flushed or not.
+    default void flush() throws IOException { }
+
+    // ---- reads ----
+    // in id order, not yet marked clean
+    <T extends User> List<T> loadUsers(UserRole role, UserFactory<T> make) throws IOException;
+    // course metadata in id order, each with this storage as its (cold) details source
+    List<Course> loadCourses(IntFunction<Teacher> teachers) throws IOException;
+
+    static Storage open(String kind) throws IOException {
+        return switch (kind) {
+            case "csv" -> new CsvStorage();
+            case "binary" -> new BinaryStorage(BinaryStorage.FILE);
+            case "sql" -> new SqlStorage(System.getProperty("blackboard.storage.url", SqlStorage.URL));
+            default -> throw new IllegalArgumentException("unknown storage '" + kind + "' (csv, binary or sql)");
+        };
+    }
+}
@@ -0,0 +1,66 @@
+package blackboard.util;
+
+import blackboard.courses.Course;
+import blackboard.courses.Transcripts;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// End-of-term finalization: the final grade of every enrolled student of every course, as
+//
+//   course_id,student_id,final_grade,letter
+//
+// (both last fields empty for a student with nothing graded that counts). Each course's grades
+// come from Course.finalGrades(), one batch pass over its gradebook under its grading scheme,
+// not a lookup per student. With parallel=true courses are computed on the common fork-join
+// pool, each under its own monitor like concurrent sessions (a cold course hydrates on whichever
+// thread gets it); rows are written in course order, so the output is identical either way.
+public final class TermGrades {
+    private static final String HEADER = "course_id,student_id,final_grade,letter";
+
+    private TermGrades(){}
+
+    public record Result(Path file, int courses, long students, long graded, long computeMs, long ms) {
+        @Override public String toString() {
+            return "Finalized " + students + " enrollments (" + graded + " graded) in " + courses + " courses to " + file
+                    + " in " + ms + " ms (" + computeMs + " ms computing)";
+        }
+    }
+
+    // final grades of every course, in AppState order
+    public static List<Course.FinalGrades> compute(List<Course> courses, boolean parallel) {
+        return parallel ? courses.parallelStream().map(Course::finalGrades).toList()
+                        : courses.stream().map(Course::finalGrades).toList();
+    }
+
+    public static Result run(Path file, boolean parallel) throws IOException {
+        long t0 = System.nanoTime();
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        List<Course.FinalGrades> all = compute(new ArrayList<>(AppState.courses), parallel);
+        long computed = System.nanoTime(), students = 0, graded = 0;
+        try (CsvOut out = CsvOut.create(file)) {
+            out.raw(HEADER).raw('\n');
+            for (Course.FinalGrades f : all) {
+                for (int i = 0; i < f.students().length; i++) {
+                    double g = f.grades()[i];
+                    out.field(f.courseId()).field(f.students()[i]);
+                    if (g < 0) out.empty().empty();
+                    else { out.field(hundredths(g)).field(Transcripts.letter(g)); graded++; }
+                    out.endRow();
+                }
+                students += f.students().length;
+            }
+        }
+        return new Result(file, all.size(), students, graded, (computed - t0) / 1_000_000, (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    // 87.5 -> "87.50", without String.format per row
+    static String hundredths(double g) {
+        long h = Math.round(g * 100);
+        long frac = h % 100;
+        return (h / 100) + (frac < 10 ? ".0" : ".") + frac;
+    }
+}
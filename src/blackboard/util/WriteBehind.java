@@ -0,0 +1,106 @@
+package blackboard.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Background writer to the storage backend. Actions call schedule(entity) instead of entity.save();
+// a daemon thread waits one coalescing window (-Dblackboard.writebehind.ms, default 200),
+// then saves every entity scheduled meanwhile once, skipping ones that are no longer dirty.
+// Durability still comes from the Journal; this only keeps the stored copy current.
+public final class WriteBehind {
+    private static final long WINDOW_MS = Long.getLong("blackboard.writebehind.ms", 200);
+    private static final Object lock = new Object();
+    private static final Set<Persistable> pending = new LinkedHashSet<>();
+    private static Thread flusher;
+    private static boolean writing;
+    private static long scheduled, written;
+
+    private WriteBehind(){}
+
+    public static void schedule(Persistable e) {
+        if (e == null) return;
+        e.markDirty();
+        synchronized (lock) {
+            scheduled++;
+            pending.add(e);
+            if (flusher == null) {
+                flusher = new Thread(WriteBehind::run, "write-behind");
+                flusher.setDaemon(true);
+                flusher.start();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    // writes everything pending on the calling thread
+    public static void flush() {
+        drain();
+        awaitIdle();
+    }
+
+    // blocks until the background thread is not in the middle of a batch
+    public static void awaitIdle() {
+        synchronized (lock) {
+            while (writing) {
+                try { lock.wait(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); return; }
+            }
+        }
+    }
+
+    // flush and stop the background thread (exit path). The thread is not interrupted:
+    // that would close the file channel it may be writing through. It finishes the batch it is
+    // on and exits before the final flush, so nothing writes once this returns (closeStorage).
+    public static void shutdown() {
+        Thread old;
+        synchronized (lock) { old = flusher; flusher = null; lock.notifyAll(); }
+        if (old != null && old != Thread.currentThread()) {
+            try { old.join(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }
+        flush();
+    }
+
+    public static long getScheduled() { synchronized (lock) { return scheduled; } }
+    public static long getWritten() { synchronized (lock) { return written; } }
+    public static int getPending() { synchronized (lock) { return pending.size(); } }
+
+    private static void run() {
+        while (true) {
+            synchronized (lock) {
+                while (pending.isEmpty() && flusher == Thread.currentThread()) {
+                    try { lock.wait(); } catch (InterruptedException e) { return; }
+                }
+                if (flusher != Thread.currentThread()) return;
+            }
+            try { Thread.sleep(WINDOW_MS); } catch (InterruptedException e) { return; }   // let repeats coalesce
+            drain();
+        }
+    }
+
+    private static void drain() {
+        List<Persistable> batch;
+        synchronized (lock) {
+            while (writing) {
+                try { lock.wait(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); return; }
+            }
+            if (pending.isEmpty()) return;
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            writing = true;
+        }
+        int n = 0;
+        try {
+            for (Persistable e : batch) {
+                if (!e.isDirty()) continue;
+                try { e.save(); n++; }
+                catch (Exception ex) { System.out.println("Background save failed: " + ex.getMessage()); }
+            }
+            // one commit / buffer flush per batch
+            try { AppState.storage().flush(); }
+            catch (Exception ex) { System.out.println("Background save failed: " + ex.getMessage()); }
+        } finally {
+            synchronized (lock) { writing = false; written += n; lock.notifyAll(); }
+        }
+    }
+}
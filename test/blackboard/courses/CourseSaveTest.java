@@ -0,0 +1,41 @@
+package blackboard.courses;
+
+import blackboard.util.AppState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A course whose save fails stays dirty, so saveAll (or the next write-behind batch) retries it.
+class CourseSaveTest {
+    static final Path COURSES = Paths.get("data", "courses");
+
+    @BeforeEach
+    void fresh() throws Exception { AppState.resetAllData(); }
+
+    @AfterEach
+    void cleanUp() throws Exception { AppState.resetAllData(); }
+
+    @Test
+    void failedSaveStaysDirty() throws Exception {
+        Course c = new Course("C1", "Retried", 10);
+        c.addAssignment(new Assignment("A1", "Essay"));
+        c.setGrade("A1", 5, 90);
+        AppState.addCourse(c);
+        Files.createDirectories(COURSES.getParent());
+        Files.writeString(COURSES, "in the way");   // the csv backend cannot create data/courses/
+
+        assertThrows(Exception.class, c::save);
+        assertTrue(c.isDirty(), "clean after a failed save");
+
+        Files.delete(COURSES);
+        AppState.saveAll();
+        assertFalse(c.isDirty());
+        assertTrue(Files.exists(COURSES.resolve("C1.csv")));
+        AppState.loadStorage();
+        assertEquals(90, AppState.findCourse("C1").getGrade("A1", 5), "details written on the retry");
+    }
+}
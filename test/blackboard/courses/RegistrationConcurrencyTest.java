@@ -0,0 +1,121 @@
+package blackboard.courses;
+
+import blackboard.users.Admin;
+import blackboard.users.Student;
+import blackboard.util.AppState;
+import blackboard.util.Journal;
+import blackboard.util.WriteBehind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Concurrent register/drop on one small course from many threads: the roster never goes past
+// the capacity, nobody is both enrolled and waitlisted, a waitlist only exists while the course
+// is full, and a restart from the journal alone or from the CSV files alone gives back exactly
+// the roster and waitlist (in order) that were in memory.
+class RegistrationConcurrencyTest {
+    static final int CAPACITY = 25, STUDENTS = 200, THREADS = 8, OPS = 400;
+    static final Path DATA = Paths.get("data"), SAVED = Paths.get("data-saved");
+
+    @BeforeEach
+    void fresh() throws Exception {
+        AppState.resetAllData();
+        deleteTree(SAVED);
+    }
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        WriteBehind.shutdown();
+        AppState.resetAllData();
+        deleteTree(SAVED);
+    }
+
+    @Test
+    void capacityHoldsAndRestartsAgree() throws Exception {
+        Admin admin = new Admin(1, "Admin", "admin", "admin");
+        for (int id = 1; id <= STUDENTS; id++) admin.createStudent(new Student(id, "Student " + id, "student" + id, "pw"));
+        Course c = new Course("C1", "Hot course", CAPACITY);
+        admin.createCourse(c);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Random rnd = new Random(t);
+            done.add(pool.submit(() -> {
+                for (int i = 0; i < OPS; i++) {
+                    int sid = 1 + rnd.nextInt(STUDENTS);
+                    if (rnd.nextInt(3) == 0) c.drop(sid);
+                    else c.register(AppState.findStudent(sid));
+                    assertTrue(c.getStudentIds().size() <= CAPACITY, "capacity exceeded");
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : done) f.get();
+        pool.shutdown();
+
+        Set<Integer> enrolled = new TreeSet<>(c.getStudentIds());
+        List<Integer> waitlist = c.getWaitlist();
+        assertEquals(c.getStudentIds().size(), enrolled.size(), "enrolled twice");
+        assertTrue(waitlist.isEmpty() || enrolled.size() == CAPACITY, "waitlist next to a free seat");
+        for (int sid : waitlist) assertFalse(enrolled.contains(sid), "enrolled and waitlisted: " + sid);
+
+        // stop everything that writes, with the stored copies current and the journal closed
+        WriteBehind.shutdown();
+        AppState.saveAll();
+        Journal.close();
+        AppState.closeStorage();
+        copyTree(DATA, SAVED);
+
+        // the journal alone: no snapshot, no CSV files
+        try (Stream<Path> files = Files.list(DATA)) {
+            for (Path p : files.toList()) if (!p.getFileName().toString().startsWith("journal-")) deleteTree(p);
+        }
+        Course fromJournal = restart("C1");
+        assertEquals(enrolled, new TreeSet<>(fromJournal.getStudentIds()), "roster after journal replay");
+        assertEquals(waitlist, fromJournal.getWaitlist(), "waitlist after journal replay");
+
+        // the CSV files alone: no journal, no snapshot
+        Journal.close();
+        AppState.closeStorage();
+        deleteTree(DATA);
+        copyTree(SAVED, DATA);
+        try (Stream<Path> files = Files.list(DATA)) {
+            for (Path p : files.toList()) if (p.getFileName().toString().startsWith("journal-")) Files.delete(p);
+        }
+        Files.deleteIfExists(DATA.resolve("snapshot.bin"));
+        Course fromCsv = restart("C1");
+        assertEquals(enrolled, new TreeSet<>(fromCsv.getStudentIds()), "roster from CSV");
+        assertEquals(waitlist, fromCsv.getWaitlist(), "waitlist from CSV");
+    }
+
+    // what Main does at startup, on whatever is left in data/
+    private static Course restart(String courseId) throws Exception {
+        CourseCache.clear();
+        AppState.loadAll();
+        Journal.replay();
+        Course c = AppState.findCourse(courseId);
+        assertNotNull(c, "course " + courseId + " after restart");
+        return c;
+    }
+
+    private static void copyTree(Path from, Path to) throws Exception {
+        try (Stream<Path> walk = Files.walk(from)) {
+            for (Path p : walk.toList()) Files.copy(p, to.resolve(from.relativize(p).toString()), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteTree(Path root) throws Exception {
+        if (!Files.exists(root)) return;
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+}
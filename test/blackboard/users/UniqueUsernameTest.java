@@ -0,0 +1,69 @@
+package blackboard.users;
+
+import blackboard.util.AppState;
+import blackboard.util.WriteBehind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Usernames are unique within a role: the directory refuses a second account with a taken one,
+// Admin.create* reports it, and so every account that exists can log in.
+class UniqueUsernameTest {
+    private final Admin admin = new Admin(1, "Admin", "admin", "admin");
+
+    @BeforeEach
+    void fresh() throws Exception { AppState.resetAllData(); }
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        WriteBehind.shutdown();
+        AppState.resetAllData();
+    }
+
+    @Test
+    void directoryRefusesTakenUsername() {
+        UserDirectory<Student> dir = UserDirectory.students();
+        assertTrue(dir.add(new Student(1, "First", "sam", "pw1")));
+        assertFalse(dir.add(new Student(2, "Second", "sam", "pw2")), "username taken");
+        assertFalse(dir.add(new Student(1, "Again", "other", "pw")), "id taken");
+        assertEquals(1, dir.size());
+        assertNull(dir.byId(2));
+
+        dir.remove(1);
+        assertTrue(dir.add(new Student(2, "Second", "sam", "pw2")), "free again once its owner is gone");
+        assertEquals(2, dir.byUsername("sam").getId());
+    }
+
+    @Test
+    void createReportsTakenUsername() {
+        assertTrue(admin.createStudent(new Student(10, "Sam One", "sam", "pw1")));
+        assertFalse(admin.createStudent(new Student(11, "Sam Two", "sam", "pw2")));
+        assertNull(AppState.findStudent(11), "the second account was not created");
+        assertFalse(admin.createStudent(new Student(10, "Other", "other", "pw")));
+
+        assertTrue(admin.createTeacher(new Teacher(20, "Tea One", "tea", "pw1")));
+        assertFalse(admin.createTeacher(new Teacher(21, "Tea Two", "tea", "pw2")));
+        assertNull(AppState.findTeacher(21));
+
+        // another role may use it; each login finds its own account
+        assertTrue(admin.createTeacher(new Teacher(22, "Sam Teacher", "sam", "pw3")));
+        assertEquals(10, AppState.authenticate("sam", "pw1").getId());
+        assertEquals(UserRole.TEACHER, AppState.authenticate("sam", "pw3").getRole());
+        assertNull(AppState.authenticate("sam", "pw2"));
+    }
+
+    @Test
+    void storedDuplicatesLoadFirstOnly() throws Exception {
+        AppState.storage().saveUser(new Student(1, "Old One", "dup", "a"));
+        AppState.storage().saveUser(new Student(2, "Old Two", "dup", "b"));
+        AppState.storage().saveUser(new Student(3, "Unique", "solo", "c"));
+        AppState.storage().flush();
+        AppState.loadStorage();
+        assertNotNull(AppState.findStudent(1));
+        assertNull(AppState.findStudent(2), "left out: its username is taken");
+        assertNotNull(AppState.findStudent(3));
+        assertEquals(1, AppState.authenticate("dup", "a").getId());
+    }
+}
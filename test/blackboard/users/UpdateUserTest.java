@@ -0,0 +1,89 @@
+package blackboard.users;
+
+import blackboard.courses.CourseCache;
+import blackboard.util.AppState;
+import blackboard.util.Journal;
+import blackboard.util.WriteBehind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Admin "update user": the new details replace the account in one step (no moment without an
+// account under that id), a taken username is refused with the account left as it was, and the
+// update survives a restart from the journal alone.
+class UpdateUserTest {
+    private final Admin admin = new Admin(1, "Admin", "admin", "admin");
+
+    @BeforeEach
+    void fresh() throws Exception { AppState.resetAllData(); }
+
+    @AfterEach
+    void cleanUp() throws Exception { AppState.resetAllData(); }
+
+    @Test
+    void updateReplacesLogin() {
+        assertTrue(admin.createStudent(new Student(10, "Sam", "sam", "old")));
+        assertTrue(admin.createStudent(new Student(11, "Kim", "kim", "pw")));
+        assertTrue(admin.updateStudent(new Student(10, "Sam", "samuel", "new")));
+        assertEquals(10, AppState.authenticate("samuel", "new").getId());
+        assertNull(AppState.authenticate("sam", "old"));
+
+        assertFalse(admin.updateStudent(new Student(10, "Sam", "kim", "x")), "username of another student");
+        assertEquals("samuel", AppState.findStudent(10).getUsername());
+        assertEquals(11, AppState.authenticate("kim", "pw").getId());
+        assertTrue(admin.updateStudent(new Student(10, "Sam", "samuel", "newer")), "keeping one's own username");
+        assertFalse(admin.updateStudent(new Student(99, "Nobody", "nobody", "x")), "no such student");
+        assertNull(AppState.findStudent(99));
+
+        assertTrue(admin.createTeacher(new Teacher(20, "Tea", "tea", "pw")));
+        assertTrue(admin.updateTeacher(new Teacher(20, "Tea", "teacher", "pw2")));
+        assertEquals(20, AppState.authenticate("teacher", "pw2").getId());
+    }
+
+    @Test
+    void readersNeverSeeTheAccountMissing() throws Exception {
+        assertTrue(admin.createStudent(new Student(10, "Sam", "sam0", "pw")));
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger missing = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) if (AppState.findStudent(10) == null) missing.incrementAndGet();
+        });
+        reader.start();
+        for (int i = 1; i <= 2000; i++) assertTrue(admin.updateStudent(new Student(10, "Sam", "sam" + i, "pw")));
+        done.set(true);
+        reader.join();
+        assertEquals(0, missing.get(), "lookups that found no student 10");
+        assertEquals(1, AppState.students.size());
+    }
+
+    @Test
+    void updateReplaysFromJournal() throws Exception {
+        assertTrue(admin.createStudent(new Student(10, "Sam", "sam", "old")));
+        assertTrue(admin.updateStudent(new Student(10, "Sam", "samuel", "new")));
+        WriteBehind.shutdown();
+        Journal.close();
+        AppState.closeStorage();
+        // the journal alone
+        try (Stream<Path> files = Files.list(Paths.get("data"))) {
+            for (Path p : files.toList()) if (!p.getFileName().toString().startsWith("journal-")) deleteTree(p);
+        }
+        CourseCache.clear();
+        AppState.loadAll();
+        Journal.replay();
+        assertEquals(10, AppState.authenticate("samuel", "new").getId());
+        assertNull(AppState.authenticate("sam", "old"));
+    }
+
+    private static void deleteTree(Path root) throws Exception {
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path p : walk.sorted(java.util.Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package blackboard.users;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A refused add leaves the directory as it was: no row that all() or the gauges count but no id
+// lookup reaches.
+class UserDirectoryTest {
+    @Test
+    void reservedIdLeavesNoGhostRow() {
+        UserDirectory<Student> dir = UserDirectory.students();
+        assertTrue(dir.add(new Student(1, "One", "one", "pw")));
+        long offHeap = dir.offHeapBytes();
+        assertThrows(IllegalArgumentException.class, () -> dir.add(new Student(Integer.MIN_VALUE, "Ghost", "ghost", "pw")));
+        assertEquals(1, dir.size());
+        assertEquals(1, dir.all().stream().count());
+        assertNull(dir.byUsername("ghost"));
+        assertEquals(offHeap, dir.offHeapBytes());
+        assertFalse(dir.update(new Student(Integer.MIN_VALUE, "Ghost", "ghost", "pw")));
+
+        assertTrue(dir.add(new Student(2, "Two", "two", "pw")), "still takes adds");
+        assertEquals(2, dir.all().stream().count());
+    }
+}
@@ -0,0 +1,38 @@
+package blackboard.util;
+
+import blackboard.courses.Course;
+import blackboard.users.Admin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// resetAllData (Reset in the menu, and before the sample data): a write-behind save that was
+// still queued must not land in the data/ tree after it has been deleted, and the background
+// writer works again afterwards.
+class ResetDataTest {
+    static final Path COURSES = Paths.get("data", "courses");
+    private final Admin admin = new Admin(1, "Admin", "admin", "admin");
+
+    @BeforeEach
+    void fresh() throws Exception { AppState.resetAllData(); }
+
+    @AfterEach
+    void cleanUp() throws Exception { AppState.resetAllData(); }
+
+    @Test
+    void queuedSavesDoNotOutliveReset() throws Exception {
+        admin.createCourse(new Course("Q1", "Queued", 10));   // saved only after the write-behind window
+        AppState.resetAllData();
+        Thread.sleep(600);   // past the window
+        assertFalse(Files.exists(COURSES), "a save written into the reset tree");
+        assertNull(AppState.findCourse("Q1"));
+
+        admin.createCourse(new Course("A1", "After", 10));
+        WriteBehind.flush();
+        assertTrue(Files.exists(COURSES.resolve("A1.csv")), "write-behind after the reset");
+    }
+}
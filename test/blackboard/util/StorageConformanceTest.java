@@ -0,0 +1,284 @@
+package blackboard.util;
+
+import blackboard.courses.Assignment;
+import blackboard.courses.Course;
+import blackboard.courses.CourseCache;
+import blackboard.courses.Gradebook;
+import blackboard.courses.GradingScheme;
+import blackboard.users.Admin;
+import blackboard.users.Student;
+import blackboard.users.Teacher;
+import blackboard.users.UserRole;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The same cases against every Storage backend (csv, binary, sql), each on a fresh data/: what is
+// saved loads back as it was, awkward values and all, across flush(), close() and a reopen. Plus
+// BinaryStorage's compaction, which only that backend has.
+class StorageConformanceTest {
+    static final Path DATA = Paths.get("data");
+    static final String ODD = "Zoë \"Quote\", Jr.\nline two ✓";
+
+    private Storage st;
+
+    @BeforeEach
+    void fresh() throws Exception {
+        AppState.closeStorage();
+        deleteTree(DATA);
+    }
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        if (st != null) st.close();
+        CourseCache.clear();
+        deleteTree(DATA);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"csv", "binary", "sql"})
+    void usersAndCoursesRoundTrip(String kind) throws Exception {
+        st = Storage.open(kind);
+        assertTrue(st.isEmpty(), "fresh store");
+        st.saveUser(new Admin(1, "Admin", "admin", "p,w\"\n✓"));
+        st.saveUser(new Teacher(7, "Ms, Ünïcode", "t7", ""));
+        st.saveUser(new Student(3, ODD, "zoë", "x"));
+        st.saveUser(new Student(2, "Plain", "plain", "pw"));
+        Course c = new Course("C-odd é", "Title, with \"quotes\"\nand a break", 2);
+        c.setTeacher(new Teacher(7, "Ms, Ünïcode", "t7", ""));
+        c.restoreStudent(3);
+        c.restoreStudent(2);
+        c.restoreWaitlisted(9);
+        c.restoreWaitlisted(4);
+        st.saveCourse(c);
+        st.saveCourse(new Course("B1", "No teacher", 30));
+        st.flush();
+        assertFalse(st.isEmpty(), "after saves");
+
+        assertEquals(List.of("1|Admin|admin|p,w\"\n✓"), users(st, UserRole.ADMIN));
+        assertEquals(List.of("7|Ms, Ünïcode|t7|"), users(st, UserRole.TEACHER));
+        assertEquals(List.of("2|Plain|plain|pw", "3|" + ODD + "|zoë|x"), users(st, UserRole.STUDENT));
+
+        List<Course> loaded = st.loadCourses(id -> new Teacher(id, "T" + id, "t" + id, ""));
+        assertEquals(List.of("B1", "C-odd é"), loaded.stream().map(Course::getId).toList(), "course ids in order");
+        Course b = loaded.get(0), odd = loaded.get(1);
+        assertNull(b.getTeacher());
+        assertEquals(30, b.getMaxCapacity());
+        assertEquals(List.of(), b.getStudentIds());
+        assertEquals("Title, with \"quotes\"\nand a break", odd.getTitle());
+        assertEquals(2, odd.getMaxCapacity());
+        assertEquals(7, odd.getTeacher().getId());
+        assertEquals(Set.of(2, 3), new HashSet<>(odd.getStudentIds()));
+        assertEquals(List.of(9, 4), odd.getWaitlist(), "waitlist order");
+        assertFalse(odd.isDirty(), "loaded courses are clean");
+        assertSame(st, odd.getSource());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"csv", "binary", "sql"})
+    void deleteUser(String kind) throws Exception {
+        st = Storage.open(kind);
+        for (int id = 1; id <= 4; id++) st.saveUser(new Student(id, "S" + id, "s" + id, "pw"));
+        st.saveUser(new Teacher(2, "Teacher two", "t2", "pw"));
+        st.flush();
+        st.deleteUser(UserRole.STUDENT, 2);
+        st.deleteUser(UserRole.STUDENT, 4);
+        st.deleteUser(UserRole.STUDENT, 99);   // never stored
+        st.saveUser(new Student(4, "Back", "back4", "pw"));   // re-created under its id
+        st.saveUser(new Student(5, "Short-lived", "s5", "pw"));
+        st.deleteUser(UserRole.STUDENT, 5);     // saved and deleted within one batch
+        assertEquals(List.of("1|S1|s1|pw", "3|S3|s3|pw", "4|Back|back4|pw"), users(st, UserRole.STUDENT), "before flush");
+        st.flush();
+        assertEquals(List.of("1|S1|s1|pw", "3|S3|s3|pw", "4|Back|back4|pw"), users(st, UserRole.STUDENT), "after flush");
+        assertEquals(List.of("2|Teacher two|t2|pw"), users(st, UserRole.TEACHER), "same id, other role");
+
+        st.close();
+        st = Storage.open(kind);
+        assertEquals(List.of("1|S1|s1|pw", "3|S3|s3|pw", "4|Back|back4|pw"), users(st, UserRole.STUDENT), "after reopen");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"csv", "binary", "sql"})
+    void gradesWithGaps(String kind) throws Exception {
+        st = Storage.open(kind);
+        st.saveCourse(new Course("G1", "Grades", 10));
+        st.saveAssignments("G1", GradingScheme.NONE, List.of(new Assignment("A1", "One"), new Assignment("A2", "Two"), new Assignment("A3", "Three")));
+        Gradebook book = new Gradebook();
+        book.set("A1", 1, 90);
+        book.set("A1", 3, 0);                   // a zero is a grade, not a gap
+        book.set("A2", 2, 75);
+        book.set("A2", 1, 50);
+        book.set("A2", 1, Gradebook.NO_GRADE);  // cleared
+        book.set("A3", 4, 10);
+        book.set("A3", 4, Gradebook.NO_GRADE);  // a column and a student with no grade left
+        st.saveGrades("G1", book);
+        st.flush();
+
+        Course c = load(st, "G1");
+        Map<String, Integer> grades = new TreeMap<>();
+        c.forEachGrade((aid, sid, g) -> grades.put(aid + ":" + sid, g));
+        assertEquals(Map.of("A1:1", 90, "A1:3", 0, "A2:2", 75), grades);
+        assertNull(c.getGrade("A1", 2));
+        assertNull(c.getGrade("A2", 1));
+        assertNull(c.getGrade("A3", 4));
+
+        // a later save replaces the whole set
+        Gradebook next = new Gradebook();
+        next.set("A2", 2, 80);
+        st.saveGrades("G1", next);
+        st.flush();
+        Map<String, Integer> replaced = new TreeMap<>();
+        load(st, "G1").forEachGrade((aid, sid, g) -> replaced.put(aid + ":" + sid, g));
+        assertEquals(Map.of("A2:2", 80), replaced);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"csv", "binary", "sql"})
+    void submissionBitmaps(String kind) throws Exception {
+        st = Storage.open(kind);
+        st.saveCourse(new Course("S1", "Submissions", 10));
+        IdBitmap runs = new IdBitmap();
+        for (int id = 1; id <= 5000; id++) runs.add(id);   // a dense chunk
+        runs.add(70000);
+        runs.add(70002);                                   // a sparse one past the first chunk
+        Map<String, IdBitmap> subs = new LinkedHashMap<>();
+        subs.put("A1", runs);
+        subs.put("A,2", IdBitmap.of(0, 7, 8, 9, 65535, 65536));
+        subs.put("A3", new IdBitmap());                    // nobody yet
+        st.saveSubmissions("S1", subs);
+        st.flush();
+
+        Course c = load(st, "S1");
+        assertArrayEquals(runs.toArray(), c.submitted("A1").toArray());
+        assertArrayEquals(new int[]{0, 7, 8, 9, 65535, 65536}, c.submitted("A,2").toArray());
+        assertTrue(c.submitted("A3").isEmpty());
+        assertFalse(c.submittedAssignments().contains("A3"), "an empty set loads as no submissions");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"csv", "binary", "sql"})
+    void gradingSchemeAndNone(String kind) throws Exception {
+        st = Storage.open(kind);
+        st.saveCourse(new Course("W1", "Weighted", 10));
+        List<Assignment> list = List.of(new Assignment("E1", "Essay \"one\""), new Assignment("Q1", "Quiz, one", "quiz ünï", 2.5),
+                new Assignment("Q2", "Quiz two", "quiz ünï", 0.5));
+        GradingScheme scheme = GradingScheme.parse("quiz ünï=60/drop1");
+        st.saveAssignments("W1", scheme, list);
+        st.flush();
+
+        Course c = load(st, "W1");
+        assertEquals(scheme, c.getGradingScheme());
+        assertEquals(List.of("E1|Essay \"one\"||1.0", "Q1|Quiz, one|quiz ünï|2.5", "Q2|Quiz two|quiz ünï|0.5"), assignments(c));
+
+        // back to no scheme: nothing stored for it, and it loads as NONE
+        st.saveAssignments("W1", GradingScheme.NONE, list);
+        st.flush();
+        c = load(st, "W1");
+        assertTrue(c.getGradingScheme().isNone(), "scheme after saving none: " + c.getGradingScheme());
+        assertEquals(3, c.getAssignments().size());
+        if (kind.equals("csv")) assertFalse(Files.exists(DATA.resolve("categories").resolve("W1.csv")), "categories file left behind");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"csv", "binary", "sql"})
+    void reopenAfterClose(String kind) throws Exception {
+        st = Storage.open(kind);
+        st.saveUser(new Student(1, ODD, "zoë", "pw"));
+        Course c = new Course("R1", "Reopened", 5);
+        c.restoreStudent(1);
+        st.saveCourse(c);
+        st.saveAssignments("R1", GradingScheme.parse("quiz=40, exam=60"), List.of(new Assignment("Q", "Quiz", "quiz", 1)));
+        Gradebook book = new Gradebook();
+        book.set("Q", 1, 88);
+        st.saveGrades("R1", book);
+        st.saveSubmissions("R1", Map.of("Q", IdBitmap.of(1)));
+        st.close();   // no flush: close makes buffered writes durable too
+        st.close();   // and a second close is harmless
+
+        st = Storage.open(kind);
+        assertFalse(st.isEmpty());
+        assertEquals(List.of("1|" + ODD + "|zoë|pw"), users(st, UserRole.STUDENT));
+        Course r = load(st, "R1");
+        assertEquals(List.of(1), r.getStudentIds());
+        assertEquals(GradingScheme.parse("quiz=40, exam=60"), r.getGradingScheme());
+        assertEquals(List.of("Q|Quiz|quiz|1.0"), assignments(r));
+        assertEquals(88, r.getGrade("Q", 1));
+        assertTrue(r.hasSubmitted("Q", 1));
+
+        // and it takes further writes on top of what was there
+        st.saveUser(new Student(2, "Second", "s2", "pw"));
+        st.close();
+        st = Storage.open(kind);
+        assertEquals(List.of("1|" + ODD + "|zoë|pw", "2|Second|s2|pw"), users(st, UserRole.STUDENT));
+    }
+
+    @Test
+    void binaryCompaction() throws Exception {
+        st = Storage.open("binary");
+        Path file = BinaryStorage.FILE;
+        String big = "x".repeat(8 << 10);
+        Course c = new Course("K1", "Kept", 5);
+        c.restoreStudent(1);
+        st.saveCourse(c);
+        st.saveAssignments("K1", GradingScheme.parse("quiz=100"), List.of(new Assignment("Q", "Quiz", "quiz", 1)));
+        Gradebook book = new Gradebook();
+        book.set("Q", 1, 70);
+        st.saveGrades("K1", book);
+        st.saveSubmissions("K1", Map.of("Q", IdBitmap.of(1)));
+        st.saveUser(new Student(2, "Deleted", "gone", "pw"));
+        st.flush();
+        st.deleteUser(UserRole.STUDENT, 2);
+        for (int i = 0; i < 400; i++) st.saveUser(new Student(1, big + i, "s1", "pw"));   // ~3 MB, 8 KB of it live
+        st.flush();
+
+        long size = Files.size(file);
+        assertTrue(size < 64 << 10, "not compacted: " + size + " bytes");
+        assertFalse(Files.exists(file.resolveSibling("store.bin.tmp")), "temporary file left behind");
+        assertEquals(List.of("1|" + big + 399 + "|s1|pw"), users(st, UserRole.STUDENT));
+        Course k = load(st, "K1");
+        assertEquals(70, k.getGrade("Q", 1));
+        assertTrue(k.hasSubmitted("Q", 1));
+        assertEquals(GradingScheme.parse("quiz=100"), k.getGradingScheme());
+
+        // appends after the swap land in the new file, and a reopen scans it cleanly
+        st.saveUser(new Student(3, "After", "s3", "pw"));
+        st.close();
+        st = Storage.open("binary");
+        assertEquals(List.of("1|" + big + 399 + "|s1|pw", "3|After|s3|pw"), users(st, UserRole.STUDENT), "deleted user stays deleted");
+        assertEquals(70, load(st, "K1").getGrade("Q", 1));
+    }
+
+    // ---- helpers ----
+
+    private static List<String> users(Storage st, UserRole role) throws Exception {
+        List<String> out = new ArrayList<>();
+        for (var u : st.loadUsers(role, Student::new))
+            out.add(u.getId() + "|" + u.getName() + "|" + u.getUsername() + "|" + u.getPassword());
+        return out;
+    }
+
+    // the stored course, cold; its getters hydrate it from st
+    private static Course load(Storage st, String id) throws Exception {
+        for (Course c : st.loadCourses(null)) if (c.getId().equals(id)) return c;
+        return fail("course " + id + " not stored");
+    }
+
+    private static List<String> assignments(Course c) {
+        return c.getAssignments().stream().map(a -> a.getId() + "|" + a.getTitle() + "|" + a.getCategory() + "|" + a.getWeight()).toList();
+    }
+
+    private static void deleteTree(Path root) throws Exception {
+        if (!Files.exists(root)) return;
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+}